@@ -0,0 +1,170 @@
+package at.jku.isse.artifacteventstreaming.benchmarks;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.ontapi.OntModelFactory;
+import org.apache.jena.ontapi.OntSpecification;
+import org.apache.jena.ontapi.model.OntModel;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import at.jku.isse.artifacteventstreaming.api.AbstractHandlerBase;
+import at.jku.isse.artifacteventstreaming.api.Branch;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.CommitHandler;
+import at.jku.isse.artifacteventstreaming.api.IncrementalCommitHandler;
+import at.jku.isse.artifacteventstreaming.branch.BranchBuilder;
+import at.jku.isse.artifacteventstreaming.branch.persistence.InMemoryBranchStateCache;
+import at.jku.isse.artifacteventstreaming.branch.persistence.InMemoryEventStore;
+import at.jku.isse.artifacteventstreaming.branch.persistence.StateKeeperImpl;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Measures the complete local commit pipeline of {@link Branch#commitChanges(String)}:
+ * statement aggregation, commit creation, the service loop, state keeping and dataset commit.
+ * Everything is kept in memory (InMemoryEventStore, InMemoryBranchStateCache, DatasetFactory.createTxnMem())
+ * so that numbers reflect the framework overhead and not EventStoreDB or RocksDB latency.
+ *
+ * Run with the GC profiler (as done by {@link #main(String[])} or via '-prof gc') to obtain allocation per commit (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BranchCommitBenchmark {
+
+	public static final URI repoURI = URI.create("http://at.jku.isse.artifacteventstreaming/benchmarks/repo");
+
+	@Param({"1", "10", "100", "1000"})
+	public int statementsPerCommit;
+
+	@Param({"0", "1", "4"})
+	public int serviceCount;
+
+	/**
+	 * name of the static field in {@link OntSpecification} to use as model reasoner
+	 */
+	@Param({"OWL2_DL_MEM", "OWL2_DL_MEM_RDFS_INF"})
+	public String ontSpecification;
+
+	private Branch branch;
+	private OntModel model;
+	private Property property;
+	private long commitCounter = 0;
+
+	/**
+	 * a fresh branch per iteration, otherwise model, event store, and commit history grow across iterations
+	 * and throughput and allocation per commit drift over the run
+	 */
+	@Setup(Level.Iteration)
+	public void setupBranch() throws Exception {
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel = OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		URI branchURI = BranchBuilder.generateBranchURI(repoURI, "main");
+		BranchBuilder builder = new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setDataset(DatasetFactory.createTxnMem())
+				.setModelReasoner(resolveSpecification(ontSpecification))
+				.setStateKeeper(new StateKeeperImpl(branchURI, new InMemoryBranchStateCache(), new InMemoryEventStore()));
+		for (int i = 0; i < serviceCount; i++) {
+			builder.addBranchInternalCommitService(new StatementReadingService("BenchmarkService"+i, repoModel));
+		}
+		branch = builder.build();
+		branch.startCommitHandlers(null);
+		model = branch.getModel();
+		property = RDFS.label;
+	}
+
+	@TearDown(Level.Iteration)
+	public void deactivateBranch() {
+		branch.deactivate();
+	}
+
+	@Benchmark
+	public void commitChanges(Blackhole bh) throws Exception {
+		long commitNr = commitCounter++;
+		branch.getDataset().begin();
+		Resource subject = model.createResource(repoURI+"#art"+commitNr);
+		for (int i = 0; i < statementsPerCommit; i++) {
+			model.add(subject, property, model.createTypedLiteral(i));
+		}
+		Commit commit = branch.commitChanges("BenchmarkCommit"+commitNr);
+		bh.consume(commit);
+	}
+
+	private static OntSpecification resolveSpecification(String fieldName) throws ReflectiveOperationException {
+		return (OntSpecification) OntSpecification.class.getField(fieldName).get(null);
+	}
+
+	/**
+	 * touches every newly added or removed statement once, but does not produce any further changes,
+	 * hence each commit results in exactly one service loop round.
+	 */
+	public static class StatementReadingService extends AbstractHandlerBase implements IncrementalCommitHandler {
+
+		private long seenStatements = 0;
+
+		public StatementReadingService(String serviceName, OntModel repoModel) {
+			super(serviceName, repoModel);
+		}
+
+		@Override
+		public void handleCommit(Commit commit) {
+			handleCommitFromOffset(commit, 0, 0);
+		}
+
+		@Override
+		public void handleCommitFromOffset(Commit commit, int indexOfNewAddition, int indexOfNewRemoval) {
+			var added = commit.getAddedStatements();
+			for (int i = indexOfNewAddition; i < added.size(); i++) {
+				seenStatements += added.get(i).getPredicate().hashCode() != 0 ? 1 : 0;
+			}
+			var removed = commit.getRemovedStatements();
+			for (int i = indexOfNewRemoval; i < removed.size(); i++) {
+				seenStatements += removed.get(i).getPredicate().hashCode() != 0 ? 1 : 0;
+			}
+		}
+
+		@Override
+		protected String getServiceTypeURI() {
+			return CommitHandler.serviceTypeBaseURI+this.getClass().getSimpleName();
+		}
+
+		public long getSeenStatements() {
+			return seenStatements;
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(BranchCommitBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(opt).run();
+	}
+}
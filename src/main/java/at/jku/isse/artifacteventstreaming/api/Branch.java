@@ -52,6 +52,12 @@ public interface Branch {
 	 */
 	public Commit commitChanges(String commitMsg) throws PersistenceException, BranchConfigurationException;
 	
+	/**
+	 * when group commit is enabled, persists and forwards all commits that are pending for their group to complete, 
+	 * use this as a barrier when durability of all prior commits is needed, no-op otherwise 
+	 */
+	public void flushPendingCommits() throws PersistenceException;
+	
 	/**
 	 * @param mergedCommit 
 	 * behaves like for a local commitTransaction, except that it takes the merged commit content as base, 
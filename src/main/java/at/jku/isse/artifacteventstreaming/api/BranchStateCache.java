@@ -1,9 +1,60 @@
 package at.jku.isse.artifacteventstreaming.api;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
 
 public interface BranchStateCache {
 
 	public void put(String key, String value) throws PersistenceException;
 	public String get(String key) throws PersistenceException;
+	
+	/**
+	 * @param entries to write as one batch, implementations should write these atomically where the underlying store supports it
+	 */
+	public default void putAll(Map<String, String> entries) throws PersistenceException {
+		for (Map.Entry<String, String> entry : entries.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+	
+	/**
+	 * writes any entries that are buffered in memory to the underlying store, i.e., a durability barrier, 
+	 * a noop for caches that write through
+	 */
+	public default void flush() throws PersistenceException {
+		// nothing buffered by default
+	}
+	
+	/**
+	 * @return a view on this cache that keeps the entries of the given branch apart from those of other branches, 
+	 * by default by appending the branch URI to each key, implementations may use separate storage per branch instead
+	 */
+	public default BranchStateCache forBranch(String branchURI) {
+		BranchStateCache sharedCache = this;
+		return new BranchStateCache() {
+			@Override
+			public void put(String key, String value) throws PersistenceException {
+				sharedCache.put(key+branchURI, value);
+			}
+
+			@Override
+			public String get(String key) throws PersistenceException {
+				return sharedCache.get(key+branchURI);
+			}
+			
+			@Override
+			public void putAll(Map<String, String> entries) throws PersistenceException {
+				Map<String, String> branchEntries = new LinkedHashMap<>();
+				entries.forEach((key, value) -> branchEntries.put(key+branchURI, value));
+				sharedCache.putAll(branchEntries);
+			}
+			
+			@Override
+			public void flush() throws PersistenceException {
+				sharedCache.flush();
+			}
+		};
+	}
 }
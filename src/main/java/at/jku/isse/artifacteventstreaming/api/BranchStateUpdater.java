@@ -24,12 +24,29 @@ public interface BranchStateUpdater extends BranchStateKeeper {
 	
 	public void afterServices(Commit commit) throws PersistenceException;
 	
+	/**
+	 * @param commit to register as produced (e.g., to be used as preceding commit of the next commit) without appending it to the event store yet, 
+	 * that then happens via {@link #afterServices(List)}, until then the commit is recorded such that {@link #loadState()} can append it after a crash
+	 */
+	public void afterServicesDeferred(Commit commit) throws PersistenceException;
+	
+	/**
+	 * @param commits previously registered via {@link #afterServicesDeferred(Commit)}, persisted in their order in a single event store append and a single cache write batch
+	 */
+	public void afterServices(List<Commit> commits) throws PersistenceException;
+	
 	public void beforeMerge(Commit commit) throws PersistenceException;
 	
 	public List<Commit> getNonMergedCommits() throws PersistenceException;
 	
 	public void finishedMerge(Commit commit) throws PersistenceException;
 	
+	/**
+	 * @param mergedCommits incoming commits recorded in a single merge commit that carries the id of the last of them only, 
+	 * all of them are regarded as seen from now on
+	 */
+	public void afterCoalescedMerge(List<Commit> mergedCommits);
+	
 	//public Optional<String> getLastMergedCommitId();
 
 	public void afterForwarded(Commit commit) throws PersistenceException;
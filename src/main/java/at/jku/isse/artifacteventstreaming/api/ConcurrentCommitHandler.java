@@ -0,0 +1,22 @@
+package at.jku.isse.artifacteventstreaming.api;
+
+import org.apache.jena.rdf.model.Model;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * A local commit service that is read-only or whose changes commute with those of other such services,
+ * hence when the branch runs services concurrently, it may be invoked in parallel to other concurrent services on a read snapshot of the branch model.
+ * Instead of changing the branch model, it collects its changes which the branch applies once all concurrent services of a round completed,
+ * in the order the services are registered.
+ * When the branch does not run services concurrently, {@link #handleCommitFromOffset(Commit, int, int)} is used as for any other service.
+ */
+public interface ConcurrentCommitHandler extends IncrementalCommitHandler {
+
+	/**
+	 * must not change the branch model, may be called from any thread within a read transaction
+	 * @param additions to collect statements to add to the branch model
+	 * @param removals to collect statements to remove from the branch model, applied before the additions
+	 */
+	public void handleCommitConcurrently(Commit commit, int indexOfNewAddition, int indexOfNewRemoval, Model additions, Model removals);
+}
@@ -1,6 +1,42 @@
 package at.jku.isse.artifacteventstreaming.api;
 
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+
 public interface IncrementalCommitHandler extends CommitHandler {
 
 	public void handleCommitFromOffset(Commit commit, int indexOfNewAddition, int indexOfNewRemoval);
+	
+	/**
+	 * @return the predicates of added or removed statements this service reacts to, 
+	 * null (default) when the service does not declare its input, it is then invoked in every round of the service loop
+	 */
+	public default Set<Property> getReadPredicates() {
+		return null;
+	}
+	
+	/**
+	 * @return the types of resources this service reacts to, i.e., any statement about an instance of these types, or a statement (un)typing a resource as such, 
+	 * null (default) when the service does not declare its input via types
+	 */
+	public default Set<Resource> getReadTypes() {
+		return null;
+	}
+	
+	/**
+	 * @return the predicates of statements this service adds or removes, null (default) when not declared, 
+	 * used to invoke services producing input for other services first
+	 */
+	public default Set<Property> getWrittenPredicates() {
+		return null;
+	}
+	
+	/**
+	 * @return the types of resources whose statements this service adds or removes, null (default) when not declared
+	 */
+	public default Set<Resource> getWrittenTypes() {
+		return null;
+	}
 }
@@ -1,6 +1,9 @@
 package at.jku.isse.artifacteventstreaming.api;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
 import lombok.NonNull;
@@ -10,10 +13,48 @@ public interface PerBranchEventStore {
 	
 	public List<Commit> loadAllCommits() throws PersistenceException;
 	
+	/**
+	 * reads through all commits in their order but hands out only their ids, 
+	 * the n-th handed out id belongs to the commit with sequence number n (starting at 0) as used in {@link #loadCommits(long, int)}
+	 */
+	public default void forEachCommitId(@NonNull Consumer<String> commitIdConsumer) throws PersistenceException {
+		loadAllCommits().forEach(commit -> commitIdConsumer.accept(commit.getCommitId()));
+	}
+	
+	/**
+	 * @return up to maxCount commits in their order, starting with the commit with the given sequence number, 
+	 * implementations should only read the requested commits, not the whole history
+	 */
+	public default List<Commit> loadCommits(long fromSequenceNr, int maxCount) throws PersistenceException {
+		List<Commit> commits = loadAllCommits();
+		if (fromSequenceNr >= commits.size()) {
+			return Collections.emptyList();
+		}
+		return commits.subList((int) fromSequenceNr, (int) Math.min(commits.size(), fromSequenceNr + maxCount));
+	}
+	
 	public List<Commit> loadAllIncomingCommitsForBranchFromCommitIdOnward(String fromCommitIdOnwards) throws PersistenceException;
 	
 	public void appendCommit(@NonNull Commit commit) throws PersistenceException;
 	
+	/**
+	 * @param commits to append in the given order, implementations should persist them in as few round-trips as possible 
+	 */
+	public default void appendCommits(@NonNull List<Commit> commits) throws PersistenceException {
+		for (Commit commit : commits) {
+			appendCommit(commit);
+		}
+	}
+	
+	/**
+	 * appends the commits and then writes the cache entries, 
+	 * implementations sharing the underlying storage with the cache should do so atomically
+	 */
+	public default void appendCommitsAndCacheEntries(@NonNull List<Commit> commits, @NonNull BranchStateCache cache, @NonNull Map<String, String> cacheEntries) throws PersistenceException {
+		appendCommits(commits);
+		cache.putAll(cacheEntries);
+	}
+	
 	public void appendCommitDelivery(@NonNull CommitDeliveryEvent event) throws PersistenceException;
 	
 }
@@ -8,6 +8,8 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import org.apache.jena.ontapi.OntModelFactory;
@@ -28,6 +30,7 @@ import at.jku.isse.artifacteventstreaming.api.Branch;
 import at.jku.isse.artifacteventstreaming.api.BranchStateUpdater;
 import at.jku.isse.artifacteventstreaming.api.Commit;
 import at.jku.isse.artifacteventstreaming.api.CommitHandler;
+import at.jku.isse.artifacteventstreaming.api.ConcurrentCommitHandler;
 import at.jku.isse.artifacteventstreaming.api.IncrementalCommitHandler;
 import at.jku.isse.artifacteventstreaming.api.TimeStampProvider;
 import at.jku.isse.artifacteventstreaming.branch.persistence.InMemoryBranchStateCache;
@@ -49,6 +52,11 @@ public class BranchBuilder {
 	private List<IncrementalCommitHandler> services = new LinkedList<>();
 	private Set<CommitHandler> outgoingCommitDistributers = new HashSet<>();
 	private TimeStampProvider timeStampProvider;
+	private int groupCommitSize = 0;
+	private long groupCommitDelayInMillis = 0;
+	private int mergePreparationThreads = 0;
+	private int maxCommitsPerMerge = 1;
+	private int concurrentServiceThreads = 0;
 	
 	public BranchBuilder(@NonNull URI repositoryURI, @NonNull Dataset repoDataset, @NonNull OntModel repoModel) {
 		this.repositoryURI = repositoryURI;
@@ -114,6 +122,61 @@ public class BranchBuilder {
 		return this;
 	}
 	
+	/**
+	 * if not used, each commit is persisted on its own before commitChanges returns.
+	 * Otherwise commits are persisted (and forwarded) in groups of up to maxCommitsPerGroup, 
+	 * or once the oldest pending commit waited for maxDelayInMillis, whichever comes first.
+	 * Commits that are pending upon a crash are appended to the event store upon the next start, see {@link GroupCommitter}
+	 */
+	public BranchBuilder setGroupCommit(int maxCommitsPerGroup, long maxDelayInMillis) {
+		if (maxCommitsPerGroup < 1 || maxDelayInMillis < 0) {
+			throw new RuntimeException("Group commit requires at least one commit per group and a non-negative delay");
+		}
+		this.groupCommitSize = maxCommitsPerGroup;
+		this.groupCommitDelayInMillis = maxDelayInMillis;
+		return this;
+	}
+	
+	/**
+	 * if not used, incoming commits are prepared for merging on the delivering thread and merged strictly in delivery order.
+	 * Otherwise they are prepared (incl. computing their triples, applied as is by a {@link at.jku.isse.artifacteventstreaming.branch.incoming.GraphLevelCommitMerger}) 
+	 * by the given number of threads, and a commit may be merged before earlier delivered ones 
+	 * from other source branches that touch other resources, see {@link IncomingMergeScheduler}. Only applying them to the dataset remains sequential.
+	 */
+	public BranchBuilder setParallelMergePreparation(int threads) {
+		if (threads < 1) {
+			throw new RuntimeException("Parallel merge preparation requires at least one thread");
+		}
+		this.mergePreparationThreads = threads;
+		return this;
+	}
+	
+	/**
+	 * if not used, each incoming commit is merged in its own transaction resulting in its own merge commit.
+	 * Otherwise, when incoming commits queue up, up to maxCommitsPerMerge of them are merged in a single transaction 
+	 * resulting in a single merge commit with the id of the last merged commit.
+	 */
+	public BranchBuilder setCoalescedMerge(int maxCommitsPerMerge) {
+		if (maxCommitsPerMerge < 1) {
+			throw new RuntimeException("Coalesced merge requires at least one commit per merge");
+		}
+		this.maxCommitsPerMerge = maxCommitsPerMerge;
+		return this;
+	}
+	
+	/**
+	 * if not used, all local commit services run one after another on the committing thread.
+	 * Otherwise services implementing {@link ConcurrentCommitHandler} run in parallel on a pool of the given number of threads 
+	 * against a read snapshot of the branch model, their changes are applied afterwards in service order.
+	 */
+	public BranchBuilder setConcurrentServices(int threads) {
+		if (threads < 1) {
+			throw new RuntimeException("Concurrent services require at least one thread");
+		}
+		this.concurrentServiceThreads = threads;
+		return this;
+	}
+	
 	/**
 	 * if not used, no commits will be merged into this branch
 	 */
@@ -169,7 +232,19 @@ public class BranchBuilder {
 		if (timeStampProvider == null) {
 			timeStampProvider = new SystemTimeStampProvider();
 		}
-		BranchImpl branch = new BranchImpl(branchDataset, model, branchResource, stateKeeper, inQueue, outQueue, timeStampProvider);
+		GroupCommitter groupCommitter = null;
+		if (groupCommitSize > 0) {
+			groupCommitter = new GroupCommitter(stateKeeper, outQueue, groupCommitSize, groupCommitDelayInMillis);
+		}
+		IncomingMergeScheduler mergeScheduler = null;
+		if (mergePreparationThreads > 0) {
+			mergeScheduler = new IncomingMergeScheduler(stateKeeper, inQueue, mergePreparationThreads);
+		}
+		ExecutorService servicePool = null;
+		if (concurrentServiceThreads > 0) {
+			servicePool = new ForkJoinPool(concurrentServiceThreads);
+		}
+		BranchImpl branch = new BranchImpl(branchDataset, model, branchResource, stateKeeper, inQueue, outQueue, timeStampProvider, groupCommitter, mergeScheduler, maxCommitsPerMerge, servicePool);
 		addCommitHandlers(branch);
 		return branch;
 	}
@@ -7,18 +7,25 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import org.apache.jena.ontapi.model.OntIndividual;
 import org.apache.jena.ontapi.model.OntModel;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.NodeIterator;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Seq;
+import org.apache.jena.reasoner.InfGraph;
 import org.apache.jena.shared.Lock;
 
 import at.jku.isse.artifacteventstreaming.api.AES;
@@ -26,6 +33,7 @@ import at.jku.isse.artifacteventstreaming.api.Branch;
 import at.jku.isse.artifacteventstreaming.api.BranchStateUpdater;
 import at.jku.isse.artifacteventstreaming.api.Commit;
 import at.jku.isse.artifacteventstreaming.api.CommitHandler;
+import at.jku.isse.artifacteventstreaming.api.ConcurrentCommitHandler;
 import at.jku.isse.artifacteventstreaming.api.IncrementalCommitHandler;
 import at.jku.isse.artifacteventstreaming.api.TimeStampProvider;
 import at.jku.isse.artifacteventstreaming.api.exceptions.BranchConfigurationException;
@@ -49,11 +57,16 @@ public class BranchImpl  implements Branch, Runnable {
 	private final ExecutorService inExecutor = Executors.newSingleThreadExecutor();
 	private final ExecutorService outExecutor = Executors.newSingleThreadExecutor();
 	
-	private StatementAggregator stmtAggregator = new StatementAggregator();
+	private final ModelChangeAggregator stmtAggregator = new TripleDeltaAggregator();
 	private final List<IncrementalCommitHandler> services = Collections.synchronizedList(new LinkedList<>());
 	@Getter private final BlockingQueue<Commit> outQueue;
 	private final CrossBranchStreamer crossBranchStreamer;
+	private final GroupCommitter groupCommitter; // null when each commit is persisted on its own
+	private final IncomingMergeScheduler mergeScheduler; // null when incoming commits are prepared upon enqueuing
+	private final int maxCommitsPerMerge; // 1 when each incoming commit is merged on its own
+	private final ExecutorService servicePool; // null when all services run on the committing thread
 	private AtomicBoolean isReady = new AtomicBoolean(false);
+	@Getter private volatile ServiceLoopStatistics lastServiceLoopStatistics = null; // of the last commit processed by services
 	
 	public BranchImpl(@NonNull Dataset dataset
 			, @NonNull OntModel model
@@ -63,7 +76,77 @@ public class BranchImpl  implements Branch, Runnable {
 			, @NonNull BlockingQueue<Commit> outQueue
 			, @NonNull TimeStampProvider timeStampProvider
 			) {
+		this(dataset, model, branchResource, stateKeeper, inQueue, outQueue, timeStampProvider, null);
+	}
+	
+	/**
+	 * @param groupCommitter when not null, commits are persisted and forwarded in groups, see {@link GroupCommitter} 
+	 */
+	public BranchImpl(@NonNull Dataset dataset
+			, @NonNull OntModel model
+			, @NonNull OntIndividual branchResource
+			, @NonNull BranchStateUpdater stateKeeper
+			, @NonNull BlockingQueue<Commit> inQueue
+			, @NonNull BlockingQueue<Commit> outQueue
+			, @NonNull TimeStampProvider timeStampProvider
+			, GroupCommitter groupCommitter
+			) {
+		this(dataset, model, branchResource, stateKeeper, inQueue, outQueue, timeStampProvider, groupCommitter, null);
+	}
+	
+	/**
+	 * @param mergeScheduler when not null, incoming commits are prepared in parallel and released to the inQueue by it, see {@link IncomingMergeScheduler}
+	 */
+	public BranchImpl(@NonNull Dataset dataset
+			, @NonNull OntModel model
+			, @NonNull OntIndividual branchResource
+			, @NonNull BranchStateUpdater stateKeeper
+			, @NonNull BlockingQueue<Commit> inQueue
+			, @NonNull BlockingQueue<Commit> outQueue
+			, @NonNull TimeStampProvider timeStampProvider
+			, GroupCommitter groupCommitter
+			, IncomingMergeScheduler mergeScheduler
+			) {
+		this(dataset, model, branchResource, stateKeeper, inQueue, outQueue, timeStampProvider, groupCommitter, mergeScheduler, 1);
+	}
+	
+	/**
+	 * @param maxCommitsPerMerge when larger than 1, up to this many commits waiting in the inQueue are merged together in a single transaction
+	 * resulting in a single merge commit
+	 */
+	public BranchImpl(@NonNull Dataset dataset
+			, @NonNull OntModel model
+			, @NonNull OntIndividual branchResource
+			, @NonNull BranchStateUpdater stateKeeper
+			, @NonNull BlockingQueue<Commit> inQueue
+			, @NonNull BlockingQueue<Commit> outQueue
+			, @NonNull TimeStampProvider timeStampProvider
+			, GroupCommitter groupCommitter
+			, IncomingMergeScheduler mergeScheduler
+			, int maxCommitsPerMerge
+			) {
+		this(dataset, model, branchResource, stateKeeper, inQueue, outQueue, timeStampProvider, groupCommitter, mergeScheduler, maxCommitsPerMerge, null);
+	}
+	
+	/**
+	 * @param servicePool when not null, services implementing {@link ConcurrentCommitHandler} are executed in parallel on this pool
+	 */
+	public BranchImpl(@NonNull Dataset dataset
+			, @NonNull OntModel model
+			, @NonNull OntIndividual branchResource
+			, @NonNull BranchStateUpdater stateKeeper
+			, @NonNull BlockingQueue<Commit> inQueue
+			, @NonNull BlockingQueue<Commit> outQueue
+			, @NonNull TimeStampProvider timeStampProvider
+			, GroupCommitter groupCommitter
+			, IncomingMergeScheduler mergeScheduler
+			, int maxCommitsPerMerge
+			, ExecutorService servicePool
+			) {
 		super();
+		if (maxCommitsPerMerge < 1) {
+			throw new IllegalArgumentException("At least one commit per merge required, but was "+maxCommitsPerMerge);
+		}
 		this.dataset = dataset;
 		this.model = model;
 		this.branchResource = branchResource;
@@ -71,6 +154,13 @@ public class BranchImpl  implements Branch, Runnable {
 		this.inQueue = inQueue;
 		this.outQueue = outQueue;
 		this.timeStampProvider = timeStampProvider;
+		this.groupCommitter = groupCommitter;
+		this.mergeScheduler = mergeScheduler;
+		this.maxCommitsPerMerge = maxCommitsPerMerge;
+		this.servicePool = servicePool;
+		if (groupCommitter != null && mergeScheduler != null) {
+			groupCommitter.setMergeCheckpointer(mergeScheduler::finishedMerge);
+		}
 		this.crossBranchStreamer = new CrossBranchStreamer(branchResource.getURI(), stateKeeper, outQueue);
 		stmtAggregator.registerWithModel(model);
 	}
@@ -79,13 +169,12 @@ public class BranchImpl  implements Branch, Runnable {
 	public void startCommitHandlers(Commit unfinishedPreliminaryCommit) throws BranchConfigurationException, PersistenceException {
 		// if we have collected any model changes until here, they would have come from setup logic that we do not persist in commits,
 		// hence we clear the statement aggregator first
-		stmtAggregator.retrieveAddedStatements();
-		stmtAggregator.retrieveRemovedStatements();
+		stmtAggregator.clear();
 		
 		if (unfinishedPreliminaryCommit != null) {
 			// continue aborted processing: e.g., single internal commit not yet completely processed by services (can only be one)
 			dataset.begin();
-			this.handleCommitInternally(unfinishedPreliminaryCommit);
+			this.handleCommitInternally(unfinishedPreliminaryCommit, false);
 		}
 		// re-forward all nonforwarded commits
 		crossBranchStreamer.recoverState();
@@ -102,6 +191,15 @@ public class BranchImpl  implements Branch, Runnable {
 	@Override
 	public void deactivate() {
 		isReady.set(false);
+		if (groupCommitter != null) {
+			groupCommitter.shutdown(); // pending commits need to end up in the outqueue before the poison pill
+		}
+		if (mergeScheduler != null) {
+			mergeScheduler.shutdown(); // any not yet released commits are not checkpointed as merged, hence recovered upon restart
+		}
+		if (servicePool != null) {
+			servicePool.shutdown();
+		}
 		inQueue.add(PoisonPillCommit.POISONPILL);
 		outQueue.add(PoisonPillCommit.POISONPILL);
 		
@@ -194,24 +292,34 @@ public class BranchImpl  implements Branch, Runnable {
 	@Override
 	public void enqueueIncomingCommit(Commit commit) throws BranchConfigurationException, PersistenceException {
 		// if we have processed this commit before, then wont do it again to avoid loops		
-		if (!stateKeeper.hasSeenCommit(commit) && !inQueue.contains(commit)) {									
+		if (!stateKeeper.hasSeenCommit(commit) && !inQueue.contains(commit) && (mergeScheduler == null || !mergeScheduler.isPending(commit))) {									
 			//persist which commits we have received but not merged yet, 
 			stateKeeper.beforeMerge(commit);
-			// we also ensure that they dont map to prior (brach external) model here
-			commit.getAddedStatementsAsSet().stream().forEach(stmt -> stmt.transferToModel(model));
-			commit.getRemovedStatementsAsSet().stream().forEach(stmt -> stmt.transferToModel(model));
+			if (mergeScheduler == null) {
+				transferToBranchModel(commit);
+			}
 			// if this crashes before returning this call, then cross branch streamer has to assume failure and retry adding/enqueuing upon restart
 			if (handlers.isEmpty()) { // there are not handlers to process , thus no queuing and error thrown
 				String msg = String.format("Branch %s received incomming commit %s to merge but no merge handlers are registered, dropping commit", this.getBranchName(), commit.getCommitId());
 				log.warn(msg);
 				throw new BranchConfigurationException(msg);				
 			}
-			inQueue.add(commit);
+			if (mergeScheduler == null) {
+				inQueue.add(commit);
+			} else {
+				mergeScheduler.submit(commit, () -> transferToBranchModel(commit));
+			}
 		} else {
 			log.info(String.format("Ignoring incoming commit %s that has been seen by this branch before", commit.getCommitId()));
 		}
 	}
 
+	private void transferToBranchModel(Commit commit) {
+		// we ensure that statements dont map to prior (brach external) model here
+		commit.getAddedStatementsAsSet().stream().forEach(stmt -> stmt.transferToModel(model));
+		commit.getRemovedStatementsAsSet().stream().forEach(stmt -> stmt.transferToModel(model));
+	}
+
     private boolean isShutdown = false;
 	
 	public void run() {
@@ -227,8 +335,14 @@ public class BranchImpl  implements Branch, Runnable {
                 	inExecutor.shutdown();
                 	return;
                 } else {
-                	log.info(String.format("Processing incoming commit %s on branch %s ", commit.getCommitId(), this.getBranchId()));
-                	forwardCommit(commit);
+                	List<Commit> batch = drainBatch(commit);
+                	if (batch.size() == 1) {
+                		log.info(String.format("Processing incoming commit %s on branch %s ", commit.getCommitId(), this.getBranchId()));
+                		forwardCommit(commit);
+                	} else {
+                		log.info(String.format("Processing %s incoming commits from %s onwards on branch %s ", batch.size(), commit.getCommitId(), this.getBranchId()));
+                		forwardCommits(batch);
+                	}
                 }
             }
         } catch (InterruptedException e) {
@@ -236,6 +350,20 @@ public class BranchImpl  implements Branch, Runnable {
         }
 	}
 	
+	/**
+	 * takes any further waiting commits up to maxCommitsPerMerge, but not beyond a poison pill which remains in the queue to end the loop afterwards
+	 */
+	private List<Commit> drainBatch(Commit first) {
+		List<Commit> batch = new ArrayList<>();
+		batch.add(first);
+		Commit next;
+		// we are the only consumer of the inQueue, hence the peeked commit is the one we poll
+		while (batch.size() < maxCommitsPerMerge && (next = inQueue.peek()) != null && next != PoisonPillCommit.POISONPILL) {
+			batch.add(inQueue.poll());
+		}
+		return batch;
+	}
+	
 	private void forwardCommit(Commit commit) {					
 	//	if (dataset.isInTransaction()) // this is too brittle, we need to ensure this is not happening by other means
 	//		dataset.abort();
@@ -248,13 +376,59 @@ public class BranchImpl  implements Branch, Runnable {
 		// (as we want to maintain commit history)
 		try {
 			this.commitMergeOf(commit);
-			stateKeeper.finishedMerge(commit);
+			if (groupCommitter == null) { // otherwise marked as merged once the merge commit is persisted
+				if (mergeScheduler != null) {
+					mergeScheduler.finishedMerge(commit);
+				} else {
+					stateKeeper.finishedMerge(commit);
+				}
+			}
 		} catch (Exception e) {
 			log.warn(String.format("Merge of commit %s into %s failed with: %s", commit.getCommitId(), this.getBranchId() ,e.getMessage()));
+			if (mergeScheduler != null) {
+				try {
+					mergeScheduler.failedMerge(commit);
+				} catch (PersistenceException pe) {
+					log.warn(String.format("Failed to advance merge checkpoint of %s: %s", this.getBranchId(), pe.getMessage()));
+				}
+			}
 		}
 	}
 	
 	
+	/**
+	 * applies all commits in one write transaction, in their order, and records them in a single merge commit 
+	 */
+	private void forwardCommits(List<Commit> commits) {
+		dataset.begin(ReadWrite.WRITE);
+		for (Commit commit : commits) {
+			handlers.stream().forEach(handler -> handler.handleCommit(commit));
+		}
+		try {
+			this.commitMergeOf(commits);
+			if (groupCommitter == null) { // otherwise marked as merged once the merge commit is persisted
+				if (mergeScheduler != null) {
+					for (Commit commit : commits) {
+						mergeScheduler.finishedMerge(commit);
+					}
+				} else {
+					stateKeeper.finishedMerge(commits.get(commits.size()-1));
+				}
+			}
+		} catch (Exception e) {
+			log.warn(String.format("Merge of %s commits from %s onwards into %s failed with: %s", commits.size(), commits.get(0).getCommitId(), this.getBranchId() ,e.getMessage()));
+			if (mergeScheduler != null) {
+				try {
+					for (Commit commit : commits) {
+						mergeScheduler.failedMerge(commit);
+					}
+				} catch (PersistenceException pe) {
+					log.warn(String.format("Failed to advance merge checkpoint of %s: %s", this.getBranchId(), pe.getMessage()));
+				}
+			}
+		}
+	}
+	
 	// local changes handling ---------------------------------------------------------------
 	
 	@Override
@@ -340,8 +514,8 @@ public class BranchImpl  implements Branch, Runnable {
 			return null;
 		} else {
 			var commit = new StatementCommitImpl( branchResource.getURI() , commitMsg, getLastCommitId(), timeStampProvider.getCurrentTimeStamp(), stmtAggregator.retrieveAddedStatements(), stmtAggregator.retrieveRemovedStatements());
-			handleCommitInternally(commit);
-			outQueue.add(commit); 
+			handleCommitInternally(commit, groupCommitter != null);
+			publishCommit(commit, List.of());
 			return commit;
 		}
 	}
@@ -353,13 +527,45 @@ public class BranchImpl  implements Branch, Runnable {
 		if (commit.isEmpty()) {
 			log.info(String.format("MergeCommit %s merged into branch %s has no changes after incoming processing",commit.getCommitId(), this.branchResource.getURI()));
 		}
-		handleCommitInternally(commit);
-		outQueue.add(commit); 
+		handleCommitInternally(commit, groupCommitter != null);
+		publishCommit(commit, List.of(mergedCommit));
 		return commit;
 		
 	}
 	
-	private void handleCommitInternally(Commit commit) throws PersistenceException {
+	/**
+	 * creates a single merge commit for several incoming commits that were applied within the current transaction,
+	 * the merge commit takes the id of the last merged commit, and its message lists the ids of all merged commits, all of them are recognized as seen thereafter.
+	 */
+	public Commit commitMergeOf(@NonNull List<Commit> mergedCommits) throws PersistenceException {
+		Commit lastMergedCommit = mergedCommits.get(mergedCommits.size()-1);
+		String commitMsg = String.format("Merge of %s commits: %s", mergedCommits.size(), mergedCommits.stream().map(Commit::getCommitId).collect(Collectors.joining(",")));
+		var commit = new StatementCommitImpl( branchResource.getURI() , lastMergedCommit.getCommitId(), commitMsg, getLastCommitId(), timeStampProvider.getCurrentTimeStamp(), stmtAggregator.retrieveAddedStatements(), stmtAggregator.retrieveRemovedStatements());
+		if (commit.isEmpty()) {
+			log.info(String.format("MergeCommit %s merged into branch %s has no changes after incoming processing",commit.getCommitId(), this.branchResource.getURI()));
+		}
+		handleCommitInternally(commit, groupCommitter != null);
+		stateKeeper.afterCoalescedMerge(mergedCommits); // otherwise only the last one would be recognized when redelivered
+		publishCommit(commit, mergedCommits);
+		return commit;
+	}
+	
+	private void publishCommit(Commit commit, List<Commit> mergedCommits) {
+		if (groupCommitter != null) {
+			groupCommitter.add(commit, mergedCommits);
+		} else {
+			outQueue.add(commit);
+		}
+	}
+	
+	@Override
+	public void flushPendingCommits() throws PersistenceException {
+		if (groupCommitter != null) {
+			groupCommitter.flush();
+		}
+	}
+	
+	private void handleCommitInternally(Commit commit, boolean deferPersistence) throws PersistenceException {
 		log.debug(String.format("Handling commit %s in branch %s", commit.getCommitId(), branchResource.getURI()));
 		// clear the changes
 		try {
@@ -367,7 +573,11 @@ public class BranchImpl  implements Branch, Runnable {
 				executeServiceLoop(commit);
 			}		 
 		// persist augmented commit and  mark preliminary commit as processed
-			stateKeeper.afterServices(commit);
+			if (deferPersistence) {
+				stateKeeper.afterServicesDeferred(commit);
+			} else {
+				stateKeeper.afterServices(commit);
+			}
 			log.debug(String.format("Branch %s contains now %s statements", branchResource.getLabel(), model.size()));
 			dataset.commit(); // together with commit persistence			
 		} catch (Exception e) {
@@ -383,9 +593,11 @@ public class BranchImpl  implements Branch, Runnable {
 	}
 	
 	private void executeServiceLoop(Commit commit) {
+		boolean isSnapshotCurrent = false; // only when the model state is committed, read transactions see the same state as we do
 		try { // first persist initial commit
 			stateKeeper.beforeServices(commit);
 			dataset.commit(); // together with commit/events persistence, here persists state of model
+			isSnapshotCurrent = true;
 		} catch(Exception e) {
 			log.info(String.format("Failed to persist pre-service commit %s %s with exception %s", commit.getCommitMessage(),commit.getCommitId(), e.getMessage()));
 		} finally {
@@ -397,39 +609,65 @@ public class BranchImpl  implements Branch, Runnable {
 
 		int baseAdds = commit.getAdditionCount();
 		int baseRemoves = commit.getRemovalCount();
-		int addsCount = baseAdds;
-		int removesCount = baseRemoves;
-		int newAdds = 0;
-		int newRemoves = 0;
 		int rounds = 0;
 		// store for each service the last seen offset
 		Map<IncrementalCommitHandler, Integer> offsetAdds = initServiceOffsets();
 		Map<IncrementalCommitHandler, Integer> offsetRemoves = initServiceOffsets();
-		Integer perIterationAdds = 0;
-		Integer perIterationsRemovals = 0;
+		// services declaring their input are only invoked upon relevant changes
+		ServiceLoopScheduler scheduler = new ServiceLoopScheduler(model.getGraph(), new ArrayList<>(services), commit);
+		int invocations = 0;
+		int skippedInvocations = 0;
+		int perIterationAdds = 0;
+		int perIterationsRemovals = 0;
+		List<ConcurrentCommitHandler> concurrentServices = new ArrayList<>();
+		List<IncrementalCommitHandler> sequentialServices = new ArrayList<>();
+		for (IncrementalCommitHandler service : scheduler.getOrderedServices()) {
+			if (servicePool != null && service instanceof ConcurrentCommitHandler concurrentService) {
+				concurrentServices.add(concurrentService);
+			} else {
+				sequentialServices.add(service);
+			}
+		}
 		do {
-			perIterationAdds = 0;
-			perIterationsRemovals = 0;
-			for (IncrementalCommitHandler service : services) {
-				service.handleCommitFromOffset(commit, offsetAdds.get(service), offsetRemoves.get(service));
-				// any changes by a service are now in the statement lists
-
-				// provide changes immediately to next service:					
-				commit.appendAddedStatements(stmtAggregator.retrieveAddedStatements());									
-				newAdds = commit.getAdditionCount() - addsCount;
-				addsCount = commit.getAdditionCount();
-				perIterationAdds += newAdds;
-
-				commit.appendRemovedStatement(stmtAggregator.retrieveRemovedStatements());					
-				newRemoves = commit.getRemovalCount() - removesCount;
-				removesCount = commit.getRemovalCount();
-				perIterationsRemovals += newRemoves;
+			int roundStartAdds = commit.getAdditionCount();
+			int roundStartRemoves = commit.getRemovalCount();
+			if (!concurrentServices.isEmpty()) {
+				List<ConcurrentCommitHandler> affectedServices = new ArrayList<>();
+				for (ConcurrentCommitHandler service : concurrentServices) {
+					if (scheduler.isAffected(service)) {
+						affectedServices.add(service);
+					} else {
+						skippedInvocations++;
+					}
+				}
+				executeConcurrentServices(affectedServices, commit, offsetAdds, offsetRemoves, isSnapshotCurrent);
+				invocations += affectedServices.size();
+				// all concurrent services have seen the same state, their changes are visible to them in the next round
+				for (ConcurrentCommitHandler service : concurrentServices) {
+					offsetAdds.put(service, commit.getAdditionCount());
+					offsetRemoves.put(service,  commit.getRemovalCount());
+					scheduler.markSeen(service);
+				}
+				isSnapshotCurrent &= !appendServiceChanges(commit, scheduler);
+			}
+			for (IncrementalCommitHandler service : sequentialServices) {
+				if (scheduler.isAffected(service)) {
+					service.handleCommitFromOffset(commit, offsetAdds.get(service), offsetRemoves.get(service));
+					invocations++;
+					// any changes by a service are now in the statement lists
 
+					// provide changes immediately to next service:
+					isSnapshotCurrent &= !appendServiceChanges(commit, scheduler);
+				} else {
+					skippedInvocations++;
+				}
 				// store these changes as seen by this service (and also consider those produced by this service)
 				offsetAdds.put(service, commit.getAdditionCount());
 				offsetRemoves.put(service,  commit.getRemovalCount());
-
+				scheduler.markSeen(service);
 			}
+			perIterationAdds = commit.getAdditionCount() - roundStartAdds;
+			perIterationsRemovals = commit.getRemovalCount() - roundStartRemoves;
 			rounds++;
 			//continue while new changes happen and max 100 rounds to avoid infinite loops
 		} while ((perIterationAdds > 0 || perIterationsRemovals > 0) && rounds < 100);
@@ -438,6 +676,8 @@ public class BranchImpl  implements Branch, Runnable {
 			log.warn(String.format("Service loop for commit '%s' reached maximum iteration count of 100 while still new statements available", commit.getCommitMessage()));
 		}
 		commit.removeEffectlessStatements(baseAdds, baseRemoves);
+		lastServiceLoopStatistics = new ServiceLoopStatistics(commit.getCommitId(), rounds, invocations, skippedInvocations);
+		log.debug(lastServiceLoopStatistics.toString());
 
 		
 		if (commit.isEmpty()) {
@@ -445,6 +685,86 @@ public class BranchImpl  implements Branch, Runnable {
 		}
 	}
 	
+	/**
+	 * appends the changes made by services since the last call to the commit, and hands them to the scheduler to determine the affected services
+	 * @return whether there were any changes
+	 */
+	private boolean appendServiceChanges(Commit commit, ServiceLoopScheduler scheduler) {
+		var added = stmtAggregator.retrieveAddedStatements();
+		commit.appendAddedStatements(added);
+		var removed = stmtAggregator.retrieveRemovedStatements();
+		commit.appendRemovedStatement(removed);
+		scheduler.recordChanges(added, removed);
+		return !added.isEmpty() || !removed.isEmpty();
+	}
+	
+	/**
+	 * Runs the services in parallel on the service pool, each within a read transaction, when the committed model state equals the current one.
+	 * Otherwise (i.e., when services already changed the model within this write transaction) one after another on this thread, as read transactions would not see these changes.
+	 * Also one after another with inference, as an inference graph updates its internal state upon reads, hence is not safe for concurrent readers.
+	 * In both cases, their changes are then applied in service order.
+	 */
+	private void executeConcurrentServices(List<ConcurrentCommitHandler> concurrentServices, Commit commit
+			, Map<IncrementalCommitHandler, Integer> offsetAdds, Map<IncrementalCommitHandler, Integer> offsetRemoves, boolean isSnapshotCurrent) {
+		List<Model> additions = new ArrayList<>();
+		List<Model> removals = new ArrayList<>();
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (ConcurrentCommitHandler service : concurrentServices) {
+			Model serviceAdditions = ModelFactory.createDefaultModel();
+			Model serviceRemovals = ModelFactory.createDefaultModel();
+			additions.add(serviceAdditions);
+			removals.add(serviceRemovals);
+			int offsetAdd = offsetAdds.get(service);
+			int offsetRemove = offsetRemoves.get(service);
+			tasks.add(() -> {
+				service.handleCommitConcurrently(commit, offsetAdd, offsetRemove, serviceAdditions, serviceRemovals);
+				return null;
+			});
+		}
+		if (isSnapshotCurrent && tasks.size() > 1 && !(model.getGraph() instanceof InfGraph)) {
+			List<Callable<Void>> snapshotTasks = tasks.stream().map(this::withinReadTransaction).toList();
+			try {
+				for (Future<Void> result : servicePool.invokeAll(snapshotTasks)) {
+					result.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(String.format("Interrupted while waiting for concurrent services of commit %s", commit.getCommitId()));
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException re) {
+					throw re;
+				}
+				throw new RuntimeException(e.getCause());
+			}
+		} else {
+			for (Callable<Void> task : tasks) {
+				try {
+					task.call();
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		for (int i = 0; i < concurrentServices.size(); i++) {
+			// as list, as adding/removing a whole model is not notified to the statement aggregator
+			model.remove(removals.get(i).listStatements().toList());
+			model.add(additions.get(i).listStatements().toList());
+		}
+	}
+	
+	private Callable<Void> withinReadTransaction(Callable<Void> task) {
+		return () -> {
+			dataset.begin(ReadWrite.READ);
+			try {
+				return task.call();
+			} finally {
+				dataset.end();
+			}
+		};
+	}
+	
 	private Map<IncrementalCommitHandler, Integer> initServiceOffsets() {
 		Map<IncrementalCommitHandler, Integer> offsets = new HashMap<>();
 		services.stream().forEach(service -> offsets.put(service, 0));
@@ -457,8 +777,7 @@ public class BranchImpl  implements Branch, Runnable {
 			dataset.abort();
 			dataset.end();
 		}
-		stmtAggregator.retrieveAddedStatements();
-		stmtAggregator.retrieveRemovedStatements();
+		stmtAggregator.clear();
 	}
 
 	@Override
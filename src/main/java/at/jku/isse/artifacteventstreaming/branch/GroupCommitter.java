@@ -0,0 +1,165 @@
+package at.jku.isse.artifacteventstreaming.branch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import at.jku.isse.artifacteventstreaming.api.BranchStateUpdater;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Collects commits that completed service processing and persists them as a group,
+ * i.e., with a single event store append and a single cache write batch,
+ * once either maxGroupSize commits are pending or the oldest pending commit waited for maxDelayInMillis.
+ * Only upon persistence, commits are put into the branch's outqueue (in the order they were produced)
+ * and merged incoming commits are marked as finished.
+ *
+ * As the branch model (if persisted itself) already contains the changes of pending commits,
+ * each pending commit is recorded in the branch state cache before its changes are committed to the model,
+ * and those not in the event store upon a crash are appended when the branch state is loaded again (see {@link BranchStateUpdater#afterServicesDeferred(Commit)}).
+ * Trade-off: pending commits are forwarded to other branches only after such a restart.
+ */
+@Slf4j
+public class GroupCommitter {
+
+	private final BranchStateUpdater stateKeeper;
+	private final BlockingQueue<Commit> outQueue;
+	@Getter private final int maxGroupSize;
+	@Getter private final long maxDelayInMillis;
+
+	private final List<PendingCommit> pending = new ArrayList<>();
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	private ScheduledFuture<?> scheduledFlush = null;
+	private MergeCheckpointer mergeCheckpointer;
+
+	/**
+	 * records that an incoming commit is merged, by default directly via the state keeper
+	 */
+	@FunctionalInterface
+	interface MergeCheckpointer {
+		void finishedMerge(Commit mergedIncomingCommit) throws PersistenceException;
+	}
+
+	public GroupCommitter(@NonNull BranchStateUpdater stateKeeper
+			, @NonNull BlockingQueue<Commit> outQueue
+			, int maxGroupSize
+			, long maxDelayInMillis) {
+		if (maxGroupSize < 1) {
+			throw new IllegalArgumentException("Group commit size must be at least 1, but was "+maxGroupSize);
+		}
+		this.stateKeeper = stateKeeper;
+		this.outQueue = outQueue;
+		this.maxGroupSize = maxGroupSize;
+		this.maxDelayInMillis = maxDelayInMillis;
+		this.mergeCheckpointer = stateKeeper::finishedMerge;
+	}
+
+	void setMergeCheckpointer(@NonNull MergeCheckpointer mergeCheckpointer) {
+		this.mergeCheckpointer = mergeCheckpointer;
+	}
+
+	/**
+	 * @param commit that has completed service processing and was registered via {@link BranchStateUpdater#afterServicesDeferred(Commit)}
+	 * @param mergedIncomingCommit the incoming commit that resulted in this commit, to be marked as merged upon persistence, or null for local commits
+	 * if this commit completes a group which then fails to persist, the group remains pending for a later retry
+	 */
+	public synchronized void add(@NonNull Commit commit, Commit mergedIncomingCommit) {
+		add(commit, mergedIncomingCommit != null ? List.of(mergedIncomingCommit) : List.of());
+	}
+
+	/**
+	 * @param mergedIncomingCommits all incoming commits that resulted in this (coalesced merge) commit, marked as merged in their order upon persistence
+	 */
+	public synchronized void add(@NonNull Commit commit, @NonNull List<Commit> mergedIncomingCommits) {
+		pending.add(new PendingCommit(commit, mergedIncomingCommits));
+		if (pending.size() >= maxGroupSize) {
+			try {
+				flush();
+			} catch (PersistenceException e) {
+				// already logged and rescheduled in flush, the commit itself is already applied to the branch model
+			}
+		} else if (scheduledFlush == null && !scheduler.isShutdown()) {
+			scheduledFlush = scheduler.schedule(this::flushQuietly, maxDelayInMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * persists all pending commits now, and then hands them to the outqueue
+	 */
+	public synchronized void flush() throws PersistenceException {
+		if (scheduledFlush != null) {
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+		if (pending.isEmpty()) return;
+		List<Commit> commits = pending.stream().map(PendingCommit::getCommit).toList();
+		try {
+			stateKeeper.afterServices(commits);
+		} catch (PersistenceException e) {
+			log.warn(String.format("Failed to persist group of %s commits, keeping them for retry: %s", commits.size(), e.getMessage()));
+			if (!scheduler.isShutdown()) {
+				scheduledFlush = scheduler.schedule(this::flushQuietly, maxDelayInMillis, TimeUnit.MILLISECONDS);
+			}
+			throw e;
+		}
+		for (PendingCommit pendingCommit : pending) {
+			outQueue.add(pendingCommit.getCommit());
+			for (Commit mergedIncomingCommit : pendingCommit.getMergedIncomingCommits()) {
+				try {
+					mergeCheckpointer.finishedMerge(mergedIncomingCommit);
+				} catch (PersistenceException e) {
+					// same behavior as for non grouped merges, the merge commit is persisted, only the checkpoint is missing
+					log.warn(String.format("Failed to mark merge of commit %s as finished: %s", mergedIncomingCommit.getCommitId(), e.getMessage()));
+				}
+			}
+		}
+		log.debug(String.format("Flushed group of %s commits", pending.size()));
+		pending.clear();
+	}
+
+	private void flushQuietly() {
+		synchronized (this) {
+			scheduledFlush = null;
+			try {
+				flush();
+			} catch (PersistenceException e) {
+				// already logged and rescheduled in flush
+			}
+		}
+	}
+
+	/**
+	 * flushes any pending commits and stops the scheduler, any later added commits are only persisted upon reaching maxGroupSize or explicit flush
+	 */
+	public void shutdown() {
+		try {
+			flush();
+		} catch (PersistenceException e) {
+			log.warn(String.format("Pending commits could not be persisted upon shutdown: %s", e.getMessage()));
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+
+	@RequiredArgsConstructor
+	@Getter
+	private static class PendingCommit {
+		private final Commit commit;
+		private final List<Commit> mergedIncomingCommits;
+	}
+}
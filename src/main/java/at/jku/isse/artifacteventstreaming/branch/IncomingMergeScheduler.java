@@ -0,0 +1,176 @@
+package at.jku.isse.artifacteventstreaming.branch;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.graph.Node;
+
+import at.jku.isse.artifacteventstreaming.api.BranchStateUpdater;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Prepares incoming commits in parallel, off the delivering branches' threads and off the merge thread,
+ * i.e., transfers their statements into the branch model and computes their subjects and triples (see {@link PreparedCommit}),
+ * and then releases them into the branch's inqueue, from where they are applied to the dataset one after another.
+ * A prepared commit may overtake earlier delivered commits that are still being prepared only
+ * if it stems from a different source branch and none of its subjects is touched by these earlier commits,
+ * hence the order of commits per source branch, and of any commits changing the same resources, is kept.
+ *
+ * As commits thus may be merged in a different order than they were delivered, the merge checkpoint (finishedMerge)
+ * only advances to a commit once all earlier delivered commits are merged as well.
+ * Upon recovery, commits merged beyond the checkpoint are delivered again and then ignored as already seen by the branch.
+ */
+@Slf4j
+public class IncomingMergeScheduler {
+
+	private final BranchStateUpdater stateKeeper;
+	private final BlockingQueue<Commit> inQueue;
+	@Getter private final int parallelism;
+	private final ExecutorService preparationPool;
+
+	private final LinkedList<ScheduledCommit> unreleased = new LinkedList<>(); // in delivery order
+	private final LinkedList<ScheduledCommit> unmerged = new LinkedList<>(); // in delivery order
+	private final Map<String, ScheduledCommit> unmergedById = new HashMap<>();
+
+	public IncomingMergeScheduler(@NonNull BranchStateUpdater stateKeeper, @NonNull BlockingQueue<Commit> inQueue, int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Merge preparation requires at least one thread, but was "+parallelism);
+		}
+		this.stateKeeper = stateKeeper;
+		this.inQueue = inQueue;
+		this.parallelism = parallelism;
+		AtomicInteger threadCount = new AtomicInteger();
+		this.preparationPool = Executors.newFixedThreadPool(parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "IncomingMergePreparation-"+threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @param commit delivered to the branch, already recorded via {@link BranchStateUpdater#beforeMerge(Commit)}
+	 * @param preparation executed on the preparation pool before the commit's triples are computed and it is released into the inqueue as {@link PreparedCommit}
+	 */
+	public void submit(@NonNull Commit commit, @NonNull Runnable preparation) {
+		// subjects are needed right away, to keep later conflicting commits from overtaking this one while it is being prepared
+		ScheduledCommit scheduled = new ScheduledCommit(commit, commit.getOriginatingBranchId(), PreparedCommit.subjectsOf(commit));
+		synchronized (this) {
+			unreleased.add(scheduled);
+			unmerged.add(scheduled);
+			unmergedById.put(commit.getCommitId(), scheduled);
+		}
+		preparationPool.execute(() -> {
+			Commit prepared = commit;
+			try {
+				preparation.run();
+				prepared = new PreparedCommit(commit, scheduled.subjects);
+			} catch (RuntimeException e) {
+				// release anyway, the merge then deals with the commit as it would without preparation
+				log.warn(String.format("Preparing incoming commit %s failed with: %s", commit.getCommitId(), e.getMessage()));
+			}
+			synchronized (this) {
+				scheduled.released = prepared;
+				releasePrepared();
+			}
+		});
+	}
+
+	private void releasePrepared() {
+		Set<String> blockedSources = new HashSet<>();
+		Set<Node> blockedSubjects = new HashSet<>();
+		Iterator<ScheduledCommit> iter = unreleased.iterator();
+		while (iter.hasNext()) {
+			ScheduledCommit scheduled = iter.next();
+			if (scheduled.released != null
+					&& !blockedSources.contains(scheduled.source)
+					&& scheduled.subjects.stream().noneMatch(blockedSubjects::contains)) {
+				iter.remove();
+				inQueue.add(scheduled.released);
+			} else { // later commits must not overtake this one if they conflict with it
+				blockedSources.add(scheduled.source);
+				blockedSubjects.addAll(scheduled.subjects);
+			}
+		}
+	}
+
+	/**
+	 * @return whether the commit is submitted but not yet merged, i.e., still being prepared or (as {@link PreparedCommit}) waiting in the inqueue
+	 */
+	public synchronized boolean isPending(@NonNull Commit commit) {
+		return unmergedById.containsKey(commit.getCommitId());
+	}
+
+	/**
+	 * @return the number of commits submitted but not yet released into the inqueue
+	 */
+	public synchronized int getPendingCount() {
+		return unreleased.size();
+	}
+
+	/**
+	 * marks the merge of the commit as finished and advances the merge checkpoint as far as all earlier delivered commits are merged
+	 */
+	public synchronized void finishedMerge(@NonNull Commit mergedCommit) throws PersistenceException {
+		completeMerge(mergedCommit, true);
+	}
+
+	/**
+	 * as without this scheduler, a failed merge is not repeated unless no later commit was merged before a restart, 
+	 * hence it does not hold back the checkpoint but also does not become the checkpoint itself
+	 */
+	public synchronized void failedMerge(@NonNull Commit mergedCommit) throws PersistenceException {
+		completeMerge(mergedCommit, false);
+	}
+
+	private void completeMerge(Commit mergedCommit, boolean isSuccess) throws PersistenceException {
+		ScheduledCommit scheduled = unmergedById.get(mergedCommit.getCommitId());
+		if (scheduled == null) { // not delivered via this scheduler
+			if (isSuccess && unmerged.isEmpty()) {
+				stateKeeper.finishedMerge(mergedCommit);
+			}
+			return;
+		}
+		scheduled.merged = true;
+		scheduled.isSuccess = isSuccess;
+		Commit checkpoint = null;
+		while (!unmerged.isEmpty() && unmerged.getFirst().merged) {
+			ScheduledCommit done = unmerged.removeFirst();
+			unmergedById.remove(done.commit.getCommitId());
+			if (done.isSuccess) {
+				checkpoint = done.commit;
+			}
+		}
+		if (checkpoint != null) {
+			stateKeeper.finishedMerge(checkpoint);
+		}
+	}
+
+	public void shutdown() {
+		preparationPool.shutdown();
+	}
+
+	@RequiredArgsConstructor
+	private static class ScheduledCommit {
+		private final Commit commit;
+		private final String source;
+		private final Set<Node> subjects;
+		private Commit released = null; // the prepared commit, once preparation is done
+		private boolean merged = false;
+		private boolean isSuccess = false;
+	}
+}
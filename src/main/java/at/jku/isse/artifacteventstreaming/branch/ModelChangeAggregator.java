@@ -0,0 +1,37 @@
+package at.jku.isse.artifacteventstreaming.branch;
+
+import java.util.Set;
+
+import org.apache.jena.ontapi.model.OntModel;
+
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Collects the changes made to a model between two commits, 
+ * an addition and a removal of the same statement cancel each other out.
+ */
+public interface ModelChangeAggregator {
+
+	public void registerWithModel(OntModel model);
+	
+	public boolean hasAdditions();
+
+	public boolean hasRemovals();
+	
+	/**
+	 * @return all added statements since the last retrieval, and clears them
+	 */
+	public Set<? extends ContainedStatement> retrieveAddedStatements();
+	
+	/**
+	 * @return all removed statements since the last retrieval, and clears them
+	 */
+	public Set<? extends ContainedStatement> retrieveRemovedStatements();
+	
+	/**
+	 * drops all aggregated additions and removals without creating any statements for them
+	 */
+	public void clear();
+}
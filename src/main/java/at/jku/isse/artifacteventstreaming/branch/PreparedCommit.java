@@ -0,0 +1,148 @@
+package at.jku.isse.artifacteventstreaming.branch;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * An incoming commit together with its subjects and its changes as triples, computed once by the {@link IncomingMergeScheduler} off the merge thread,
+ * hence merging it only needs to apply the triples (see {@link at.jku.isse.artifacteventstreaming.branch.incoming.GraphLevelCommitMerger}).
+ * Otherwise behaves like the wrapped commit.
+ */
+public class PreparedCommit implements Commit {
+
+	@Getter private final Commit delegate;
+	@Getter private final Set<Node> subjects;
+	@Getter private final Triple[] removedTriples;
+	@Getter private final Triple[] addedTriples;
+
+	public PreparedCommit(@NonNull Commit delegate) {
+		this(delegate, subjectsOf(delegate));
+	}
+
+	PreparedCommit(@NonNull Commit delegate, @NonNull Set<Node> subjects) {
+		this.delegate = delegate;
+		this.subjects = subjects;
+		this.removedTriples = toTriples(delegate.getRemovedStatementsAsSet());
+		this.addedTriples = toTriples(delegate.getAddedStatementsAsSet());
+	}
+
+	public static Set<Node> subjectsOf(Commit commit) {
+		Set<Node> subjects = new HashSet<>();
+		for (ContainedStatement stmt : commit.getAddedStatements()) {
+			subjects.add(stmt.getSubject().asNode());
+		}
+		for (ContainedStatement stmt : commit.getRemovedStatements()) {
+			subjects.add(stmt.getSubject().asNode());
+		}
+		return subjects;
+	}
+
+	private static Triple[] toTriples(Collection<ContainedStatement> stmts) {
+		Triple[] triples = new Triple[stmts.size()];
+		int i = 0;
+		for (ContainedStatement stmt : stmts) {
+			triples[i++] = stmt.asTriple();
+		}
+		return triples;
+	}
+
+	@Override
+	public String getCommitMessage() {
+		return delegate.getCommitMessage();
+	}
+
+	@Override
+	public String getCommitId() {
+		return delegate.getCommitId();
+	}
+
+	@Override
+	public String getPrecedingCommitId() {
+		return delegate.getPrecedingCommitId();
+	}
+
+	@Override
+	public String getOriginatingBranchId() {
+		return delegate.getOriginatingBranchId();
+	}
+
+	@Override
+	public void appendAddedStatements(Set<? extends ContainedStatement> stmts) {
+		throw new UnsupportedOperationException("Prepared commits are not to be changed");
+	}
+
+	@Override
+	public void appendRemovedStatement(Set<? extends ContainedStatement> stmts) {
+		throw new UnsupportedOperationException("Prepared commits are not to be changed");
+	}
+
+	@Override
+	public List<ContainedStatement> getAddedStatements() {
+		return delegate.getAddedStatements();
+	}
+
+	@Override
+	public List<ContainedStatement> getRemovedStatements() {
+		return delegate.getRemovedStatements();
+	}
+
+	@Override
+	public Set<ContainedStatement> getAddedStatementsAsSet() {
+		return delegate.getAddedStatementsAsSet();
+	}
+
+	@Override
+	public Set<ContainedStatement> getRemovedStatementsAsSet() {
+		return delegate.getRemovedStatementsAsSet();
+	}
+
+	@Override
+	public int getAdditionCount() {
+		return delegate.getAdditionCount();
+	}
+
+	@Override
+	public int getRemovalCount() {
+		return delegate.getRemovalCount();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return delegate.isEmpty();
+	}
+
+	@Override
+	public void removeEffectlessStatements(int baseAdds, int baseRemoves) {
+		throw new UnsupportedOperationException("Prepared commits are not to be changed");
+	}
+
+	@Override
+	public long getTimeStamp() {
+		return delegate.getTimeStamp();
+	}
+
+	@Override
+	public int hashCode() {
+		return delegate.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof PreparedCommit other) {
+			return delegate.equals(other.delegate);
+		}
+		return delegate.equals(obj);
+	}
+}
@@ -0,0 +1,200 @@
+package at.jku.isse.artifacteventstreaming.branch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
+
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.api.IncrementalCommitHandler;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Decides within a service loop which services to invoke: services that declare their input (predicates and/or types)
+ * are only woken when statements matching their input were added or removed since their last invocation,
+ * services without such declaration are invoked in every round as before.
+ * Services writing the declared input of other services are invoked before those, otherwise the configured order is kept.
+ */
+@Slf4j
+class ServiceLoopScheduler {
+
+	private final Graph graph;
+	private final List<IncrementalCommitHandler> orderedServices;
+	private final Map<IncrementalCommitHandler, ServiceInput> declaredInputs = new HashMap<>();
+	private final boolean isTypeAware; // only if any service reads types, we need to look up the subjects' types
+	private final List<ChangeSummary> changes = new ArrayList<>();
+	private final Map<IncrementalCommitHandler, Integer> seenChanges = new HashMap<>();
+
+	/**
+	 * @param graph to look up the types of changed resources
+	 * @param commit the preliminary commit whose statements are the initial input for all services
+	 */
+	ServiceLoopScheduler(Graph graph, List<IncrementalCommitHandler> services, Commit commit) {
+		this.graph = graph;
+		this.orderedServices = orderByDependencies(services);
+		boolean readsTypes = false;
+		for (IncrementalCommitHandler service : services) {
+			if (service.getReadPredicates() != null || service.getReadTypes() != null) {
+				ServiceInput input = new ServiceInput(toNodes(service.getReadPredicates()), toNodes(service.getReadTypes()));
+				declaredInputs.put(service, input);
+				readsTypes |= !input.types.isEmpty();
+			}
+			seenChanges.put(service, 0);
+		}
+		this.isTypeAware = readsTypes;
+		recordChanges(commit.getAddedStatementsAsSet(), commit.getRemovedStatementsAsSet());
+	}
+
+	List<IncrementalCommitHandler> getOrderedServices() {
+		return orderedServices;
+	}
+
+	/**
+	 * @return whether the service has not declared its input, or any change since its last invocation matches its declared input
+	 */
+	boolean isAffected(IncrementalCommitHandler service) {
+		ServiceInput input = declaredInputs.get(service);
+		if (input == null) {
+			return true;
+		}
+		for (int i = seenChanges.get(service); i < changes.size(); i++) {
+			if (changes.get(i).matches(input)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * the service has seen (or was not interested in) all changes recorded so far, including its own
+	 */
+	void markSeen(IncrementalCommitHandler service) {
+		seenChanges.put(service, changes.size());
+	}
+
+	void recordChanges(Collection<? extends ContainedStatement> added, Collection<? extends ContainedStatement> removed) {
+		if (declaredInputs.isEmpty() || (added.isEmpty() && removed.isEmpty())) {
+			return; // nothing to decide upon
+		}
+		ChangeSummary summary = new ChangeSummary();
+		added.forEach(stmt -> summary.add(stmt.asTriple()));
+		removed.forEach(stmt -> summary.add(stmt.asTriple()));
+		changes.add(summary);
+	}
+
+	private static Set<Node> toNodes(Set<? extends RDFNode> rdfNodes) {
+		Set<Node> nodes = new HashSet<>();
+		if (rdfNodes != null) {
+			rdfNodes.forEach(rdfNode -> nodes.add(rdfNode.asNode()));
+		}
+		return nodes;
+	}
+
+	/**
+	 * stable topological order: the first service in configured order whose (declared) input providers have all been placed comes next,
+	 * upon cyclic dependencies the configured order is used
+	 */
+	static List<IncrementalCommitHandler> orderByDependencies(List<IncrementalCommitHandler> services) {
+		int size = services.size();
+		int[] providerCount = new int[size];
+		boolean[][] provides = new boolean[size][size];
+		boolean hasDependencies = false;
+		for (int writer = 0; writer < size; writer++) {
+			for (int reader = 0; reader < size; reader++) {
+				if (writer != reader && writesInputOf(services.get(writer), services.get(reader))) {
+					provides[writer][reader] = true;
+					providerCount[reader]++;
+					hasDependencies = true;
+				}
+			}
+		}
+		if (!hasDependencies) {
+			return services;
+		}
+		List<IncrementalCommitHandler> ordered = new ArrayList<>(size);
+		boolean[] isPlaced = new boolean[size];
+		while (ordered.size() < size) {
+			int next = -1;
+			for (int i = 0; i < size && next < 0; i++) {
+				if (!isPlaced[i] && providerCount[i] == 0) {
+					next = i;
+				}
+			}
+			if (next < 0) {
+				log.debug("Cyclic dependencies among services, keeping their configured order");
+				return services;
+			}
+			isPlaced[next] = true;
+			ordered.add(services.get(next));
+			for (int reader = 0; reader < size; reader++) {
+				if (provides[next][reader]) {
+					providerCount[reader]--;
+				}
+			}
+		}
+		return ordered;
+	}
+
+	private static boolean writesInputOf(IncrementalCommitHandler writer, IncrementalCommitHandler reader) {
+		return intersects(writer.getWrittenPredicates(), reader.getReadPredicates())
+				|| intersects(writer.getWrittenTypes(), reader.getReadTypes());
+	}
+
+	private static boolean intersects(Set<?> first, Set<?> second) {
+		return first != null && second != null && first.stream().anyMatch(second::contains);
+	}
+
+	private static class ServiceInput {
+		private final Set<Node> predicates;
+		private final Set<Node> types;
+
+		private ServiceInput(Set<Node> predicates, Set<Node> types) {
+			this.predicates = predicates;
+			this.types = types;
+		}
+	}
+
+	/**
+	 * predicates and types touched by a set of changes
+	 */
+	private class ChangeSummary {
+		private final Set<Node> predicates = new HashSet<>();
+		private final Set<Node> types = new HashSet<>();
+		private final Set<Node> subjects = new HashSet<>();
+
+		private void add(Triple triple) {
+			predicates.add(triple.getPredicate());
+			if (isTypeAware) {
+				if (triple.getPredicate().equals(RDF.type.asNode())) {
+					types.add(triple.getObject());
+				}
+				if (subjects.add(triple.getSubject())) {
+					ExtendedIterator<Triple> typeIter = graph.find(triple.getSubject(), RDF.type.asNode(), Node.ANY);
+					try {
+						typeIter.forEachRemaining(typeTriple -> types.add(typeTriple.getObject()));
+					} finally {
+						typeIter.close();
+					}
+				}
+			}
+		}
+
+		private boolean matches(ServiceInput input) {
+			return input.predicates.stream().anyMatch(predicates::contains)
+					|| input.types.stream().anyMatch(types::contains);
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package at.jku.isse.artifacteventstreaming.branch;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Outcome of the service loop for a single commit: how many rounds it took, 
+ * and how often services were invoked or skipped as none of their declared input changed.
+ */
+@RequiredArgsConstructor
+@Getter
+public class ServiceLoopStatistics {
+
+	private final String commitId;
+	private final int rounds;
+	private final int invocations;
+	private final int skippedInvocations;
+	
+	@Override
+	public String toString() {
+		return "ServiceLoopStatistics [commit=" + commitId + ", rounds=" + rounds + ", invocations=" + invocations
+				+ ", skipped=" + skippedInvocations + "]";
+	}
+}
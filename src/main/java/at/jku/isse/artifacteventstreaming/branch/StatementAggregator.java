@@ -17,7 +17,7 @@ import at.jku.isse.artifacteventstreaming.replay.ContainedStatementImpl;
 import lombok.RequiredArgsConstructor;
 
 @RequiredArgsConstructor
-public class StatementAggregator extends StatementListener {
+public class StatementAggregator extends StatementListener implements ModelChangeAggregator {
 
 	private final Set<Statement> addedStatements = new LinkedHashSet<>();
 	private final Set<Statement> removedStatements = new LinkedHashSet<>();
@@ -52,27 +52,38 @@ public class StatementAggregator extends StatementListener {
 		}
 	}
 	
+	@Override
 	public boolean hasAdditions() {
 		return !addedStatements.isEmpty();
 	}
 
+	@Override
 	public boolean hasRemovals() {
 		return !removedStatements.isEmpty();
 	}
 
 	
+	@Override
 	public Set<? extends ContainedStatement> retrieveAddedStatements() {		
 		var set = addedStatements.stream().map(ContainedStatementImpl::new).collect(Collectors.toSet());
 		addedStatements.clear();
 		return set;
 	}
 	
+	@Override
 	public Set<? extends ContainedStatement> retrieveRemovedStatements() {
 		var set = removedStatements.stream().map(ContainedStatementImpl::new).collect(Collectors.toSet());
 		removedStatements.clear();
 		return set;
 	}
 	
+	@Override
+	public void clear() {
+		addedStatements.clear();
+		removedStatements.clear();
+	}
+	
+	@Override
 	public void registerWithModel(OntModel model) {
 		// when using inference, this does not register the listener at the right graph:	https://github.com/apache/jena/issues/2868		
 		if (model.getGraph() instanceof InfGraph infG) {
@@ -0,0 +1,166 @@
+package at.jku.isse.artifacteventstreaming.branch;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphListener;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.ontapi.UnionGraph;
+import org.apache.jena.ontapi.model.OntModel;
+import org.apache.jena.reasoner.InfGraph;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.replay.ContainedStatementImpl;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Graph level counterpart to {@link StatementAggregator}: listens directly to triple events (no Statement wrapping per event)
+ * and keeps added and removed triples in insertion ordered {@link TripleDeltaSet}s where inverse add/remove pairs cancel out in O(1).
+ * ContainedStatements are only created upon retrieval, i.e., when a commit is built, and retain the order in which changes occurred.
+ */
+public class TripleDeltaAggregator implements GraphListener, ModelChangeAggregator {
+
+	private final TripleDeltaSet addedTriples = new TripleDeltaSet();
+	private final TripleDeltaSet removedTriples = new TripleDeltaSet();
+	private OntModel model;
+
+	@Override
+	public void registerWithModel(OntModel model) {
+		this.model = model;
+		// when using inference, we need to register at the raw graph: https://github.com/apache/jena/issues/2868
+		if (model.getGraph() instanceof InfGraph infG) {
+			Graph raw = infG.getRawGraph();
+			if (raw instanceof UnionGraph ugraph) {
+				ugraph.getEventManager().register(this);
+			}
+		} else {
+			model.getGraph().getEventManager().register(this);
+		}
+	}
+
+	private void added(Triple triple) {
+		// if the remove set contains exactly this triple, then we wont add this triple, as the two are inverse
+		if (!removedTriples.remove(triple)) {
+			addedTriples.add(triple);
+		}
+	}
+
+	private void removed(Triple triple) {
+		// if the added set contains exactly this triple, then we wont add this triple, as the two are inverse
+		if (!addedTriples.remove(triple)) {
+			removedTriples.add(triple);
+		}
+	}
+
+	@Override
+	public boolean hasAdditions() {
+		return !addedTriples.isEmpty();
+	}
+
+	@Override
+	public boolean hasRemovals() {
+		return !removedTriples.isEmpty();
+	}
+
+	@Override
+	public Set<? extends ContainedStatement> retrieveAddedStatements() {
+		return toStatements(addedTriples);
+	}
+
+	@Override
+	public Set<? extends ContainedStatement> retrieveRemovedStatements() {
+		return toStatements(removedTriples);
+	}
+
+	private Set<ContainedStatement> toStatements(TripleDeltaSet triples) {
+		Set<ContainedStatement> stmts = new LinkedHashSet<>(Math.max(16, (int) (triples.size()/0.75f)+1));
+		triples.forEach(triple -> stmts.add(new ContainedStatementImpl(model.asStatement(triple))));
+		triples.clear();
+		return stmts;
+	}
+
+	@Override
+	public void clear() {
+		addedTriples.clear();
+		removedTriples.clear();
+	}
+
+	// GraphListener:
+
+	@Override
+	public void notifyAddTriple(Graph g, Triple t) {
+		added(t);
+	}
+
+	@Override
+	public void notifyAddArray(Graph g, Triple[] triples) {
+		// bulk event, e.g., from a graph level merge: size the set once instead of growing repeatedly
+		addedTriples.ensureCapacity(triples.length);
+		for (Triple triple : triples) {
+			added(triple);
+		}
+	}
+
+	@Override
+	public void notifyAddList(Graph g, List<Triple> triples) {
+		triples.forEach(this::added);
+	}
+
+	@Override
+	public void notifyAddIterator(Graph g, Iterator<Triple> it) {
+		it.forEachRemaining(this::added);
+	}
+
+	@Override
+	public void notifyAddGraph(Graph g, Graph added) {
+		ExtendedIterator<Triple> it = added.find();
+		try {
+			it.forEachRemaining(this::added);
+		} finally {
+			it.close();
+		}
+	}
+
+	@Override
+	public void notifyDeleteTriple(Graph g, Triple t) {
+		removed(t);
+	}
+
+	@Override
+	public void notifyDeleteList(Graph g, List<Triple> triples) {
+		triples.forEach(this::removed);
+	}
+
+	@Override
+	public void notifyDeleteArray(Graph g, Triple[] triples) {
+		removedTriples.ensureCapacity(triples.length);
+		for (Triple triple : triples) {
+			removed(triple);
+		}
+	}
+
+	@Override
+	public void notifyDeleteIterator(Graph g, Iterator<Triple> it) {
+		it.forEachRemaining(this::removed);
+	}
+
+	@Override
+	public void notifyDeleteGraph(Graph g, Graph removed) {
+		ExtendedIterator<Triple> it = removed.find();
+		try {
+			it.forEachRemaining(this::removed);
+		} finally {
+			it.close();
+		}
+	}
+
+	@Override
+	public void notifyEvent(Graph source, Object value) {
+		// as with the StatementListener, generic graph events (e.g., removeAll) carry no triples, these are notified individually
+	}
+}
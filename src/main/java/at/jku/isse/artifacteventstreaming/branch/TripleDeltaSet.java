@@ -0,0 +1,182 @@
+package at.jku.isse.artifacteventstreaming.branch;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.apache.jena.graph.Triple;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Insertion ordered set of triples based on open addressing (linear probing) over primitive arrays.
+ * Triples are kept in a dense array in insertion order, removal leaves a gap that is compacted upon growing,
+ * the hash table only stores (entry position +1) per slot, hence add, remove and contains are O(1)
+ * and require no per-entry node objects as in a LinkedHashSet.
+ *
+ * Not thread-safe, as is the model change notification it is used for.
+ */
+final class TripleDeltaSet {
+
+	private static final int EMPTY = 0;
+	private static final int DELETED = -1;
+	private static final int DEFAULT_CAPACITY = 16;
+	// upon clear, we dont keep huge arrays from a bulk import around
+	private static final int MAX_RETAINED_CAPACITY = 4096;
+
+	private Triple[] entries;
+	private int[] hashes;
+	private int[] slots;
+	private int next = 0; // next free position in entries
+	private int size = 0;
+
+	TripleDeltaSet() {
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	private void allocate(int capacity) {
+		entries = new Triple[capacity];
+		hashes = new int[capacity];
+		slots = new int[capacity*2];
+		next = 0;
+		size = 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return true if the triple was not yet contained
+	 */
+	boolean add(Triple triple) {
+		int hash = mix(triple.hashCode());
+		if (findSlot(triple, hash) >= 0) {
+			return false;
+		}
+		if (next == entries.length) {
+			growOrCompact();
+		}
+		entries[next] = triple;
+		hashes[next] = hash;
+		insertIntoSlots(hash, next);
+		next++;
+		size++;
+		return true;
+	}
+
+	/**
+	 * @return true if the triple was contained (and is now removed)
+	 */
+	boolean remove(Triple triple) {
+		if (size == 0) {
+			return false;
+		}
+		int slot = findSlot(triple, mix(triple.hashCode()));
+		if (slot < 0) {
+			return false;
+		}
+		entries[slots[slot]-1] = null;
+		slots[slot] = DELETED;
+		size--;
+		return true;
+	}
+
+	boolean contains(Triple triple) {
+		return size > 0 && findSlot(triple, mix(triple.hashCode())) >= 0;
+	}
+
+	/**
+	 * iterates over all contained triples in insertion order
+	 */
+	void forEach(Consumer<Triple> consumer) {
+		for (int i = 0; i < next; i++) {
+			if (entries[i] != null) {
+				consumer.accept(entries[i]);
+			}
+		}
+	}
+
+	void clear() {
+		if (entries.length > MAX_RETAINED_CAPACITY) {
+			allocate(DEFAULT_CAPACITY);
+		} else {
+			Arrays.fill(entries, 0, next, null);
+			Arrays.fill(slots, EMPTY);
+			next = 0;
+			size = 0;
+		}
+	}
+
+	/**
+	 * prepares for adding up to the given number of further triples without intermediate growing, e.g., upon a bulk graph event
+	 */
+	void ensureCapacity(int additionalTriples) {
+		if (next + additionalTriples > entries.length) {
+			int capacity = entries.length;
+			while (capacity < size + additionalTriples) {
+				capacity *= 2;
+			}
+			rehash(capacity);
+		}
+	}
+
+	private int findSlot(Triple triple, int hash) {
+		int mask = slots.length-1;
+		int pos = hash & mask;
+		while (true) {
+			int slotValue = slots[pos];
+			if (slotValue == EMPTY) {
+				return -1;
+			}
+			if (slotValue != DELETED) {
+				int entryPos = slotValue-1;
+				if (hashes[entryPos] == hash && triple.equals(entries[entryPos])) {
+					return pos;
+				}
+			}
+			pos = (pos+1) & mask;
+		}
+	}
+
+	private void insertIntoSlots(int hash, int entryPos) {
+		int mask = slots.length-1;
+		int pos = hash & mask;
+		while (slots[pos] != EMPTY) {
+			pos = (pos+1) & mask;
+		}
+		slots[pos] = entryPos+1;
+	}
+
+	/**
+	 * the entry array is full: when at least half are removal gaps compact into the same capacity, otherwise double the capacity,
+	 * in both cases the slots are rebuilt, which also drops all DELETED markers
+	 */
+	private void growOrCompact() {
+		rehash(size*2 <= entries.length ? entries.length : entries.length*2);
+	}
+
+	private void rehash(int capacity) {
+		Triple[] oldEntries = entries;
+		int[] oldHashes = hashes;
+		int oldNext = next;
+		allocate(capacity);
+		for (int i = 0; i < oldNext; i++) {
+			if (oldEntries[i] != null) {
+				entries[next] = oldEntries[i];
+				hashes[next] = oldHashes[i];
+				insertIntoSlots(oldHashes[i], next);
+				next++;
+				size++;
+			}
+		}
+	}
+
+	private static int mix(int hash) {
+		// spread higher bits as slot positions use the lower bits only
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,83 @@
+package at.jku.isse.artifacteventstreaming.branch.incoming;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.reasoner.InfGraph;
+import org.apache.jena.vocabulary.RDFS;
+
+import at.jku.isse.artifacteventstreaming.api.AbstractHandlerBase;
+import at.jku.isse.artifacteventstreaming.api.Branch;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.CommitHandler;
+import at.jku.isse.artifacteventstreaming.api.ServiceFactory;
+import at.jku.isse.artifacteventstreaming.branch.PreparedCommit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Same effect as {@link CompleteCommitMerger}, but applies a commit directly to the branch model's graph with one bulk delete and one bulk add,
+ * hence graph listeners (e.g., the branch's change aggregator) receive one array event each instead of one event per statement.
+ * With inference, the model's changes need to pass through the reasoner, hence we then apply the commit on the model level as the CompleteCommitMerger does.
+ */
+@Slf4j
+public class GraphLevelCommitMerger extends AbstractHandlerBase {
+
+	private Branch branch;
+
+	public GraphLevelCommitMerger(Branch branch) {
+		super("GraphMergerFor"+branch.getBranchName(), branch.getBranchResource().getModel());
+		this.branch = branch;
+	}
+
+	public GraphLevelCommitMerger(String name, Branch branch) {
+		super(name, branch.getBranchResource().getModel());
+		this.branch = branch;
+	}
+
+	@Override
+	public void handleCommit(Commit commit) {
+		if (!commit.isEmpty()) {
+			log.debug(String.format("About to apply commit %s with %s additions and %s removals to graph of branch %s", commit.getCommitId(), commit.getAdditionCount(), commit.getRemovalCount(), branch.getBranchId()));
+			Graph graph = branch.getModel().getGraph();
+			if (graph instanceof InfGraph) {
+				branch.getModel().remove(commit.getRemovedStatements().stream().map(Statement.class::cast).toList()); //first removal, then adding
+				branch.getModel().add(commit.getAddedStatements().stream().map(Statement.class::cast).toList());
+			} else {
+				// prepared commits come with their triples already computed off the merge thread
+				PreparedCommit prepared = commit instanceof PreparedCommit preparedCommit ? preparedCommit : new PreparedCommit(commit);
+				if (commit.getRemovalCount() > 0) {
+					GraphUtil.delete(graph, prepared.getRemovedTriples()); //first removal, then adding
+				}
+				if (commit.getAdditionCount() > 0) {
+					GraphUtil.add(graph, prepared.getAddedTriples());
+				}
+			}
+			log.debug(String.format("Applied commit %s to branch %s", commit.getCommitId(), branch.getBranchId()));
+		}
+	}
+
+	public static String getWellknownServiceTypeURI() {
+		return CommitHandler.serviceTypeBaseURI+GraphLevelCommitMerger.class.getSimpleName();
+	}
+
+	public static ServiceFactory getServiceFactory() {
+		return (branch, serviceConfigEntryPoint) -> {
+			String name;
+			Resource labelRes = serviceConfigEntryPoint.getPropertyResourceValue(RDFS.label);
+			if (labelRes == null) {
+				name = "GraphMergerFor"+branch.getBranchName();
+			} else {
+				name = labelRes.asLiteral().getString();
+			}
+			return new GraphLevelCommitMerger(name, branch);
+		};
+	}
+
+	@Override
+	protected String getServiceTypeURI() {
+		return getWellknownServiceTypeURI();
+	}
+}
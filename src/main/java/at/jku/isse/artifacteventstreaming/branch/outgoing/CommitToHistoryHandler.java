@@ -8,7 +8,7 @@ import at.jku.isse.artifacteventstreaming.api.BranchStateCache;
 import at.jku.isse.artifacteventstreaming.api.Commit;
 import at.jku.isse.artifacteventstreaming.api.CommitHandler;
 import at.jku.isse.artifacteventstreaming.api.ServiceFactory;
-import at.jku.isse.artifacteventstreaming.replay.InMemoryHistoryRepository;
+import at.jku.isse.artifacteventstreaming.replay.AppendableHistoryRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -19,10 +19,10 @@ public class CommitToHistoryHandler extends AbstractHandlerBase {
 	public static final String CACHE_ENTRY_PREFIX = "LAST_COMMIT_TRANSFORMED_TO_HISTORY";
 	
 	private final Branch sourceBranch;
-	private final InMemoryHistoryRepository historyRepo;
+	private final AppendableHistoryRepository historyRepo;
 	private final BranchStateCache cache;	
 	
-	public CommitToHistoryHandler(Branch sourceBranch, InMemoryHistoryRepository historyRepo,
+	public CommitToHistoryHandler(Branch sourceBranch, AppendableHistoryRepository historyRepo,
 			 BranchStateCache cache) {
 		super(CommitToHistoryHandler.class.getSimpleName()+sourceBranch.getBranchName(), sourceBranch.getBranchResource().getModel());
 		this.sourceBranch = sourceBranch;
@@ -77,7 +77,7 @@ public class CommitToHistoryHandler extends AbstractHandlerBase {
 		return CACHE_ENTRY_PREFIX+SERVICE_TYPE_URI+sourceBranch.getBranchId();
 	}
 	
-	public static ServiceFactory getServiceFactory(BranchStateCache cache, InMemoryHistoryRepository historyRepo) {
+	public static ServiceFactory getServiceFactory(BranchStateCache cache, AppendableHistoryRepository historyRepo) {
 		if (factory == null) {
 			factory = new DefaultServiceFactory(cache, historyRepo);
 		}
@@ -90,7 +90,7 @@ public class CommitToHistoryHandler extends AbstractHandlerBase {
 	public static class DefaultServiceFactory implements ServiceFactory {
 
 		private final BranchStateCache cache;
-		private final InMemoryHistoryRepository historyRepo;
+		private final AppendableHistoryRepository historyRepo;
 		
 		@Override
 		public CommitHandler getCommitHandlerInstanceFor(Branch sourceBranch
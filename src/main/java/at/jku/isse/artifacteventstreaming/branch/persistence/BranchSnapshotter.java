@@ -0,0 +1,263 @@
+package at.jku.isse.artifacteventstreaming.branch.persistence;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.ontapi.model.OntIndividual;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+
+import at.jku.isse.artifacteventstreaming.api.AbstractHandlerBase;
+import at.jku.isse.artifacteventstreaming.api.Branch;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.CommitHandler;
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.api.ServiceFactory;
+import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Periodically writes the branch model as gzipped RDF Thrift together with the id of the last commit it covers,
+ * so that a branch whose dataset is not persisted (e.g., in-memory) only needs to replay the commits after the newest snapshot upon startup
+ * instead of its complete history.
+ * Registered as outgoing commit distributer, hence only sees commits that are persisted and committed to the branch dataset,
+ * snapshots are written in the background within a read transaction, thus may contain changes of later commits too, which replay then reapplies without effect.
+ */
+@Slf4j
+public class BranchSnapshotter extends AbstractHandlerBase {
+
+	public static final String SERVICE_TYPE_URI = CommitHandler.serviceTypeBaseURI+BranchSnapshotter.class.getSimpleName();
+	public static final String SNAPSHOT_FILE_PREFIX = "snapshot-";
+	public static final String SNAPSHOT_FILE_SUFFIX = ".rdft.gz";
+	public static final int SNAPSHOTS_TO_KEEP = 2;
+
+	private final Branch branch;
+	private final Path snapshotDirectory;
+	private final int commitsPerSnapshot;
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "BranchSnapshotter");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final AtomicReference<String> pendingCommitId = new AtomicReference<>(); // newest commit to cover by the next snapshot
+	private int commitsSinceSnapshot = 0;
+	private long lastSnapshotNumber = 0;
+
+	/**
+	 * @param baseDirectory under which a directory per branch is used for its snapshots
+	 * @param commitsPerSnapshot after how many commits a new snapshot is written
+	 */
+	public BranchSnapshotter(Branch branch, Path baseDirectory, int commitsPerSnapshot) {
+		super(BranchSnapshotter.class.getSimpleName()+branch.getBranchName(), branch.getBranchResource().getModel());
+		if (commitsPerSnapshot < 1) {
+			throw new IllegalArgumentException("At least one commit per snapshot required, but was "+commitsPerSnapshot);
+		}
+		this.branch = branch;
+		this.snapshotDirectory = baseDirectory.resolve(URLEncoder.encode(branch.getBranchId(), StandardCharsets.UTF_8));
+		this.commitsPerSnapshot = commitsPerSnapshot;
+	}
+
+	@Override
+	public void handleCommit(Commit commit) {
+		commitsSinceSnapshot++;
+		if (commitsSinceSnapshot >= commitsPerSnapshot) {
+			commitsSinceSnapshot = 0;
+			if (pendingCommitId.getAndSet(commit.getCommitId()) == null) { // otherwise the already scheduled write picks up the newer commit id
+				writer.execute(this::writePendingSnapshot);
+			}
+		}
+	}
+
+	private void writePendingSnapshot() {
+		String commitId = pendingCommitId.getAndSet(null);
+		try {
+			writeSnapshot(commitId);
+		} catch (PersistenceException e) {
+			// we continue, the next snapshot might succeed, until then recovery needs to replay more commits
+		}
+	}
+
+	/**
+	 * @param coveredCommitId the last commit contained in the snapshot, must already be committed to the branch dataset
+	 * @return the written snapshot file
+	 */
+	public synchronized Path writeSnapshot(String coveredCommitId) throws PersistenceException {
+		try {
+			Files.createDirectories(snapshotDirectory);
+			lastSnapshotNumber = Math.max(lastSnapshotNumber+1, System.currentTimeMillis());
+			Path snapshot = snapshotDirectory.resolve(String.format("%s%020d%s", SNAPSHOT_FILE_PREFIX, lastSnapshotNumber, SNAPSHOT_FILE_SUFFIX));
+			Path tempFile = snapshotDirectory.resolve(snapshot.getFileName()+".tmp");
+			branch.getDataset().begin(ReadWrite.READ);
+			try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeUTF(coveredCommitId);
+				RDFDataMgr.write((OutputStream)out, getBranchGraph(), Lang.RDFTHRIFT);
+			} finally {
+				branch.getDataset().end();
+			}
+			Files.move(tempFile, snapshot, StandardCopyOption.ATOMIC_MOVE);
+			log.debug(String.format("Wrote snapshot %s of branch %s covering commit %s", snapshot, branch.getBranchId(), coveredCommitId));
+			removeOutdatedSnapshots();
+			return snapshot;
+		} catch (IOException e) {
+			String msg = String.format("Cannot write snapshot of branch %s covering commit %s with error %s", branch.getBranchId(), coveredCommitId, e.getMessage());
+			log.warn(msg);
+			throw new PersistenceException(msg);
+		}
+	}
+
+	/**
+	 * Loads the newest snapshot into the empty branch model and replays all commits after the one covered by the snapshot,
+	 * or the complete history if there is no snapshot yet. Does nothing when the branch model already contains statements, i.e., its dataset is persisted.
+	 * To be called after the branch's state was loaded and before its commit handlers are started.
+	 * @return the number of replayed commits
+	 */
+	public synchronized int restore() throws PersistenceException {
+		branch.getDataset().begin(ReadWrite.WRITE);
+		try {
+			Graph graph = getBranchGraph();
+			if (!graph.isEmpty()) {
+				log.debug(String.format("Branch %s not restored from snapshot as its model is not empty", branch.getBranchId()));
+				branch.getDataset().abort();
+				return 0;
+			}
+			List<Commit> commitsToReplay;
+			Optional<Path> snapshot = findNewestSnapshot();
+			if (snapshot.isPresent()) {
+				String coveredCommitId = readSnapshot(snapshot.get(), graph);
+				commitsToReplay = branch.getStateKeeper().getCommitsForwardIncludingFrom(coveredCommitId);
+				if (commitsToReplay.isEmpty()) {
+					throw new PersistenceException(String.format("Snapshot %s covers commit %s unknown to branch %s", snapshot.get(), coveredCommitId, branch.getBranchId()));
+				}
+				commitsToReplay = commitsToReplay.subList(1, commitsToReplay.size()); // the covered one is contained already
+			} else {
+				commitsToReplay = branch.getStateKeeper().getHistory();
+			}
+			for (Commit commit : commitsToReplay) {
+				GraphUtil.delete(graph, toTriples(commit.getRemovedStatements()));
+				GraphUtil.add(graph, toTriples(commit.getAddedStatements()));
+			}
+			branch.getDataset().commit();
+			log.info(String.format("Restored branch %s from snapshot %s replaying %s commits", branch.getBranchId(), snapshot.orElse(null), commitsToReplay.size()));
+			return commitsToReplay.size();
+		} catch (PersistenceException e) {
+			log.warn(e.getMessage());
+			branch.getDataset().abort();
+			throw e;
+		} finally {
+			branch.getDataset().end();
+		}
+	}
+
+	private String readSnapshot(Path snapshot, Graph graph) throws PersistenceException {
+		try (DataInputStream in = new DataInputStream(new GZIPInputStream(Files.newInputStream(snapshot)))) {
+			String coveredCommitId = in.readUTF();
+			RDFDataMgr.read(graph, (InputStream)in, Lang.RDFTHRIFT);
+			return coveredCommitId;
+		} catch (Exception e) {
+			throw new PersistenceException(String.format("Cannot read snapshot %s of branch %s with error %s", snapshot, branch.getBranchId(), e.getMessage()));
+		}
+	}
+
+	public Optional<Path> findNewestSnapshot() throws PersistenceException {
+		List<Path> snapshots = listSnapshots();
+		return snapshots.isEmpty() ? Optional.empty() : Optional.of(snapshots.get(snapshots.size()-1));
+	}
+
+	/**
+	 * @return all snapshots of this branch, oldest first
+	 */
+	private List<Path> listSnapshots() throws PersistenceException {
+		if (!Files.isDirectory(snapshotDirectory)) {
+			return List.of();
+		}
+		try (Stream<Path> files = Files.list(snapshotDirectory)) {
+			return files.filter(file -> file.getFileName().toString().startsWith(SNAPSHOT_FILE_PREFIX) && file.getFileName().toString().endsWith(SNAPSHOT_FILE_SUFFIX))
+					.sorted() // names are zero padded
+					.toList();
+		} catch (IOException e) {
+			throw new PersistenceException(String.format("Cannot list snapshots of branch %s with error %s", branch.getBranchId(), e.getMessage()));
+		}
+	}
+
+	private void removeOutdatedSnapshots() throws PersistenceException {
+		List<Path> snapshots = listSnapshots();
+		for (Path outdated : snapshots.subList(0, Math.max(0, snapshots.size()-SNAPSHOTS_TO_KEEP))) {
+			try {
+				Files.deleteIfExists(outdated);
+			} catch (IOException e) {
+				log.warn(String.format("Cannot remove outdated snapshot %s: %s", outdated, e.getMessage()));
+			}
+		}
+	}
+
+	private Graph getBranchGraph() {
+		// the raw data without any inferred statements
+		return branch.getDataset().asDatasetGraph().getDefaultGraph();
+	}
+
+	private static Triple[] toTriples(List<ContainedStatement> statements) {
+		return statements.stream().map(ContainedStatement::asTriple).toArray(Triple[]::new);
+	}
+
+	/**
+	 * waits for any scheduled snapshot to be written, no further snapshots are written afterwards
+	 */
+	public void shutdown() {
+		writer.shutdown();
+		try {
+			writer.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	protected String getServiceTypeURI() {
+		return SERVICE_TYPE_URI;
+	}
+
+	public static ServiceFactory getServiceFactory(Path baseDirectory, int commitsPerSnapshot) {
+		return new DefaultServiceFactory(baseDirectory, commitsPerSnapshot);
+	}
+
+	@RequiredArgsConstructor
+	public static class DefaultServiceFactory implements ServiceFactory {
+
+		private final Path baseDirectory;
+		private final int commitsPerSnapshot;
+
+		/**
+		 * also restores the branch, as handlers are created after the branch's state is loaded and before its handlers are started
+		 */
+		@Override
+		public CommitHandler getCommitHandlerInstanceFor(Branch branch, OntIndividual serviceConfigEntryPoint) throws Exception {
+			BranchSnapshotter snapshotter = new BranchSnapshotter(branch, baseDirectory, commitsPerSnapshot);
+			snapshotter.restore();
+			return snapshotter;
+		}
+	}
+}
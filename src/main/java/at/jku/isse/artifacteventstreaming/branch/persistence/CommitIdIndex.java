@@ -0,0 +1,155 @@
+package at.jku.isse.artifacteventstreaming.branch.persistence;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Append-only log of commit ids, where the position of an id is the commit's sequence number.
+ * Ids in canonical UUID form (as generated for commits) are stored as two longs,
+ * an open addressing hash table (slot -> sequence number +1) provides O(1) lookup of the sequence number for an id.
+ * Any other ids are kept as strings in a separate map.
+ *
+ * Not thread-safe, access is guarded by the StateKeeperImpl.
+ */
+final class CommitIdIndex {
+
+	private static final int EMPTY = 0;
+	private static final int DEFAULT_CAPACITY = 64;
+
+	private long[] mostSigBits = new long[DEFAULT_CAPACITY];
+	private long[] leastSigBits = new long[DEFAULT_CAPACITY];
+	private int[] slots = new int[DEFAULT_CAPACITY*2];
+	private int size = 0;
+	// for ids that are not a canonical UUID
+	private final Map<String, Integer> otherIds = new HashMap<>();
+	private final Map<Integer, String> otherIdsBySequenceNr = new HashMap<>();
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * appends the id with the next sequence number, if the id is already contained, lookups will continue to return its first sequence number
+	 * @return the sequence number of the appended id
+	 */
+	int append(String commitId) {
+		if (size == mostSigBits.length) {
+			grow();
+		}
+		int sequenceNr = size;
+		if (isCanonicalUUID(commitId)) {
+			UUID uuid = UUID.fromString(commitId);
+			mostSigBits[sequenceNr] = uuid.getMostSignificantBits();
+			leastSigBits[sequenceNr] = uuid.getLeastSignificantBits();
+			if (findSlot(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) < 0) {
+				insertIntoSlots(sequenceNr);
+			}
+		} else {
+			otherIds.putIfAbsent(commitId, sequenceNr);
+			otherIdsBySequenceNr.put(sequenceNr, commitId);
+		}
+		size++;
+		return sequenceNr;
+	}
+
+	/**
+	 * @return the sequence number of the id, or -1 if not contained
+	 */
+	int indexOf(String commitId) {
+		if (commitId == null) {
+			return -1;
+		}
+		if (isCanonicalUUID(commitId)) {
+			UUID uuid = UUID.fromString(commitId);
+			int slot = findSlot(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+			return slot < 0 ? -1 : slots[slot]-1;
+		} else {
+			return otherIds.getOrDefault(commitId, -1);
+		}
+	}
+
+	boolean contains(String commitId) {
+		return indexOf(commitId) >= 0;
+	}
+
+	String get(int sequenceNr) {
+		if (sequenceNr < 0 || sequenceNr >= size) {
+			throw new IndexOutOfBoundsException(sequenceNr);
+		}
+		String otherId = otherIdsBySequenceNr.get(sequenceNr);
+		if (otherId != null) {
+			return otherId;
+		}
+		return new UUID(mostSigBits[sequenceNr], leastSigBits[sequenceNr]).toString();
+	}
+
+	private int findSlot(long msb, long lsb) {
+		int mask = slots.length-1;
+		int pos = hash(msb, lsb) & mask;
+		while (true) {
+			int slotValue = slots[pos];
+			if (slotValue == EMPTY) {
+				return -1;
+			}
+			int sequenceNr = slotValue-1;
+			if (mostSigBits[sequenceNr] == msb && leastSigBits[sequenceNr] == lsb) {
+				return pos;
+			}
+			pos = (pos+1) & mask;
+		}
+	}
+
+	private void insertIntoSlots(int sequenceNr) {
+		int mask = slots.length-1;
+		int pos = hash(mostSigBits[sequenceNr], leastSigBits[sequenceNr]) & mask;
+		while (slots[pos] != EMPTY) {
+			pos = (pos+1) & mask;
+		}
+		slots[pos] = sequenceNr+1;
+	}
+
+	private void grow() {
+		int capacity = mostSigBits.length*2;
+		mostSigBits = Arrays.copyOf(mostSigBits, capacity);
+		leastSigBits = Arrays.copyOf(leastSigBits, capacity);
+		int[] oldSlots = slots;
+		slots = new int[capacity*2];
+		for (int slotValue : oldSlots) {
+			if (slotValue != EMPTY) {
+				insertIntoSlots(slotValue-1);
+			}
+		}
+	}
+
+	private static int hash(long msb, long lsb) {
+		long hash = msb ^ lsb;
+		int h = (int) (hash ^ (hash >>> 32));
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * only lower case, dash separated UUIDs are stored as longs, as only for these UUID.toString() returns the original id
+	 */
+	static boolean isCanonicalUUID(String id) {
+		if (id.length() != 36) {
+			return false;
+		}
+		for (int i = 0; i < 36; i++) {
+			char c = id.charAt(i);
+			if (i == 8 || i == 13 || i == 18 || i == 23) {
+				if (c != '-') return false;
+			} else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -1,19 +1,23 @@
 package at.jku.isse.artifacteventstreaming.branch.persistence;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 
 import at.jku.isse.artifacteventstreaming.api.Commit;
 import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
 import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+import at.jku.isse.artifacteventstreaming.branch.serialization.CommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.JsonCommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.StatementBatchEncoder;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
+import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -21,25 +25,42 @@ import lombok.extern.slf4j.Slf4j;
  * provides functionality to merge multi-part events into a single commit
  */
 @Slf4j
-@RequiredArgsConstructor
 public class CommitSplitter {
 
-	private final JsonMapper jsonMapper;
+	private final CommitCodec codec;
 	
 	public static final int MAX_PAYLOAD_SIZE = 1000000; 
 	public static final int STATEMENT_BATCH_SIZE = 8000;
 	
 	@Getter
-	private int resplitCounter = 0;
+	private int resplitCounter = 0; // only the codec without incremental encoding requires resplitting
+	
+	@Getter
+	private boolean singlePass = false; // whether the last split used incremental encoding
+	
+	public CommitSplitter(@NonNull JsonMapper jsonMapper) {
+		this(new JsonCommitCodec(jsonMapper));
+	}
+	
+	public CommitSplitter(@NonNull CommitCodec codec) {
+		this.codec = codec;
+	}
 	
 	/**
-	 * @param commit is spit into multi part events containing first all added statements in batches, then all removed statements in batches
-	 *  based on default batch size STATEMENT_BATCH_SIZE statements, 
+	 * @param commit is spit into multi part events containing first all added statements in batches, then all removed statements in batches,
+	 *  if the codec supports incremental encoding, batches are filled up to MAX_PAYLOAD_SIZE in a single pass, 
+	 *  otherwise based on default batch size STATEMENT_BATCH_SIZE statements, 
 	 *  in case of large values, batches there of a split up until they fit within maximum append size of 1048576
 	 *  @return stream of byte arrays that can be writing into an event envelope
 	 */
 	public Stream<byte[]> split(Commit commit) {
 		resplitCounter = 0; // reset
+		StatementBatchEncoder encoder = codec.createBatchEncoder(commit, MAX_PAYLOAD_SIZE);
+		singlePass = encoder != null;
+		if (singlePass) {
+			return splitInSinglePass(commit, encoder);
+		}
+		// codec without incremental encoding, hence serialize batches and split them further when too large
 		if ((commit.getAdditionCount()+commit.getRemovalCount()) > STATEMENT_BATCH_SIZE) {
 			return divideIntoBatches(commit);			
 		} else {
@@ -47,6 +68,42 @@ public class CommitSplitter {
 		}
 	}
 
+	/**
+	 * each statement is serialized once, batches are cut exactly where the next statement would exceed the maximum payload size, 
+	 * first all added statements, then all removed statements
+	 */
+	private Stream<byte[]> splitInSinglePass(Commit commit, StatementBatchEncoder encoder) {
+		try {
+			List<byte[]> payloads = new ArrayList<>();
+			addToBatches(commit.getAddedStatements(), true, encoder, payloads);
+			addToBatches(commit.getRemovedStatements(), false, encoder, payloads);
+			if (!encoder.isEmpty() || commit.isEmpty()) { // an empty commit still results in a single event
+				payloads.add(encoder.finishBatch());
+			}
+			return payloads.stream();
+		} catch(IOException e) {
+			log.error(e.getMessage());
+			// this should typically not happen, hence we just throw a runtime exception here
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private void addToBatches(List<ContainedStatement> stmts, boolean isAddition, StatementBatchEncoder encoder, List<byte[]> payloads) throws IOException {
+		for (ContainedStatement stmt : stmts) {
+			if (encoder.tryAdd(stmt, isAddition)) {
+				continue;
+			}
+			if (!encoder.isEmpty()) {
+				payloads.add(encoder.finishBatch());
+				if (encoder.tryAdd(stmt, isAddition)) {
+					continue;
+				}
+			}
+			// see splitInHalf
+			log.error("Commit contains a single statement that is too large to fit within an event, ignoring");
+		}
+	}
+
 	private Stream<byte[]> divideIntoBatches(Commit commit) {
 		//https://stackoverflow.com/questions/5824825/efficient-way-to-divide-a-list-into-lists-of-n-size		
 		List<List<ContainedStatement>> addedBatches = splitList(commit.getAddedStatements()); 
@@ -84,13 +141,13 @@ public class CommitSplitter {
 	
 	private Stream<byte[]> transformToSingleEvent(Commit commit) {
 		try {
-		byte[] eventByte = jsonMapper.writeValueAsBytes(commit);
+		byte[] eventByte = codec.encode(commit);
 		if (eventByte.length > MAX_PAYLOAD_SIZE) {
 			resplitCounter++;
 			return splitBatch(commit);
 		} else {
 			return Stream.of(eventByte);
-		}} catch(JsonProcessingException e) {
+		}} catch(IOException e) {
 			log.error(e.getMessage());
 			// this should typically not happen, hence we just throw a runtime exception here
 			throw new RuntimeException(e);
@@ -1,10 +1,14 @@
 package at.jku.isse.artifacteventstreaming.branch.persistence;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 import com.eventstore.dbclient.AppendToStreamOptions;
 import com.eventstore.dbclient.DeleteStreamOptions;
@@ -19,6 +23,9 @@ import com.eventstore.dbclient.ReadStreamOptions;
 import com.eventstore.dbclient.RecordedEvent;
 import com.eventstore.dbclient.ResolvedEvent;
 import com.eventstore.dbclient.StreamNotFoundException;
+import com.eventstore.dbclient.WriteResult;
+import com.eventstore.dbclient.WrongExpectedVersionException;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.json.JsonMapper;
@@ -29,12 +36,15 @@ import at.jku.isse.artifacteventstreaming.api.CommitDeliveryEvent;
 import at.jku.isse.artifacteventstreaming.api.PerBranchEventStore;
 import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
 import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+import at.jku.isse.artifacteventstreaming.branch.serialization.BinaryCommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.CommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.JsonCommitCodec;
 import at.jku.isse.artifacteventstreaming.branch.serialization.StatementJsonDeserializer;
 import at.jku.isse.artifacteventstreaming.branch.serialization.StatementJsonSerializer;
+import at.jku.isse.artifacteventstreaming.replay.EventStoreBackedHistoryRepository;
 import lombok.Data;
 import lombok.Getter;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -45,8 +55,18 @@ public class EventStoreFactory {
 	 @Getter
 	 private final JsonMapper jsonMapper = new JsonMapper();
 	 private static final SimpleModule commitModule = new SimpleModule().addAbstractTypeMapping(Commit.class, StatementCommitImpl.class);
+	 @Getter
+	 private final CommitCodec commitCodec;
 	 
 	 public EventStoreFactory() {
+		 this(null);
+	 }
+	 
+	 /**
+	  * @param commitCodec the format used for writing commits, null for the default JSON format, 
+	  * reading always uses the format a commit was written with, hence existing streams remain readable
+	  */
+	 public EventStoreFactory(CommitCodec commitCodec) {
 		 EventStoreDBClientSettings settings = EventStoreDBClientSettings.builder()
 				  .addHost("localhost", 2113)
 				  .tls(false)
@@ -59,6 +79,7 @@ public class EventStoreFactory {
 		jsonMapper.registerModule(commitModule);
 		
 		projectionClient = EventStoreDBProjectionManagementClient.create(settings);
+		this.commitCodec = commitCodec != null ? commitCodec : new JsonCommitCodec(jsonMapper);
 	 }
 	 
 	 public EventStoreDBClient getClient() {
@@ -70,7 +91,20 @@ public class EventStoreFactory {
 	 }
 	
 	 public PerBranchEventStore getEventStore(String branchURI) {
-		 return new EventStoreImpl(branchURI, client, jsonMapper);
+		 return new EventStoreImpl(branchURI, client, jsonMapper, commitCodec);
+	 }
+	 
+	 /**
+	  * @return per resource history fed by the history projection, which only understands json commit events,
+	  * hence not available when writing commits in another format, as these would silently be missing from the history
+	  */
+	 public EventStoreBackedHistoryRepository getHistoryRepository() {
+		 if (!commitCodec.getFormat().equals(JsonCommitCodec.FORMAT)) {
+			 String msg = String.format("History repository requires json commit events, but commits are written in format %s", commitCodec.getFormat());
+			 log.warn(msg);
+			 throw new IllegalStateException(msg);
+		 }
+		 return new EventStoreBackedHistoryRepository(client, projectionClient, jsonMapper);
 	 }
 	 
 	 public void removeBranchEventData(String branchURI) {
@@ -88,36 +122,155 @@ public class EventStoreFactory {
 		 final String commitUUID;		 
 		 final int batchId;
 		 final int totalBatches; 
+		 @JsonInclude(JsonInclude.Include.NON_NULL)
+		 final String format; // null for json, the original format without marker
 		 
 		 public EventMetaData( @JsonProperty("commitUUID") String commitUUID 
 				 ,@JsonProperty("batchId") int batchId
-				, @JsonProperty("totalBatches") int totalBatches) {			
+				, @JsonProperty("totalBatches") int totalBatches
+				, @JsonProperty("format") String format) {			
 			this.commitUUID = commitUUID;
 			this.batchId = batchId;
 			this.totalBatches = totalBatches;
+			this.format = format;
 		}
+		 
+		 public EventMetaData(String commitUUID, int batchId, int totalBatches) {
+			 this(commitUUID, batchId, totalBatches, null);
+		 }
 		
 	 }
 	 
-	 @RequiredArgsConstructor
 	 public static class EventStoreImpl implements PerBranchEventStore {
 		 public static final String INCOMING_COMMITS_STREAM_POSTFIX = "IncomingCommits";
+		 public static final String COMMIT_EVENT_TYPE = "CommitEventType";
+		 // separate type, as the history projection (listening to CommitEventType) expects json payloads
+		 public static final String BINARY_COMMIT_EVENT_TYPE = "BinaryCommitEventType";
 		 
 		 final String branchURI;
 		 final EventStoreDBClient eventDBclient;
 		 final JsonMapper jsonMapper;
+		 final CommitCodec commitCodec;
+		 private final JsonCommitCodec jsonCodec;
+		 private final BinaryCommitCodec binaryCodec = new BinaryCommitCodec();
+		 
+		 public EventStoreImpl(String branchURI, EventStoreDBClient eventDBclient, JsonMapper jsonMapper) {
+			 this(branchURI, eventDBclient, jsonMapper, null);
+		 }
+		 
+		 /**
+		  * @param commitCodec for writing commits, null for json
+		  */
+		 public EventStoreImpl(String branchURI, EventStoreDBClient eventDBclient, JsonMapper jsonMapper, CommitCodec commitCodec) {
+			 this.branchURI = branchURI;
+			 this.eventDBclient = eventDBclient;
+			 this.jsonMapper = jsonMapper;
+			 this.jsonCodec = new JsonCommitCodec(jsonMapper);
+			 this.commitCodec = commitCodec != null ? commitCodec : jsonCodec;
+		 }
+		 
+		 static final int READ_PAGE_SIZE = 256; // events per read request
+		 static final int MAX_APPEND_SIZE = 1048576; // default maximum append size of the server
+		 static final int EVENT_SIZE_OVERHEAD = 128; // estimate for event id, type, and content type per event
+		 // revision of the first event of each commit, position in array corresponds to the commit's sequence number, null until the stream was scanned once
+		 private long[] commitStartRevisions = null;
+		 private int commitCount = 0;
 
 		@Override
 		public List<Commit> loadAllCommits() throws PersistenceException{
-			// for now, we do a inefficient sequential load of all commits and keep them in memory
-			List<Commit> commits = new LinkedList<>();
+			return readCommits(0, Integer.MAX_VALUE);
+		}
+		
+		@Override
+		public synchronized void forEachCommitId(@NonNull Consumer<String> commitIdConsumer) throws PersistenceException {
+			commitStartRevisions = new long[64];
+			commitCount = 0;
+			long nextRevision = 0;
+			List<ResolvedEvent> page;
+			do {
+				page = readPage(nextRevision);
+				for (ResolvedEvent resolvedEvent : page) {
+					RecordedEvent recordedEvent = resolvedEvent.getOriginalEvent();
+					try {
+						// we only need the metadata here, commit payloads are not deserialized
+						EventMetaData metadata = jsonMapper.readValue(recordedEvent.getUserMetadata(), EventMetaData.class);
+						if (metadata.getBatchId() <= 1) { // first (or only) event of a commit
+							addCommitStartRevision(recordedEvent.getRevision());
+							commitIdConsumer.accept(metadata.getCommitUUID());
+						}
+					} catch (IOException e) {
+						String msg = String.format("Error loading commit ids for branch %s with error %s", branchURI, e.getMessage());
+						log.warn(msg);
+						throw new PersistenceException(msg);
+					}
+					nextRevision = recordedEvent.getRevision()+1;
+				}
+			} while (page.size() == READ_PAGE_SIZE);
+		}
+		
+		@Override
+		public synchronized List<Commit> loadCommits(long fromSequenceNr, int maxCount) throws PersistenceException {
+			if (commitStartRevisions == null) { // not yet indexed
+				forEachCommitId(commitId -> {});
+			}
+			if (fromSequenceNr >= commitCount) {
+				return Collections.emptyList();
+			}
+			return readCommits(commitStartRevisions[(int) fromSequenceNr], maxCount);
+		}
+		
+		/**
+		 * reads page by page from the given revision onwards until maxCommits complete commits are assembled or the stream end is reached
+		 */
+		private List<Commit> readCommits(long fromRevision, int maxCommits) throws PersistenceException {
+			List<Commit> commits = new ArrayList<>();
+			var joiner = new CommitJoiner();
+			long nextRevision = fromRevision;
+			List<ResolvedEvent> page;
+			do {
+				page = readPage(nextRevision);
+				try {
+					for (ResolvedEvent resolvedEvent : page) {
+						RecordedEvent recordedEvent = resolvedEvent.getOriginalEvent();
+						nextRevision = recordedEvent.getRevision()+1;
+						EventMetaData metadata = jsonMapper.readValue(recordedEvent.getUserMetadata(), EventMetaData.class);
+						Commit commit = codecFor(metadata).decode(recordedEvent.getEventData());
+						if (metadata.getTotalBatches() <= 1) {
+							if (commit != null) {
+								commits.add(commit);
+							}
+						} else { // multipart
+							joiner.addCommit(commit);
+							if (metadata.getBatchId() == metadata.getTotalBatches()) {// last batch
+								commits.add(joiner.join());
+								joiner = new CommitJoiner(); //reset for next batch
+							}
+						}
+						if (commits.size() >= maxCommits) {
+							return commits;
+						}
+					}
+				} catch (IOException e) {
+					String msg = String.format("Error loading commits for branch %s with error %s", branchURI, e.getMessage());
+					log.warn(msg);
+					throw new PersistenceException(msg);
+				}  catch (NullPointerException e) {
+					String msg = String.format("Error accessing event stream for branch %s with error %s", branchURI, e.getMessage());
+					log.warn(msg);
+					throw new PersistenceException(msg);
+				}
+			} while (page.size() == READ_PAGE_SIZE);
+			return commits;
+		}
+		
+		private List<ResolvedEvent> readPage(long fromRevision) throws PersistenceException {
 			ReadStreamOptions options = ReadStreamOptions.get()
-					.forwards() // if this is ever changed, make sure to update batch joining below!!!!!
-					.fromStart();
-			ReadResult result = null;
+					.forwards() // if this is ever changed, make sure to update batch joining in readCommits!!!!!
+					.fromRevision(fromRevision)
+					.maxCount(READ_PAGE_SIZE);
 			try {
-				result = eventDBclient.readStream(branchURI, options)
-						.get();
+				return eventDBclient.readStream(branchURI, options)
+						.get().getEvents();
 			} catch (ExecutionException | InterruptedException e) {
 				Throwable innerException = e.getCause();
 				if (innerException instanceof StreamNotFoundException) {
@@ -127,35 +280,40 @@ public class EventStoreFactory {
 				log.warn(msg);
 				throw new PersistenceException(msg);
 			}
-			
-			try {
-				var joiner = new CommitJoiner();
-				for (ResolvedEvent resolvedEvent : result.getEvents()) {
-					RecordedEvent recordedEvent = resolvedEvent.getOriginalEvent();					
-					EventMetaData metadata = jsonMapper.readValue(recordedEvent.getUserMetadata(), EventMetaData.class);
-					StatementCommitImpl commit = jsonMapper.readValue(recordedEvent.getEventData(), StatementCommitImpl.class);
-					if (metadata.getTotalBatches() <= 1) {						
-						if (commit != null) {						
-							commits.add(commit);
-						}
-					} else { // multipart
-						joiner.addCommit(commit);
-						if (metadata.getBatchId() == metadata.getTotalBatches()) {// last batch
-							commits.add(joiner.join());
-							joiner = new CommitJoiner(); //reset for next batch
-						}
-					}
-				}	
-			} catch (IOException e) {
-				String msg = String.format("Error loading commits for branch %s with error %s", branchURI, e.getMessage());
-				log.warn(msg);
-				throw new PersistenceException(msg);
-			}  catch (NullPointerException e) {
-				String msg = String.format("Error accessing event stream for branch %s with error %s", branchURI, e.getMessage());
-				log.warn(msg);
-				throw new PersistenceException(msg);
+		}
+		
+		private CommitCodec codecFor(EventMetaData metadata) throws IOException {
+			String format = metadata.getFormat();
+			if (format == null || format.equals(JsonCommitCodec.FORMAT)) {
+				return jsonCodec;
+			} else if (format.equals(commitCodec.getFormat())) {
+				return commitCodec;
+			} else if (format.equals(BinaryCommitCodec.FORMAT)) {
+				return binaryCodec;
+			} else {
+				throw new IOException(String.format("Unknown commit format %s", format));
+			}
+		}
+		
+		private void addCommitStartRevision(long revision) {
+			if (commitCount == commitStartRevisions.length) {
+				commitStartRevisions = Arrays.copyOf(commitStartRevisions, commitCount*2);
+			}
+			commitStartRevisions[commitCount++] = revision;
+		}
+		
+		/**
+		 * keeps the revision index up to date for appended commits, given the revision of the last appended event and the number of events per commit
+		 */
+		private void indexAppendedCommits(long lastRevision, List<Integer> eventsPerCommit) {
+			if (commitStartRevisions == null) return; // not indexed yet, will be done upon first paged read
+			long revision = lastRevision + 1 - eventsPerCommit.stream().mapToInt(Integer::intValue).sum();
+			for (int eventCount : eventsPerCommit) {
+				if (eventCount > 0) { // empty commits are not persisted
+					addCommitStartRevision(revision);
+					revision += eventCount;
+				}
 			}
-			return commits;
 		}
 
 		@Override
@@ -208,34 +366,13 @@ public class EventStoreFactory {
 		}
 
 		@Override
-		public void appendCommit(Commit commit) throws PersistenceException {
-								
+		public synchronized void appendCommit(Commit commit) throws PersistenceException {
 			try {
-				var splitter = new CommitSplitter(jsonMapper);
-				List<byte[]> payloads = splitter.split(commit).toList();
-				if (payloads.isEmpty()) { 
-					log.warn("Empty commit "+commit.getCommitId()+", not persisting any events");
-					return;				
-				} 
-				if (payloads.size() > 1) {
-					log.info(String.format("Splitting commit %s into %s events, having to replit events %s times", commit.getCommitId(), payloads.size(), splitter.getResplitCounter()));
-				}								
-				for (int i = 0; i < payloads.size(); i++) {
-					EventMetaData metadata = new EventMetaData(commit.getCommitId(), i+1, payloads.size());
-					byte[] metaByte = jsonMapper.writeValueAsBytes(metadata);
-					EventData eventData = EventDataBuilder
-							.json(null, "CommitEventType", payloads.get(i)) // we cannot use commit UUID as its reused for each branch		
-							.metadataAsBytes(metaByte)
-							.build();
-					AppendToStreamOptions options = AppendToStreamOptions.get()
-							.expectedRevision(ExpectedRevision.any());
-
-					var result = eventDBclient.appendToStream(branchURI, options, eventData) //multiple events cannot be stored here at once, as we run into maxsize !!
-							.get();			
-					log.trace("Obtained log position upon write: "+result.getLogPosition().toString());
-				}
-				
-			} catch (JsonProcessingException e) {
+				List<EventData> events = createCommitEvents(commit);
+				if (events.isEmpty()) return;
+				long lastRevision = appendEvents(events);
+				indexAppendedCommits(lastRevision, List.of(events.size()));
+			} catch (IOException e) {
 				String msg = String.format("Error serializing commit %s event to branch %s with error %s", commit.getCommitId(), branchURI, e.getMessage()) ;
 				log.warn(msg);
 				throw new PersistenceException(msg);
@@ -245,6 +382,123 @@ public class EventStoreFactory {
 				throw new PersistenceException(msg);
 			} 
 		}
+		
+		/**
+		 * appends the events of all commits with as few append calls as possible, 
+		 * i.e., with a single one if they fit together within the maximum append size
+		 */
+		@Override
+		public synchronized void appendCommits(List<Commit> commits) throws PersistenceException {
+			if (commits.isEmpty()) return;
+			String firstId = commits.get(0).getCommitId();
+			try {
+				List<EventData> events = new ArrayList<>();
+				List<Integer> eventsPerCommit = new ArrayList<>(commits.size());
+				for (Commit commit : commits) {
+					List<EventData> commitEvents = createCommitEvents(commit);
+					events.addAll(commitEvents);
+					eventsPerCommit.add(commitEvents.size());
+				}
+				if (events.isEmpty()) return;
+				long lastRevision = appendEvents(events);
+				indexAppendedCommits(lastRevision, eventsPerCommit);
+			} catch (IOException e) {
+				String msg = String.format("Error serializing group of commits starting at %s to branch %s with error %s", firstId, branchURI, e.getMessage()) ;
+				log.warn(msg);
+				throw new PersistenceException(msg);
+			} catch (Exception e) {
+				String msg = String.format("Error storing group of commits starting at %s to branch %s with error %s", firstId, branchURI, e.getMessage()) ;
+				log.warn(msg);
+				throw new PersistenceException(msg);
+			}
+		}
+		
+		/**
+		 * appends the events in as few batches as the maximum append size allows, 
+		 * each batch is sent as soon as the previous one is acknowledged, without blocking in between, 
+		 * batches are not sent concurrently as the events of a multipart commit must remain contiguous and in order.
+		 * Hence any batch after the first one expects the stream at the revision the previous batch ended with, 
+		 * if another writer appended in between, the remaining batches are not appended and the whole append fails.
+		 * @return the revision of the last appended event
+		 */
+		private long appendEvents(List<EventData> events) throws InterruptedException, ExecutionException {
+			List<List<EventData>> batches = groupIntoAppendBatches(events, MAX_APPEND_SIZE);
+			if (batches.size() > 1) {
+				log.debug(String.format("Appending %s events to branch %s in %s batches", events.size(), branchURI, batches.size()));
+			}
+			AppendToStreamOptions options = AppendToStreamOptions.get()
+					.expectedRevision(ExpectedRevision.any());
+			CompletableFuture<WriteResult> pipeline = eventDBclient.appendToStream(branchURI, options, batches.get(0).iterator());
+			for (List<EventData> batch : batches.subList(1, batches.size())) {
+				pipeline = pipeline.thenCompose(previous -> eventDBclient.appendToStream(branchURI
+						, AppendToStreamOptions.get().expectedRevision(ExpectedRevision.expectedRevision(previous.getNextExpectedRevision().toRawLong()))
+						, batch.iterator()));
+			}
+			WriteResult result;
+			try {
+				result = pipeline.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof WrongExpectedVersionException) {
+					log.warn(String.format("Concurrent append to branch %s while appending %s events in %s batches, events may be incomplete", branchURI, events.size(), batches.size()));
+				}
+				throw e;
+			}
+			log.trace("Obtained log position upon write: "+result.getLogPosition());
+			return result.getNextExpectedRevision().toRawLong();
+		}
+		
+		/**
+		 * groups consecutive events into batches whose total size stays within maxAppendSize, 
+		 * an event that on its own exceeds that size ends up in a batch of its own
+		 */
+		static List<List<EventData>> groupIntoAppendBatches(List<EventData> events, int maxAppendSize) {
+			List<List<EventData>> batches = new ArrayList<>();
+			List<EventData> batch = new ArrayList<>();
+			long batchSize = 0;
+			for (EventData eventData : events) {
+				long eventSize = eventData.getEventData().length + eventData.getUserMetadata().length + EVENT_SIZE_OVERHEAD;
+				if (!batch.isEmpty() && batchSize + eventSize > maxAppendSize) {
+					batches.add(batch);
+					batch = new ArrayList<>();
+					batchSize = 0;
+				}
+				batch.add(eventData);
+				batchSize += eventSize;
+			}
+			if (!batch.isEmpty()) {
+				batches.add(batch);
+			}
+			return batches;
+		}
+		
+		private List<EventData> createCommitEvents(Commit commit) throws IOException {
+			var splitter = new CommitSplitter(commitCodec);
+			List<byte[]> payloads = splitter.split(commit).toList();
+			if (payloads.isEmpty()) { 
+				log.warn("Empty commit "+commit.getCommitId()+", not persisting any events");
+				return Collections.emptyList();				
+			} 
+			if (payloads.size() > 1) {
+				if (splitter.isSinglePass()) {
+					log.info(String.format("Splitting commit %s into %s events", commit.getCommitId(), payloads.size()));
+				} else {
+					log.info(String.format("Splitting commit %s into %s events, having to resplit events %s times", commit.getCommitId(), payloads.size(), splitter.getResplitCounter()));
+				}
+			}
+			boolean isJson = commitCodec.getFormat().equals(JsonCommitCodec.FORMAT);
+			List<EventData> events = new LinkedList<>();
+			for (int i = 0; i < payloads.size(); i++) {
+				EventMetaData metadata = new EventMetaData(commit.getCommitId(), i+1, payloads.size(), isJson ? null : commitCodec.getFormat());
+				byte[] metaByte = jsonMapper.writeValueAsBytes(metadata);
+				var builder = isJson 
+						? EventDataBuilder.json(null, COMMIT_EVENT_TYPE, payloads.get(i)) // we cannot use commit UUID as its reused for each branch
+						: EventDataBuilder.binary(null, BINARY_COMMIT_EVENT_TYPE, payloads.get(i));
+				events.add(builder
+						.metadataAsBytes(metaByte)
+						.build());
+			}
+			return events;
+		}
 
 		@Override
 		public void appendCommitDelivery(@NonNull CommitDeliveryEvent event) throws PersistenceException {
@@ -0,0 +1,131 @@
+package at.jku.isse.artifacteventstreaming.branch.persistence;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
+import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+import at.jku.isse.artifacteventstreaming.branch.persistence.MappedFileEventStore.FsyncPolicy;
+import at.jku.isse.artifacteventstreaming.branch.serialization.CommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.StatementJsonDeserializer;
+import at.jku.isse.artifacteventstreaming.branch.serialization.StatementJsonSerializer;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Local file based counterpart to the EventStoreFactory, each branch gets its own directory below the base directory.
+ * Event stores are opened once and shared, as only a single instance may write to a branch's files.
+ */
+@Slf4j
+public class FileEventStoreFactory implements AutoCloseable {
+
+	public static final String DEFAULT_STORAGEPATH = "./branchEvents/";
+	public static final int DEFAULT_SEGMENT_SIZE = 64*1024*1024;
+	public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000;
+
+	private final Path baseDirectory;
+	@Getter private final int segmentSize;
+	@Getter private final FsyncPolicy fsyncPolicy;
+	private final CommitCodec commitCodec;
+	@Getter private final JsonMapper jsonMapper = new JsonMapper();
+	private static final SimpleModule commitModule = new SimpleModule().addAbstractTypeMapping(Commit.class, StatementCommitImpl.class);
+	private final Map<String, MappedFileEventStore> stores = new HashMap<>();
+	private ScheduledExecutorService syncScheduler = null;
+
+	public FileEventStoreFactory() {
+		this(Path.of(DEFAULT_STORAGEPATH), DEFAULT_SEGMENT_SIZE, FsyncPolicy.PER_GROUP, DEFAULT_SYNC_INTERVAL_MILLIS, null);
+	}
+
+	/**
+	 * @param syncIntervalMillis only used with FsyncPolicy.PERIODIC
+	 * @param commitCodec the format used for writing commits, null for the default JSON format
+	 */
+	public FileEventStoreFactory(@NonNull Path baseDirectory, int segmentSize, @NonNull FsyncPolicy fsyncPolicy, long syncIntervalMillis, CommitCodec commitCodec) {
+		this.baseDirectory = baseDirectory;
+		this.segmentSize = segmentSize;
+		this.fsyncPolicy = fsyncPolicy;
+		this.commitCodec = commitCodec;
+		StatementJsonSerializer.registerSerializationModule(jsonMapper);
+		StatementJsonDeserializer.registerDeserializationModule(jsonMapper);
+		jsonMapper.registerModule(commitModule);
+		if (fsyncPolicy == FsyncPolicy.PERIODIC) {
+			syncScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "FileEventStoreSync");
+				thread.setDaemon(true);
+				return thread;
+			});
+			syncScheduler.scheduleWithFixedDelay(this::syncAll, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public synchronized MappedFileEventStore getEventStore(@NonNull String branchURI) throws PersistenceException {
+		MappedFileEventStore store = stores.get(branchURI);
+		if (store == null) {
+			store = new MappedFileEventStore(branchURI, getBranchDirectory(branchURI), segmentSize, jsonMapper, commitCodec, fsyncPolicy);
+			stores.put(branchURI, store);
+		}
+		return store;
+	}
+
+	private Path getBranchDirectory(String branchURI) {
+		return baseDirectory.resolve(URLEncoder.encode(branchURI, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * closes the branch's event store, if open, and deletes its files
+	 */
+	public synchronized void removeBranchEventData(@NonNull String branchURI) {
+		MappedFileEventStore store = stores.remove(branchURI);
+		try {
+			if (store != null) {
+				store.close();
+			}
+			Path directory = getBranchDirectory(branchURI);
+			if (Files.exists(directory)) {
+				try (Stream<Path> files = Files.walk(directory)) {
+					for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+						Files.delete(path);
+					}
+				}
+			}
+		} catch (IOException e) {
+			log.warn(String.format("Error removing event data of branch %s with error %s", branchURI, e.getMessage()));
+		}
+	}
+
+	private synchronized void syncAll() {
+		stores.values().forEach(MappedFileEventStore::sync);
+	}
+
+	@Override
+	public synchronized void close() {
+		if (syncScheduler != null) {
+			syncScheduler.shutdown();
+		}
+		for (MappedFileEventStore store : stores.values()) {
+			try {
+				store.close();
+			} catch (IOException e) {
+				log.warn(String.format("Error closing event store of branch %s with error %s", store.getBranchURI(), e.getMessage()));
+			}
+		}
+		stores.clear();
+	}
+}
@@ -21,4 +21,9 @@ public class InMemoryBranchStateCache implements BranchStateCache {
 		return cache.get(key);
 	}
 	
+	@Override
+	public void putAll(Map<String, String> entries) throws PersistenceException {
+		cache.putAll(entries);
+	}
+	
 }
\ No newline at end of file
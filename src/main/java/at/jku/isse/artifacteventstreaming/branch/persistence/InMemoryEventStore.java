@@ -1,7 +1,10 @@
 package at.jku.isse.artifacteventstreaming.branch.persistence;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import at.jku.isse.artifacteventstreaming.api.Commit;
 import at.jku.isse.artifacteventstreaming.api.CommitDeliveryEvent;
@@ -14,7 +17,7 @@ import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
  */
 public class InMemoryEventStore implements PerBranchEventStore {
 
-	private final List<Commit> allCommits = new LinkedList<>();
+	private final List<Commit> allCommits = new ArrayList<>();
 	private final List<CommitDeliveryEvent> deliveries = new LinkedList<>();
 	
 	@Override
@@ -22,6 +25,19 @@ public class InMemoryEventStore implements PerBranchEventStore {
 		return new LinkedList<>(allCommits);
 	}
 
+	@Override
+	public void forEachCommitId(Consumer<String> commitIdConsumer) throws PersistenceException {
+		allCommits.forEach(commit -> commitIdConsumer.accept(commit.getCommitId()));
+	}
+
+	@Override
+	public List<Commit> loadCommits(long fromSequenceNr, int maxCount) throws PersistenceException {
+		if (fromSequenceNr >= allCommits.size()) {
+			return Collections.emptyList();
+		}
+		return new ArrayList<>(allCommits.subList((int) fromSequenceNr, (int) Math.min(allCommits.size(), fromSequenceNr + maxCount)));
+	}
+
 	@Override
 	public List<Commit> loadAllIncomingCommitsForBranchFromCommitIdOnward(String fromCommitIdOnwards) throws PersistenceException {
 		if (fromCommitIdOnwards == null) {
@@ -47,6 +63,11 @@ public class InMemoryEventStore implements PerBranchEventStore {
 		allCommits.add(commit);
 	}
 
+	@Override
+	public void appendCommits(List<Commit> commits) throws PersistenceException {
+		allCommits.addAll(commits);
+	}
+
 	@Override
 	public void appendCommitDelivery(CommitDeliveryEvent event) throws PersistenceException {
 		deliveries.add(event);
@@ -0,0 +1,236 @@
+package at.jku.isse.artifacteventstreaming.branch.persistence;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.CommitDeliveryEvent;
+import at.jku.isse.artifacteventstreaming.api.PerBranchEventStore;
+import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
+import at.jku.isse.artifacteventstreaming.branch.persistence.SegmentedLog.Entry;
+import at.jku.isse.artifacteventstreaming.branch.serialization.BinaryCommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.CommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.JsonCommitCodec;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Event store for deployments without EventStoreDB: commits and commit deliveries of a branch are appended to two local
+ * memory-mapped segment logs (see {@link SegmentedLog}), one record per commit, i.e., no splitting needed.
+ * Commit positions are indexed by sequence number and commit id, the index is rebuilt from the record headers upon opening (payloads are not decoded).
+ * When records are durable depends on the {@link FsyncPolicy}.
+ */
+@Slf4j
+public class MappedFileEventStore implements PerBranchEventStore, AutoCloseable {
+
+	public enum FsyncPolicy {
+		PER_COMMIT, // force after each appended commit or delivery
+		PER_GROUP, // force once per append call, i.e., once for all commits of appendCommits
+		PERIODIC // force only upon sync(), e.g., triggered periodically by the FileEventStoreFactory, and upon close
+	}
+
+	static final String COMMITS_LOG = "commits";
+	static final String DELIVERIES_LOG = "deliveries";
+	private static final String DELIVERY_FORMAT = "delivery-json";
+
+	@Getter private final String branchURI;
+	private final SegmentedLog commitLog;
+	private final SegmentedLog deliveryLog;
+	private final JsonMapper jsonMapper;
+	private final CommitCodec commitCodec;
+	private final JsonCommitCodec jsonCodec;
+	private final BinaryCommitCodec binaryCodec = new BinaryCommitCodec();
+	@Getter private final FsyncPolicy fsyncPolicy;
+
+	// position of each commit by sequence number, and the sequence number of each commit id
+	private final CommitIdIndex commitIds = new CommitIdIndex();
+	private long[] commitPositions = new long[64];
+	// last delivery position per delivered commit id
+	private final Map<String, Long> deliveryPositions = new HashMap<>();
+
+	/**
+	 * @param jsonMapper with the statement and commit modules registered, as used for deliveries and json commits
+	 * @param commitCodec for writing commits, null for json, reading uses the format each commit was written with
+	 */
+	public MappedFileEventStore(@NonNull String branchURI, @NonNull Path directory, int segmentSize
+			, @NonNull JsonMapper jsonMapper, CommitCodec commitCodec, @NonNull FsyncPolicy fsyncPolicy) throws PersistenceException {
+		this.branchURI = branchURI;
+		this.jsonMapper = jsonMapper;
+		this.jsonCodec = new JsonCommitCodec(jsonMapper);
+		this.commitCodec = commitCodec != null ? commitCodec : jsonCodec;
+		this.fsyncPolicy = fsyncPolicy;
+		try {
+			this.commitLog = new SegmentedLog(directory, COMMITS_LOG, segmentSize);
+			this.deliveryLog = new SegmentedLog(directory, DELIVERIES_LOG, segmentSize);
+		} catch (IOException e) {
+			String msg = String.format("Error opening event logs for branch %s in %s with error %s", branchURI, directory, e.getMessage());
+			log.warn(msg);
+			throw new PersistenceException(msg);
+		}
+		for (long pos = commitLog.first(); pos >= 0; pos = commitLog.next(pos)) {
+			indexCommit(commitLog.read(pos).getKey(), pos);
+		}
+		for (long pos = deliveryLog.first(); pos >= 0; pos = deliveryLog.next(pos)) {
+			deliveryPositions.put(deliveryLog.read(pos).getKey(), pos);
+		}
+	}
+
+	private void indexCommit(String commitId, long position) {
+		int sequenceNr = commitIds.append(commitId);
+		if (sequenceNr == commitPositions.length) {
+			commitPositions = Arrays.copyOf(commitPositions, sequenceNr*2);
+		}
+		commitPositions[sequenceNr] = position;
+	}
+
+	@Override
+	public synchronized List<Commit> loadAllCommits() throws PersistenceException {
+		return loadCommits(0, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public synchronized void forEachCommitId(@NonNull Consumer<String> commitIdConsumer) throws PersistenceException {
+		for (int i = 0; i < commitIds.size(); i++) {
+			commitIdConsumer.accept(commitIds.get(i));
+		}
+	}
+
+	@Override
+	public synchronized List<Commit> loadCommits(long fromSequenceNr, int maxCount) throws PersistenceException {
+		if (fromSequenceNr >= commitIds.size()) {
+			return Collections.emptyList();
+		}
+		List<Commit> commits = new ArrayList<>((int) Math.min(maxCount, commitIds.size() - fromSequenceNr));
+		for (long pos = commitPositions[(int) fromSequenceNr]; pos >= 0 && commits.size() < maxCount; pos = commitLog.next(pos)) {
+			commits.add(decodeCommit(commitLog.read(pos)));
+		}
+		return commits;
+	}
+
+	/**
+	 * @return the commit with the given id, or null if no such commit was appended
+	 */
+	public synchronized Commit loadCommit(@NonNull String commitId) throws PersistenceException {
+		int sequenceNr = commitIds.indexOf(commitId);
+		return sequenceNr < 0 ? null : decodeCommit(commitLog.read(commitPositions[sequenceNr]));
+	}
+
+	private Commit decodeCommit(Entry entry) throws PersistenceException {
+		try {
+			return codecFor(entry.getFormat()).decode(entry.getPayload());
+		} catch (IOException e) {
+			String msg = String.format("Error loading commit %s for branch %s with error %s", entry.getKey(), branchURI, e.getMessage());
+			log.warn(msg);
+			throw new PersistenceException(msg);
+		}
+	}
+
+	private CommitCodec codecFor(String format) throws IOException {
+		if (format.equals(JsonCommitCodec.FORMAT)) {
+			return jsonCodec;
+		} else if (format.equals(commitCodec.getFormat())) {
+			return commitCodec;
+		} else if (format.equals(BinaryCommitCodec.FORMAT)) {
+			return binaryCodec;
+		} else {
+			throw new IOException(String.format("Unknown commit format %s", format));
+		}
+	}
+
+	/**
+	 * as the EventStoreDB based store: all delivered commits after the given one, or all if the given one is null or unknown
+	 */
+	@Override
+	public synchronized List<Commit> loadAllIncomingCommitsForBranchFromCommitIdOnward(String fromCommitIdOnwards) throws PersistenceException {
+		Long lastMergedPos = fromCommitIdOnwards == null ? null : deliveryPositions.get(fromCommitIdOnwards);
+		long pos = lastMergedPos == null ? deliveryLog.first() : deliveryLog.next(lastMergedPos);
+		List<Commit> commits = new LinkedList<>();
+		for (; pos >= 0; pos = deliveryLog.next(pos)) {
+			Entry entry = deliveryLog.read(pos);
+			try {
+				CommitDeliveryEvent event = jsonMapper.readValue(new ByteBufferBackedInputStream(entry.getPayload()), CommitDeliveryEvent.class);
+				commits.add(event.getCommit());
+			} catch (IOException e) {
+				String msg = String.format("Error loading CommitDeliveryEvents for branch %s with error %s", branchURI, e.getMessage());
+				log.warn(msg);
+				throw new PersistenceException(msg);
+			}
+		}
+		return commits;
+	}
+
+	@Override
+	public synchronized void appendCommit(@NonNull Commit commit) throws PersistenceException {
+		appendToLog(commit);
+		if (fsyncPolicy != FsyncPolicy.PERIODIC) {
+			commitLog.force();
+		}
+	}
+
+	@Override
+	public synchronized void appendCommits(@NonNull List<Commit> commits) throws PersistenceException {
+		for (Commit commit : commits) {
+			appendToLog(commit);
+			if (fsyncPolicy == FsyncPolicy.PER_COMMIT) {
+				commitLog.force();
+			}
+		}
+		if (fsyncPolicy == FsyncPolicy.PER_GROUP) {
+			commitLog.force();
+		}
+	}
+
+	private void appendToLog(Commit commit) throws PersistenceException {
+		try {
+			long pos = commitLog.append(commit.getCommitId(), commitCodec.getFormat(), commitCodec.encode(commit));
+			indexCommit(commit.getCommitId(), pos);
+		} catch (IOException e) {
+			String msg = String.format("Error storing commit %s to branch %s with error %s", commit.getCommitId(), branchURI, e.getMessage()) ;
+			log.warn(msg);
+			throw new PersistenceException(msg);
+		}
+	}
+
+	@Override
+	public synchronized void appendCommitDelivery(@NonNull CommitDeliveryEvent event) throws PersistenceException {
+		try {
+			long pos = deliveryLog.append(event.getCommitId(), DELIVERY_FORMAT, jsonMapper.writeValueAsBytes(event));
+			deliveryPositions.put(event.getCommitId(), pos);
+			if (fsyncPolicy != FsyncPolicy.PERIODIC) {
+				deliveryLog.force();
+			}
+		} catch (IOException e) {
+			String msg = String.format("Error storing commitdeliveryevent %s to branch %s with error %s", event.getCommitId(), branchURI, e.getMessage()) ;
+			log.warn(msg);
+			throw new PersistenceException(msg);
+		}
+	}
+
+	/**
+	 * flushes all appended commits and deliveries to disk
+	 */
+	public synchronized void sync() {
+		commitLog.force();
+		deliveryLog.force();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		commitLog.close();
+		deliveryLog.close();
+	}
+}
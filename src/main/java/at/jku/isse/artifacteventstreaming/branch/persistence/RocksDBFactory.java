@@ -1,90 +1,449 @@
 package at.jku.isse.artifacteventstreaming.branch.persistence;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.Cache;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.CompressionType;
+import org.rocksdb.DBOptions;
+import org.rocksdb.DataBlockIndexType;
+import org.rocksdb.LRUCache;
 import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
+import org.rocksdb.Statistics;
+import org.rocksdb.TickerType;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteBufferManager;
+import org.rocksdb.WriteOptions;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 
 import at.jku.isse.artifacteventstreaming.api.BranchStateCache;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.PerBranchEventStore;
 import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
+import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+import at.jku.isse.artifacteventstreaming.branch.persistence.EventStoreFactory.EventStoreImpl;
+import at.jku.isse.artifacteventstreaming.branch.serialization.CommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.StatementJsonDeserializer;
+import at.jku.isse.artifacteventstreaming.branch.serialization.StatementJsonSerializer;
+import at.jku.isse.artifacteventstreaming.replay.RocksDbHistoryRepository;
+import lombok.Getter;
+import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 
+/**
+ * provides the branch state cache (in the default column family) and, if needed, per branch event stores (in their own column families)
+ * from a single embedded database, hence commits and cache entries can be written atomically.
+ */
 public class RocksDBFactory {
 
 	public static final String DEFAULT_STORAGEPATH = "./branchStatusCache/";
-	
+	private static final long MB = 1024L*1024L;
+
+	/**
+	 * as every branch comes with a few column families, the profiles other than DEFAULT share a single block cache across all column families
+	 * and bound the memory of all memtables together, instead of per column family
+	 */
+	public enum TuningProfile {
+		DEFAULT, // RocksDB defaults
+		POINT_LOOKUP, // bloom filters (also in memtables) and hashed data block index, for mostly reading cache entries and commits by key
+		WRITE_HEAVY, // larger memtables and later compaction and write stalls, for high commit rates
+		LOW_MEMORY // small memtables and block cache, memtables charged to the block cache, for many branches per node
+	}
+
+	// metrics provided by getMetrics(), summed across all column families
+	public static final List<String> METRIC_PROPERTIES = List.of("rocksdb.estimate-num-keys"
+			, "rocksdb.cur-size-all-mem-tables"
+			, "rocksdb.estimate-table-readers-mem"
+			, "rocksdb.total-sst-files-size"
+			, "rocksdb.estimate-live-data-size"
+			, "rocksdb.num-running-compactions"
+			, "rocksdb.num-running-flushes");
+	public static final String BLOCK_CACHE_USAGE_METRIC = "rocksdb.block-cache-usage";
+	static final String COMMIT_IDS_POSTFIX = "CommitIds";
+	static final String CACHE_FAMILY_PREFIX = "cache:";
+	static final String HISTORY_FAMILY = "history";
+
+	// native objects, (re)created upon opening the database and released upon closing it
 	private Options options;
+	private WriteOptions writeOptions;
+	private DBOptions dbOptions;
+	private ColumnFamilyOptions columnFamilyOptions;
+	private Cache blockCache = null;
+	private Cache writeBufferCache = null; // only when memtables are not charged to the block cache
+	private WriteBufferManager writeBufferManager = null;
+	private BloomFilter filterPolicy = null;
+	private Statistics statistics = null;
+	@Getter private final TuningProfile tuningProfile;
+	private final boolean syncWrites;
+	private final boolean disableWAL;
+	private final boolean collectStatistics;
 	private RocksDB db;
 	private final String path;
-	
+	private final Map<String, ColumnFamilyHandle> columnFamilies = new HashMap<>();
+	@Getter
+	private final JsonMapper jsonMapper = new JsonMapper();
+	private static final SimpleModule commitModule = new SimpleModule().addAbstractTypeMapping(Commit.class, StatementCommitImpl.class);
+
 	public RocksDBFactory(String path)  {
+		this(path, false, false);
+	}
+
+	/**
+	 * @param syncWrites whether each write (single entry or batch) waits for the write-ahead log to be fsynced, otherwise a process crash is survived but not necessarily a machine crash
+	 * @param disableWAL whether to skip the write-ahead log, then writes not yet flushed are lost upon any crash
+	 */
+	public RocksDBFactory(String path, boolean syncWrites, boolean disableWAL)  {
+		this(path, syncWrites, disableWAL, TuningProfile.DEFAULT, false);
+	}
+
+	/**
+	 * @param collectStatistics whether RocksDB collects statistics (at some cost for each operation), available via {@link #getStatistics()} and {@link #getTickerCount(TickerType)}
+	 */
+	public RocksDBFactory(String path, boolean syncWrites, boolean disableWAL, @NonNull TuningProfile tuningProfile, boolean collectStatistics)  {
 		this.path = path;
+		this.tuningProfile = tuningProfile;
+		this.syncWrites = syncWrites;
+		this.disableWAL = disableWAL;
+		this.collectStatistics = collectStatistics;
 		RocksDB.loadLibrary();
-		options = new Options().setCreateIfMissing(true) ;
+		createNativeOptions();
+		StatementJsonSerializer.registerSerializationModule(jsonMapper);
+		StatementJsonDeserializer.registerDeserializationModule(jsonMapper);
+		jsonMapper.registerModule(commitModule);
 	}
-	
+
 	public RocksDBFactory() {
 		this(DEFAULT_STORAGEPATH);
 	}
-	
+
 	private String getStoragePath() {
 		return path;
 	}
 
+	private void createNativeOptions() {
+		options = new Options().setCreateIfMissing(true) ;
+		writeOptions = new WriteOptions().setSync(syncWrites).setDisableWAL(disableWAL);
+		dbOptions = new DBOptions().setCreateIfMissing(true);
+		columnFamilyOptions = new ColumnFamilyOptions();
+		applyTuningProfile();
+		if (collectStatistics) {
+			statistics = new Statistics();
+			dbOptions.setStatistics(statistics);
+		}
+	}
+
+	private void closeNativeOptions() {
+		// options first, as they reference the caches, filter, manager and statistics
+		for (AutoCloseable nativeObject : new AutoCloseable[] {columnFamilyOptions, dbOptions, options, writeOptions
+				, writeBufferManager, writeBufferCache, blockCache, filterPolicy, statistics}) {
+			if (nativeObject != null) {
+				try {
+					nativeObject.close();
+				} catch (Exception e) {
+					// RocksObjects do not throw upon close
+				}
+			}
+		}
+		options = null;
+		writeOptions = null;
+		dbOptions = null;
+		columnFamilyOptions = null;
+		writeBufferManager = null;
+		writeBufferCache = null;
+		blockCache = null;
+		filterPolicy = null;
+		statistics = null;
+	}
+
+	/**
+	 * the memtable budget is at most half of the cache it is charged to, so that memtables cannot push all data and filter blocks out of the block cache
+	 */
+	private void applyTuningProfile() {
+		switch (tuningProfile) {
+		case POINT_LOOKUP:
+			blockCache = new LRUCache(128*MB);
+			filterPolicy = new BloomFilter(10);
+			columnFamilyOptions.setTableFormatConfig(new BlockBasedTableConfig()
+					.setBlockCache(blockCache)
+					.setFilterPolicy(filterPolicy)
+					.setDataBlockIndexType(DataBlockIndexType.kDataBlockBinaryAndHash)
+					.setCacheIndexAndFilterBlocks(true)
+					.setPinL0FilterAndIndexBlocksInCache(true))
+				.setMemtablePrefixBloomSizeRatio(0.1) // without a prefix extractor, this is a whole key bloom filter
+				.setMemtableWholeKeyFiltering(true)
+				.setCompressionType(CompressionType.LZ4_COMPRESSION);
+			writeBufferManager = new WriteBufferManager(32*MB, blockCache); // mostly reads, hence most of the cache for blocks
+			dbOptions.setWriteBufferManager(writeBufferManager);
+			break;
+		case WRITE_HEAVY:
+			blockCache = new LRUCache(64*MB);
+			filterPolicy = new BloomFilter(10);
+			columnFamilyOptions.setTableFormatConfig(new BlockBasedTableConfig()
+					.setBlockCache(blockCache)
+					.setFilterPolicy(filterPolicy))
+				.setWriteBufferSize(64*MB)
+				.setMaxWriteBufferNumber(4)
+				.setMinWriteBufferNumberToMerge(2)
+				.setLevel0FileNumCompactionTrigger(8)
+				.setLevel0SlowdownWritesTrigger(32)
+				.setLevel0StopWritesTrigger(48)
+				.setTargetFileSizeBase(64*MB)
+				.setMaxBytesForLevelBase(512*MB)
+				.setCompressionType(CompressionType.LZ4_COMPRESSION)
+				.setBottommostCompressionType(CompressionType.ZSTD_COMPRESSION);
+			// large memtable budget, thus charged to its own cache instead of the (smaller) block cache, only bounding memtables
+			writeBufferCache = new LRUCache(512*MB);
+			writeBufferManager = new WriteBufferManager(512*MB, writeBufferCache);
+			dbOptions.setMaxBackgroundJobs(Math.max(4, Runtime.getRuntime().availableProcessors()))
+				.setBytesPerSync(MB)
+				.setWriteBufferManager(writeBufferManager);
+			break;
+		case LOW_MEMORY:
+			blockCache = new LRUCache(16*MB);
+			filterPolicy = new BloomFilter(10);
+			columnFamilyOptions.setTableFormatConfig(new BlockBasedTableConfig()
+					.setBlockCache(blockCache)
+					.setFilterPolicy(filterPolicy)
+					.setCacheIndexAndFilterBlocks(true))
+				.setWriteBufferSize(4*MB)
+				.setMaxWriteBufferNumber(2)
+				.setTargetFileSizeBase(8*MB)
+				.setMaxBytesForLevelBase(32*MB)
+				.setCompressionType(CompressionType.LZ4_COMPRESSION)
+				.setBottommostCompressionType(CompressionType.ZSTD_COMPRESSION);
+			writeBufferManager = new WriteBufferManager(8*MB, blockCache); // 16MB in total for memtables and blocks
+			dbOptions.setMaxOpenFiles(256)
+				.setMaxBackgroundJobs(2)
+				.setWriteBufferManager(writeBufferManager);
+			break;
+		case DEFAULT:
+		default:
+			break;
+		}
+	}
+
 	public BranchStateCache getCache() throws RocksDBException {
+		RocksDB database = getDB();
+		return new RocksDbCache(database, database.getDefaultColumnFamily(), null);
+	}
+
+	/**
+	 * @return a cache with its own column family for the given branch, hence keys need not include the branch
+	 */
+	public synchronized BranchStateCache getCache(@NonNull String branchURI) throws RocksDBException {
+		return new RocksDbCache(getDB(), getColumnFamily(CACHE_FAMILY_PREFIX+branchURI), branchURI);
+	}
+
+	/**
+	 * @return an event store keeping commits and deliveries of the branch in their own column families
+	 */
+	public PerBranchEventStore getEventStore(@NonNull String branchURI) throws RocksDBException {
+		return getEventStore(branchURI, null);
+	}
+
+	/**
+	 * @param commitCodec the format used for writing commits, null for the default JSON format
+	 */
+	public synchronized PerBranchEventStore getEventStore(@NonNull String branchURI, CommitCodec commitCodec) throws RocksDBException {
+		return new RocksDbEventStore(branchURI, getDB()
+				, getColumnFamily(branchURI)
+				, getColumnFamily(branchURI+COMMIT_IDS_POSTFIX)
+				, getColumnFamily(branchURI+EventStoreImpl.INCOMING_COMMITS_STREAM_POSTFIX)
+				, jsonMapper, commitCodec, writeOptions);
+	}
+
+	/**
+	 * @param maxCachedEntries how many history entries in total (of all branches and resources) to keep in memory
+	 * @return the per resource history of all branches, kept in its own column family
+	 */
+	public synchronized RocksDbHistoryRepository getHistoryRepository(long maxCachedEntries) throws RocksDBException {
+		return new RocksDbHistoryRepository(getDB(), getColumnFamily(HISTORY_FAMILY), jsonMapper, writeOptions, maxCachedEntries);
+	}
+
+	/**
+	 * drops all event data and the cache column family of the branch, any event store or cache instances for that branch must no longer be used
+	 */
+	public synchronized void removeBranchEventData(@NonNull String branchURI) throws RocksDBException {
+		for (String name : List.of(branchURI, branchURI+COMMIT_IDS_POSTFIX, branchURI+EventStoreImpl.INCOMING_COMMITS_STREAM_POSTFIX, CACHE_FAMILY_PREFIX+branchURI)) {
+			ColumnFamilyHandle handle = getColumnFamilyIfExists(name);
+			if (handle != null) {
+				db.dropColumnFamily(handle);
+				handle.close();
+				columnFamilies.remove(name);
+			}
+		}
+	}
+
+	private synchronized RocksDB getDB() throws RocksDBException {
 		if (db == null) {
-			db = RocksDB.open(options, getStoragePath())  ;
+			if (dbOptions == null) { // released upon closing
+				createNativeOptions();
+			}
+			// all existing column families need to be opened
+			List<byte[]> existingNames = RocksDB.listColumnFamilies(options, getStoragePath());
+			List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+			descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, columnFamilyOptions));
+			existingNames.stream()
+				.filter(name -> !new String(name, StandardCharsets.UTF_8).equals(new String(RocksDB.DEFAULT_COLUMN_FAMILY, StandardCharsets.UTF_8)))
+				.forEach(name -> descriptors.add(new ColumnFamilyDescriptor(name, columnFamilyOptions)));
+			List<ColumnFamilyHandle> handles = new ArrayList<>();
+			db = RocksDB.open(dbOptions, getStoragePath(), descriptors, handles);
+			for (int i = 0; i < descriptors.size(); i++) {
+				columnFamilies.put(new String(descriptors.get(i).getName(), StandardCharsets.UTF_8), handles.get(i));
+			}
+		}
+		return db;
+	}
+
+	private ColumnFamilyHandle getColumnFamilyIfExists(String name) throws RocksDBException {
+		getDB();
+		return columnFamilies.get(name);
+	}
+
+	private ColumnFamilyHandle getColumnFamily(String name) throws RocksDBException {
+		ColumnFamilyHandle handle = getColumnFamilyIfExists(name);
+		if (handle == null) {
+			handle = db.createColumnFamily(new ColumnFamilyDescriptor(name.getBytes(StandardCharsets.UTF_8), columnFamilyOptions));
+			columnFamilies.put(name, handle);
+		}
+		return handle;
+	}
+
+	/**
+	 * @return the value of the given numeric RocksDB property (e.g., rocksdb.estimate-num-keys) summed across all column families
+	 */
+	public synchronized long getProperty(@NonNull String property) throws RocksDBException {
+		return getDB().getAggregatedLongProperty(property);
+	}
+
+	/**
+	 * @return the METRIC_PROPERTIES and the block cache usage, for sizing memory and disk per node
+	 */
+	public synchronized Map<String, Long> getMetrics() throws RocksDBException {
+		Map<String, Long> metrics = new LinkedHashMap<>();
+		for (String property : METRIC_PROPERTIES) {
+			metrics.put(property, getProperty(property));
 		}
-		return new RocksDbCache(db);
+		// the block cache is shared, hence not to be summed up per column family
+		metrics.put(BLOCK_CACHE_USAGE_METRIC, blockCache != null ? blockCache.getUsage() : getDB().getLongProperty(BLOCK_CACHE_USAGE_METRIC));
+		metrics.put("column-families", (long) columnFamilies.size());
+		return metrics;
+	}
+
+	/**
+	 * @return the count of the given ticker, or -1 if the factory was created without collecting statistics or is closed
+	 */
+	public long getTickerCount(@NonNull TickerType ticker) {
+		return statistics != null ? statistics.getTickerCount(ticker) : -1;
+	}
+
+	/**
+	 * @return all collected tickers and histograms in RocksDB's textual format, or null if the factory was created without collecting statistics or is closed
+	 */
+	public String getStatistics() {
+		return statistics != null ? statistics.toString() : null;
 	}
-	
+
 	/**
 	 * deletes the persisted cache from disk and invalidates any prior cache instances
-	 * @throws RocksDBException 
+	 * @throws RocksDBException
 	 */
 	public void clearAndCloseCache() throws RocksDBException {
 		closeCache();
-		if (options != null) {
-			RocksDB.destroyDB(getStoragePath(), options);
-			db = null;
+		try (Options destroyOptions = new Options()) {
+			RocksDB.destroyDB(getStoragePath(), destroyOptions);
 		}
 		//db = RocksDB.open(options, getStoragePath())  ;
 	}
-	
-	public void closeCache() {
+
+	/**
+	 * closes the database and releases all native options, caches, and statistics, reopened upon next access
+	 */
+	public synchronized void closeCache() {
+		columnFamilies.values().forEach(ColumnFamilyHandle::close);
+		columnFamilies.clear();
 		if (db != null && !db.isClosed()) {
 			db.close();
-			db = null;
 		}
+		db = null;
+		closeNativeOptions();
 	}
-	
+
+	/**
+	 * writes to the column family of the whole cache or of a single branch, 
+	 * a branch cache falls back to reading entries that were stored in the shared cache with the branch URI appended to the key 
+	 */
 	@RequiredArgsConstructor
-	private class RocksDbCache implements BranchStateCache {
+	class RocksDbCache implements BranchStateCache {
 
+		@Getter
 		private final RocksDB db;
-		
+		private final ColumnFamilyHandle family;
+		private final String legacyKeySuffix; // null for the shared cache
+
 		@Override
 		public void put(String key, String value) throws PersistenceException {
 			try {
-				db.put(key.getBytes(), value.getBytes());
+				db.put(family, writeOptions, key.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8));
 			} catch (RocksDBException e) {
 				throw new PersistenceException(String.format("Error writing key %s to cache with underlying exception %s", key, e.getMessage()));
 			}
 		}
 
+		@Override
+		public void putAll(Map<String, String> entries) throws PersistenceException {
+			try (WriteBatch batch = new WriteBatch()) {
+				addToBatch(batch, entries);
+				db.write(writeOptions, batch);
+			} catch (RocksDBException e) {
+				throw new PersistenceException(String.format("Error writing batch of %s keys to cache with underlying exception %s", entries.size(), e.getMessage()));
+			}
+		}
+
+		void addToBatch(WriteBatch batch, Map<String, String> entries) throws RocksDBException {
+			for (Map.Entry<String, String> entry : entries.entrySet()) {
+				batch.put(family, entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue().getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
 		@Override
 		public String get(String key) throws PersistenceException {
 			byte[] content;
 			try {
-				content = db.get(key.getBytes());
+				content = db.get(family, key.getBytes(StandardCharsets.UTF_8));
+				if (content == null && legacyKeySuffix != null) {
+					content = db.get((key+legacyKeySuffix).getBytes(StandardCharsets.UTF_8));
+				}
 			} catch (RocksDBException e) {
 				throw new PersistenceException(String.format("Error reading key %s to cache with underlying exception %s", key, e.getMessage()));
 			}
 			if (content != null)
-				return new String(content);
+				return new String(content, StandardCharsets.UTF_8);
 			else
 				return null;
 		}
-		
+
+		@Override
+		public BranchStateCache forBranch(String branchURI) {
+			try {
+				return getCache(branchURI);
+			} catch (RocksDBException e) {
+				throw new RuntimeException(String.format("Error opening cache column family for branch %s with underlying exception %s", branchURI, e.getMessage()));
+			}
+		}
 	}
-	
+
 }
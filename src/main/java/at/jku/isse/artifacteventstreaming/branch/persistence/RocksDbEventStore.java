@@ -0,0 +1,285 @@
+package at.jku.isse.artifacteventstreaming.branch.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import at.jku.isse.artifacteventstreaming.api.BranchStateCache;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.CommitDeliveryEvent;
+import at.jku.isse.artifacteventstreaming.api.PerBranchEventStore;
+import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
+import at.jku.isse.artifacteventstreaming.branch.persistence.RocksDBFactory.RocksDbCache;
+import at.jku.isse.artifacteventstreaming.branch.serialization.BinaryCommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.CommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.JsonCommitCodec;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Event store within the same RocksDB instance as the branch state cache (obtained via {@link RocksDBFactory#getEventStore(String)}).
+ * Commits and deliveries are kept in their own column family each, keyed by a big-endian sequence number, hence iteration order is append order.
+ * A third column family maps commit ids to their sequence number.
+ * Values consist of a small header (format, commit id) followed by the encoded commit, so that reading only ids does not decode commits.
+ *
+ * When the cache handed to {@link #appendCommitsAndCacheEntries(List, BranchStateCache, Map)} stems from the same database,
+ * commits and cache entries are written in a single WriteBatch, i.e., a crash can no longer leave the cache pointing to a commit that was not persisted (or vice versa).
+ */
+@Slf4j
+public class RocksDbEventStore implements PerBranchEventStore {
+
+	private static final String DELIVERY_FORMAT = "delivery-json";
+
+	@Getter private final String branchURI;
+	private final RocksDB db;
+	private final ColumnFamilyHandle commitsFamily;
+	private final ColumnFamilyHandle commitIdsFamily;
+	private final ColumnFamilyHandle deliveriesFamily;
+	private final JsonMapper jsonMapper;
+	private final CommitCodec commitCodec;
+	private final JsonCommitCodec jsonCodec;
+	private final BinaryCommitCodec binaryCodec = new BinaryCommitCodec();
+	private final WriteOptions writeOptions;
+
+	private long nextCommitSequenceNr;
+	private long nextDeliverySequenceNr;
+
+	/**
+	 * @param jsonMapper with the statement and commit modules registered, as used for deliveries and json commits
+	 * @param commitCodec for writing commits, null for json, reading uses the format each commit was written with
+	 */
+	RocksDbEventStore(@NonNull String branchURI, @NonNull RocksDB db
+			, @NonNull ColumnFamilyHandle commitsFamily, @NonNull ColumnFamilyHandle commitIdsFamily, @NonNull ColumnFamilyHandle deliveriesFamily
+			, @NonNull JsonMapper jsonMapper, CommitCodec commitCodec, @NonNull WriteOptions writeOptions) {
+		this.branchURI = branchURI;
+		this.db = db;
+		this.commitsFamily = commitsFamily;
+		this.commitIdsFamily = commitIdsFamily;
+		this.deliveriesFamily = deliveriesFamily;
+		this.jsonMapper = jsonMapper;
+		this.writeOptions = writeOptions;
+		this.jsonCodec = new JsonCommitCodec(jsonMapper);
+		this.commitCodec = commitCodec != null ? commitCodec : jsonCodec;
+		this.nextCommitSequenceNr = nextSequenceNr(commitsFamily);
+		this.nextDeliverySequenceNr = nextSequenceNr(deliveriesFamily);
+	}
+
+	private long nextSequenceNr(ColumnFamilyHandle family) {
+		try (RocksIterator iterator = db.newIterator(family)) {
+			iterator.seekToLast();
+			return iterator.isValid() ? fromKey(iterator.key()) + 1 : 0;
+		}
+	}
+
+	static byte[] toKey(long sequenceNr) {
+		return ByteBuffer.allocate(Long.BYTES).putLong(sequenceNr).array(); // big-endian, i.e., byte order equals numeric order
+	}
+
+	static long fromKey(byte[] key) {
+		return ByteBuffer.wrap(key).getLong();
+	}
+
+	@Override
+	public synchronized List<Commit> loadAllCommits() throws PersistenceException {
+		return loadCommits(0, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public synchronized void forEachCommitId(@NonNull Consumer<String> commitIdConsumer) throws PersistenceException {
+		try (RocksIterator iterator = db.newIterator(commitsFamily)) {
+			for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+				commitIdConsumer.accept(readHeader(ByteBuffer.wrap(iterator.value()))[1]);
+			}
+		}
+	}
+
+	@Override
+	public synchronized List<Commit> loadCommits(long fromSequenceNr, int maxCount) throws PersistenceException {
+		if (fromSequenceNr >= nextCommitSequenceNr) {
+			return Collections.emptyList();
+		}
+		List<Commit> commits = new ArrayList<>((int) Math.min(maxCount, nextCommitSequenceNr - fromSequenceNr));
+		try (RocksIterator iterator = db.newIterator(commitsFamily)) {
+			for (iterator.seek(toKey(fromSequenceNr)); iterator.isValid() && commits.size() < maxCount; iterator.next()) {
+				commits.add(decodeCommit(iterator.value()));
+			}
+		}
+		return commits;
+	}
+
+	/**
+	 * @return the commit with the given id, or null if no such commit was appended
+	 */
+	public synchronized Commit loadCommit(@NonNull String commitId) throws PersistenceException {
+		try {
+			byte[] sequenceKey = db.get(commitIdsFamily, commitId.getBytes(StandardCharsets.UTF_8));
+			if (sequenceKey == null) {
+				return null;
+			}
+			byte[] value = db.get(commitsFamily, sequenceKey);
+			return value == null ? null : decodeCommit(value);
+		} catch (RocksDBException e) {
+			String msg = String.format("Error loading commit %s for branch %s with error %s", commitId, branchURI, e.getMessage());
+			log.warn(msg);
+			throw new PersistenceException(msg);
+		}
+	}
+
+	private Commit decodeCommit(byte[] value) throws PersistenceException {
+		ByteBuffer buffer = ByteBuffer.wrap(value);
+		String[] header = readHeader(buffer);
+		try {
+			return codecFor(header[0]).decode(buffer.slice());
+		} catch (IOException e) {
+			String msg = String.format("Error loading commit %s for branch %s with error %s", header[1], branchURI, e.getMessage());
+			log.warn(msg);
+			throw new PersistenceException(msg);
+		}
+	}
+
+	private CommitCodec codecFor(String format) throws IOException {
+		if (format.equals(JsonCommitCodec.FORMAT)) {
+			return jsonCodec;
+		} else if (format.equals(commitCodec.getFormat())) {
+			return commitCodec;
+		} else if (format.equals(BinaryCommitCodec.FORMAT)) {
+			return binaryCodec;
+		} else {
+			throw new IOException(String.format("Unknown commit format %s", format));
+		}
+	}
+
+	/**
+	 * as the EventStoreDB based store: all delivered commits after the given one, or all if the given one is null or unknown
+	 */
+	@Override
+	public synchronized List<Commit> loadAllIncomingCommitsForBranchFromCommitIdOnward(String fromCommitIdOnwards) throws PersistenceException {
+		LinkedList<Commit> commits = new LinkedList<>();
+		boolean found = false;
+		try (RocksIterator iterator = db.newIterator(deliveriesFamily)) {
+			// scan backwards, typically the last merged commit is among the most recent deliveries
+			for (iterator.seekToLast(); iterator.isValid(); iterator.prev()) {
+				ByteBuffer buffer = ByteBuffer.wrap(iterator.value());
+				String commitId = readHeader(buffer)[1];
+				if (commitId.equals(fromCommitIdOnwards)) {
+					found = true;
+					break;
+				}
+				commits.addFirst(decodeDelivery(buffer));
+			}
+		}
+		if (fromCommitIdOnwards != null && !found) {
+			log.debug(String.format("Commit %s not among deliveries of branch %s, returning all deliveries", fromCommitIdOnwards, branchURI));
+		}
+		return commits;
+	}
+
+	private Commit decodeDelivery(ByteBuffer payload) throws PersistenceException {
+		try {
+			return jsonMapper.readValue(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining(), CommitDeliveryEvent.class).getCommit();
+		} catch (IOException e) {
+			String msg = String.format("Error loading CommitDeliveryEvents for branch %s with error %s", branchURI, e.getMessage());
+			log.warn(msg);
+			throw new PersistenceException(msg);
+		}
+	}
+
+	@Override
+	public void appendCommit(@NonNull Commit commit) throws PersistenceException {
+		appendCommits(List.of(commit));
+	}
+
+	@Override
+	public synchronized void appendCommits(@NonNull List<Commit> commits) throws PersistenceException {
+		writeCommits(commits, batch -> {});
+	}
+
+	@Override
+	public synchronized void appendCommitsAndCacheEntries(@NonNull List<Commit> commits, @NonNull BranchStateCache cache, @NonNull Map<String, String> cacheEntries) throws PersistenceException {
+		if (cache instanceof WriteBehindBranchStateCache writeBehindCache) { // keep commits and entries in one batch with the underlying cache
+			writeBehindCache.writeThrough(cacheEntries, delegate -> appendCommitsAndCacheEntries(commits, delegate, cacheEntries));
+		} else if (cache instanceof RocksDbCache rocksCache && rocksCache.getDb() == db) {
+			writeCommits(commits, batch -> rocksCache.addToBatch(batch, cacheEntries));
+		} else {
+			PerBranchEventStore.super.appendCommitsAndCacheEntries(commits, cache, cacheEntries);
+		}
+	}
+
+	private interface BatchExtension {
+		void addTo(WriteBatch batch) throws RocksDBException;
+	}
+
+	private void writeCommits(List<Commit> commits, BatchExtension extension) throws PersistenceException {
+		long sequenceNr = nextCommitSequenceNr;
+		String commitId = null;
+		try (WriteBatch batch = new WriteBatch()) {
+			for (Commit commit : commits) {
+				commitId = commit.getCommitId();
+				byte[] key = toKey(sequenceNr++);
+				batch.put(commitsFamily, key, withHeader(commitCodec.getFormat(), commitId, commitCodec.encode(commit)));
+				batch.put(commitIdsFamily, commitId.getBytes(StandardCharsets.UTF_8), key);
+			}
+			extension.addTo(batch);
+			db.write(writeOptions, batch);
+			nextCommitSequenceNr = sequenceNr;
+		} catch (IOException | RocksDBException e) {
+			String msg = String.format("Error storing commit %s to branch %s with error %s", commitId, branchURI, e.getMessage()) ;
+			log.warn(msg);
+			throw new PersistenceException(msg);
+		}
+	}
+
+	@Override
+	public synchronized void appendCommitDelivery(@NonNull CommitDeliveryEvent event) throws PersistenceException {
+		try {
+			db.put(deliveriesFamily, writeOptions, toKey(nextDeliverySequenceNr), withHeader(DELIVERY_FORMAT, event.getCommitId(), jsonMapper.writeValueAsBytes(event)));
+			nextDeliverySequenceNr++;
+		} catch (IOException | RocksDBException e) {
+			String msg = String.format("Error storing commitdeliveryevent %s to branch %s with error %s", event.getCommitId(), branchURI, e.getMessage()) ;
+			log.warn(msg);
+			throw new PersistenceException(msg);
+		}
+	}
+
+	private static byte[] withHeader(String format, String commitId, byte[] payload) throws IOException {
+		byte[] formatBytes = format.getBytes(StandardCharsets.UTF_8);
+		byte[] idBytes = commitId.getBytes(StandardCharsets.UTF_8);
+		if (formatBytes.length > Byte.MAX_VALUE || idBytes.length > Short.MAX_VALUE) {
+			throw new IOException(String.format("Format %s or commit id %s too long", format, commitId));
+		}
+		return ByteBuffer.allocate(1 + formatBytes.length + 2 + idBytes.length + payload.length)
+				.put((byte) formatBytes.length).put(formatBytes)
+				.putShort((short) idBytes.length).put(idBytes)
+				.put(payload)
+				.array();
+	}
+
+	/**
+	 * @return format and commit id, the buffer is positioned at the payload afterwards
+	 */
+	private static String[] readHeader(ByteBuffer buffer) {
+		byte[] formatBytes = new byte[buffer.get()];
+		buffer.get(formatBytes);
+		byte[] idBytes = new byte[buffer.getShort()];
+		buffer.get(idBytes);
+		return new String[] { new String(formatBytes, StandardCharsets.UTF_8), new String(idBytes, StandardCharsets.UTF_8) };
+	}
+}
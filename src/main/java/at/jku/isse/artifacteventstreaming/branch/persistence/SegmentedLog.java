@@ -0,0 +1,232 @@
+package at.jku.isse.artifacteventstreaming.branch.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Append-only log of records stored in preallocated, memory-mapped segment files (name-00000.seg, name-00001.seg, ...).
+ * Record framing: int bodyLength, int crc32c(body), body = short keyLength, key, byte formatLength, format, payload.
+ * A bodyLength of 0 marks the end of the data within a segment.
+ *
+ * A record position is segment number (upper 32 bits) and offset within that segment (lower 32 bits).
+ * Upon opening, the last segment is scanned and anything after the last record with a valid checksum (e.g., a torn write) is discarded.
+ * Reads hand out slices of the mapped segments, i.e., payloads are not copied.
+ *
+ * Not thread-safe, access is guarded by the MappedFileEventStore.
+ */
+@Slf4j
+final class SegmentedLog implements AutoCloseable {
+
+	static final String SEGMENT_SUFFIX = ".seg";
+	private static final int FRAME_HEADER_SIZE = 8; // length + crc
+	private static final int END_MARKER_SIZE = 4;
+
+	private final Path directory;
+	private final String name;
+	private final int segmentSize;
+	private final List<FileChannel> channels = new ArrayList<>();
+	private final List<MappedByteBuffer> segments = new ArrayList<>();
+	// position within the last segment where the next record will be written
+	private int writeOffset = 0;
+	private boolean dirty = false;
+
+	@RequiredArgsConstructor
+	static class Entry {
+		@Getter private final long position;
+		@Getter private final String key;
+		@Getter private final String format;
+		@Getter private final ByteBuffer payload;
+	}
+
+	SegmentedLog(Path directory, String name, int segmentSize) throws IOException {
+		this.directory = directory;
+		this.name = name;
+		this.segmentSize = segmentSize;
+		Files.createDirectories(directory);
+		List<Path> existing;
+		try (Stream<Path> files = Files.list(directory)) {
+			existing = files.filter(path -> path.getFileName().toString().startsWith(name+"-") && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+				.sorted()
+				.toList();
+		}
+		for (Path path : existing) {
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			channels.add(channel);
+			segments.add(channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+		}
+		if (segments.isEmpty()) {
+			addSegment(segmentSize);
+		} else {
+			recoverWriteOffset();
+		}
+	}
+
+	private void recoverWriteOffset() {
+		MappedByteBuffer segment = segments.get(segments.size()-1);
+		int offset = 0;
+		while (true) {
+			int bodyLength = bodyLengthAt(segment, offset);
+			if (bodyLength <= 0) {
+				break;
+			}
+			if (!isValid(segment, offset, bodyLength)) {
+				log.warn(String.format("Discarding corrupt or incomplete record in log %s at segment %s offset %s", name, segments.size()-1, offset));
+				// clear remainder so that later appends are not followed by stale bytes
+				for (int i = offset; i < segment.capacity(); i++) {
+					segment.put(i, (byte) 0);
+				}
+				segment.force();
+				break;
+			}
+			offset += FRAME_HEADER_SIZE + bodyLength;
+		}
+		writeOffset = offset;
+	}
+
+	private static int bodyLengthAt(ByteBuffer segment, int offset) {
+		if (offset + FRAME_HEADER_SIZE > segment.capacity()) {
+			return 0;
+		}
+		return segment.getInt(offset);
+	}
+
+	private static boolean isValid(ByteBuffer segment, int offset, int bodyLength) {
+		if ((long) offset + FRAME_HEADER_SIZE + bodyLength > segment.capacity()) {
+			return false;
+		}
+		CRC32C crc = new CRC32C();
+		crc.update(segment.slice(offset + FRAME_HEADER_SIZE, bodyLength));
+		return (int) crc.getValue() == segment.getInt(offset + 4);
+	}
+
+	private void addSegment(int capacity) throws IOException {
+		Path path = directory.resolve(String.format("%s-%05d%s", name, segments.size(), SEGMENT_SUFFIX));
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		channels.add(channel);
+		segments.add(channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity)); // grows the file to capacity, filled with zeros
+		writeOffset = 0;
+	}
+
+	/**
+	 * @return the position of the appended record, the record is only durable after {@link #force()}
+	 */
+	long append(String key, String format, byte[] payload) throws IOException {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		byte[] formatBytes = format.getBytes(StandardCharsets.UTF_8);
+		if (keyBytes.length > Short.MAX_VALUE || formatBytes.length > Byte.MAX_VALUE) {
+			throw new IOException(String.format("Key %s or format %s too long for log %s", key, format, name));
+		}
+		int bodyLength = 2 + keyBytes.length + 1 + formatBytes.length + payload.length;
+		int recordSize = FRAME_HEADER_SIZE + bodyLength;
+		MappedByteBuffer segment = segments.get(segments.size()-1);
+		if ((long) writeOffset + recordSize + END_MARKER_SIZE > segment.capacity()) {
+			segment.force(); // done with this segment
+			addSegment(Math.max(segmentSize, recordSize + END_MARKER_SIZE));
+			segment = segments.get(segments.size()-1);
+		}
+		ByteBuffer body = segment.slice(writeOffset + FRAME_HEADER_SIZE, bodyLength);
+		body.putShort((short) keyBytes.length);
+		body.put(keyBytes);
+		body.put((byte) formatBytes.length);
+		body.put(formatBytes);
+		body.put(payload);
+		CRC32C crc = new CRC32C();
+		crc.update(body.flip());
+		segment.putInt(writeOffset + 4, (int) crc.getValue());
+		segment.putInt(writeOffset, bodyLength); // written last, a record only becomes visible once complete
+		long position = toPosition(segments.size()-1, writeOffset);
+		writeOffset += recordSize;
+		segment.putInt(writeOffset, 0);
+		dirty = true;
+		return position;
+	}
+
+	/**
+	 * flushes all appended records to disk
+	 */
+	void force() {
+		if (dirty) {
+			segments.get(segments.size()-1).force();
+			dirty = false;
+		}
+	}
+
+	Entry read(long position) {
+		int segmentNr = (int) (position >>> 32);
+		int offset = (int) position;
+		ByteBuffer segment = segments.get(segmentNr);
+		int bodyLength = segment.getInt(offset);
+		ByteBuffer body = segment.slice(offset + FRAME_HEADER_SIZE, bodyLength);
+		byte[] keyBytes = new byte[body.getShort()];
+		body.get(keyBytes);
+		byte[] formatBytes = new byte[body.get()];
+		body.get(formatBytes);
+		return new Entry(position
+				, new String(keyBytes, StandardCharsets.UTF_8)
+				, new String(formatBytes, StandardCharsets.UTF_8)
+				, body.slice());
+	}
+
+	/**
+	 * @return position of the record following the record at the given position, or -1 if there is none
+	 */
+	long next(long position) {
+		int segmentNr = (int) (position >>> 32);
+		int offset = (int) position;
+		int nextOffset = offset + FRAME_HEADER_SIZE + segments.get(segmentNr).getInt(offset);
+		return firstFrom(segmentNr, nextOffset);
+	}
+
+	/**
+	 * @return position of the first record, or -1 if the log is empty
+	 */
+	long first() {
+		return firstFrom(0, 0);
+	}
+
+	private long firstFrom(int segmentNr, int offset) {
+		while (segmentNr < segments.size()) {
+			boolean isLast = segmentNr == segments.size()-1;
+			if ((isLast && offset < writeOffset) || (!isLast && bodyLengthAt(segments.get(segmentNr), offset) > 0)) {
+				return toPosition(segmentNr, offset);
+			}
+			segmentNr++;
+			offset = 0;
+		}
+		return -1;
+	}
+
+	private static long toPosition(int segmentNr, int offset) {
+		return ((long) segmentNr << 32) | (offset & 0xFFFFFFFFL);
+	}
+
+	int getSegmentCount() {
+		return segments.size();
+	}
+
+	@Override
+	public void close() throws IOException {
+		force();
+		for (FileChannel channel : channels) {
+			channel.close();
+		}
+		channels.clear();
+		segments.clear();
+	}
+}
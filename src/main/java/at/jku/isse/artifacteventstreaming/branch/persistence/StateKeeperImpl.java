@@ -1,16 +1,22 @@
 package at.jku.isse.artifacteventstreaming.branch.persistence;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Optional;
+import java.util.RandomAccess;
 import java.util.Set;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 
 import at.jku.isse.artifacteventstreaming.api.BranchStateCache;
@@ -19,12 +25,20 @@ import at.jku.isse.artifacteventstreaming.api.Commit;
 import at.jku.isse.artifacteventstreaming.api.CommitDeliveryEvent;
 import at.jku.isse.artifacteventstreaming.api.PerBranchEventStore;
 import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
-import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+import at.jku.isse.artifacteventstreaming.branch.serialization.CommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.JsonCommitCodec;
 import at.jku.isse.artifacteventstreaming.branch.serialization.StatementJsonDeserializer;
 import at.jku.isse.artifacteventstreaming.branch.serialization.StatementJsonSerializer;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * By default keeps all commits of the branch in memory. 
+ * When created with a commit cache size, only the commit ids and the last commit are loaded upon startup,
+ * any other commits are fetched page-wise from the event store upon access and kept in a bounded LRU cache. 
+ */
 @Slf4j
 public class StateKeeperImpl implements BranchStateUpdater {
 
@@ -34,32 +48,79 @@ public class StateKeeperImpl implements BranchStateUpdater {
 	public static final String LAST_OPEN_PRELEMINARY_COMMIT_CONTENT = "LAST_OPEN_PRELEMINARY_COMMIT_CONTENT";
 	public static final String LAST_PRODUCED_COMMIT = "LAST_PRODUCED_COMMIT";
 	public static final String LAST_FORWARDED_COMMIT = "LAST_FORWARDED_COMMIT";
+	public static final String PENDING_GROUP_COMMIT_IDS = "PENDING_GROUP_COMMIT_IDS";
+	public static final String PENDING_GROUP_COMMIT_CONTENT = "PENDING_GROUP_COMMIT_CONTENT:"; // followed by the commit id
 
 
-	private final LinkedHashMap<String, Commit> producedCommits = new LinkedHashMap<>();
-	private final Set<String> seenCommitIds = new LinkedHashSet<>();
+	private static final int MAX_PAGE_SIZE = 64;
+
+	private final Map<String, Commit> producedCommits; // all produced commits, or only the recently used ones in paged mode
+	private final CommitIdIndex producedCommitIds = new CommitIdIndex(); // position corresponds to sequence number in event store
+	private final Set<String> preliminaryCommitIds = new HashSet<>(); // seen upon beforeServices but not yet produced
+	private final Set<String> coalescedCommitIds = new HashSet<>(); // merged into a merge commit that carries the id of another incoming commit
+	private final Map<String, Commit> deferredCommits = new HashMap<>(); // produced but not yet persisted (group commit), hence never evicted
+	private final Set<String> pendingGroupCommitIds = new LinkedHashSet<>(); // produced but not yet persisted (group commit), in the order recorded in the cache
+	private final int commitCacheSize; // 0 to keep all commits in memory
+	private final int pageSize;
 	private Commit lastCommit = null;
 	private final String branchURI;
 	private final BranchStateCache cache;
 	private final PerBranchEventStore eventDBclient;
 	private final JsonMapper jsonMapper = new JsonMapper();
+	private final CommitCodec jsonCodec = new JsonCommitCodec(jsonMapper);
+	private final CommitCodec commitCodec; // for the preliminary commit cache entry
 
 	public StateKeeperImpl(URI branchURI,  BranchStateCache cache, PerBranchEventStore eventDBclient) {
-		this.cache = cache;
+		this(branchURI, cache, eventDBclient, 0);
+	}
+	
+	/**
+	 * @param commitCacheSize maximum number of commits kept in memory, 0 to keep all (i.e., loading the complete history upon startup)
+	 */
+	public StateKeeperImpl(URI branchURI,  BranchStateCache cache, PerBranchEventStore eventDBclient, int commitCacheSize) {
+		this(branchURI, cache, eventDBclient, commitCacheSize, null);
+	}
+	
+	/**
+	 * @param commitCodec format in which the preliminary commit is cached, null for json, any previously cached json content remains readable
+	 */
+	public StateKeeperImpl(URI branchURI,  BranchStateCache cache, PerBranchEventStore eventDBclient, int commitCacheSize, CommitCodec commitCodec) {
+		if (commitCacheSize < 0) {
+			throw new IllegalArgumentException("Commit cache size must not be negative, but was "+commitCacheSize);
+		}
+		this.commitCacheSize = commitCacheSize;
+		if (isPaged()) {
+			// page size at most half of the cache, so that loading a page never evicts the requested commit
+			this.pageSize = Math.max(1, Math.min(MAX_PAGE_SIZE, commitCacheSize/2));
+			this.producedCommits = new LinkedHashMap<>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Commit> eldest) {
+					return size() > commitCacheSize;
+				}
+			};
+		} else {
+			this.pageSize = 0;
+			this.producedCommits = new LinkedHashMap<>();
+		}
 		this.branchURI = branchURI.toString();
+		this.cache = cache.forBranch(this.branchURI); // entries keyed without branch, the view separates them from other branches
 		this.eventDBclient = eventDBclient;
 		StatementJsonSerializer.registerSerializationModule(jsonMapper);	
 		StatementJsonDeserializer.registerDeserializationModule(jsonMapper);
+		this.commitCodec = commitCodec != null ? commitCodec : jsonCodec;
 	}
 
 	@Override
 	public Commit loadState() throws PersistenceException {
 		loadHistory();
+		appendPendingGroupCommits();
 		// make cache entries consistent:
 		// if last open 
-		//String lastProducedCommit = cache.get(LAST_PRODUCED_COMMIT+branchURI); 
-		String lastPrelimCommitId = cache.get(LAST_OPEN_PRELEMINARY_COMMIT_ID+branchURI);
-		String lastPrelimCommit = cache.get(LAST_OPEN_PRELEMINARY_COMMIT_CONTENT+branchURI);
+		//String lastProducedCommit = cache.get(LAST_PRODUCED_COMMIT); 
+		String lastPrelimCommitId = cache.get(LAST_OPEN_PRELEMINARY_COMMIT_ID);
+		String lastPrelimCommit = cache.get(LAST_OPEN_PRELEMINARY_COMMIT_CONTENT);
 
 		if (lastPrelimCommitId != null && !lastPrelimCommitId.isEmpty() && lastPrelimCommit != null) {
 			// apparently we crashed while processing a local commit
@@ -68,10 +129,10 @@ public class StateKeeperImpl implements BranchStateUpdater {
 					|| !hasSeenCommit(lastCommit) // we have not recorded this commit as completed
 					) {
 				// then we reprocess this commit before doing anything else
-				StatementCommitImpl commit;
+				Commit commit;
 				try {
-					commit = jsonMapper.readValue(lastPrelimCommit, StatementCommitImpl.class);
-				} catch (JsonProcessingException e) {
+					commit = decodeCacheContent(lastPrelimCommit);
+				} catch (IOException | IllegalArgumentException e) {
 					String msg = String.format("Error serializing commit %s for branch %s with error %s", lastPrelimCommit, branchURI, e.getMessage());
 					log.warn(msg);
 					throw new PersistenceException(msg);
@@ -82,19 +143,82 @@ public class StateKeeperImpl implements BranchStateUpdater {
 			}
 		} 
 		// ensure clean/consistent cache
-		cache.put(LAST_OPEN_PRELEMINARY_COMMIT_ID+branchURI, "");
-		cache.put(LAST_OPEN_PRELEMINARY_COMMIT_CONTENT+branchURI, "");
+		cache.putAll(Map.of(LAST_OPEN_PRELEMINARY_COMMIT_ID, "", LAST_OPEN_PRELEMINARY_COMMIT_CONTENT, ""));
 		return null;
 	}
 
-	private void loadHistory() throws PersistenceException {		
-		// for now, we do a inefficient sequential load of all commits and keep them in memory
-		List<Commit> commits = eventDBclient.loadAllCommits();
-		for (Commit commit : commits) {
+	/**
+	 * commits deferred for group commit are recorded in the cache before the model changes are committed, 
+	 * those not yet in the event store upon a crash are appended now, in the order they were produced
+	 */
+	private synchronized void appendPendingGroupCommits() throws PersistenceException {
+		String pendingIds = cache.get(PENDING_GROUP_COMMIT_IDS);
+		if (pendingIds == null || pendingIds.isEmpty()) return;
+		List<Commit> missingCommits = new ArrayList<>();
+		Map<String, String> entries = new LinkedHashMap<>();
+		for (String commitId : pendingIds.split(",")) {
+			entries.put(PENDING_GROUP_COMMIT_CONTENT+commitId, "");
+			if (producedCommitIds.contains(commitId)) continue; // persisted but cache entries not updated anymore
+			String content = cache.get(PENDING_GROUP_COMMIT_CONTENT+commitId);
+			try {
+				missingCommits.add(decodeCacheContent(content));
+			} catch (IOException | RuntimeException e) {
+				String msg = String.format("Error deserializing pending group commit %s for branch %s with error %s", commitId, branchURI, e.getMessage());
+				log.warn(msg);
+				throw new PersistenceException(msg);
+			}
+		}
+		entries.put(PENDING_GROUP_COMMIT_IDS, "");
+		if (!missingCommits.isEmpty()) {
+			entries.put(LAST_PRODUCED_COMMIT, missingCommits.get(missingCommits.size()-1).getCommitId());
+			log.info(String.format("Appending %s commits of branch %s that were pending for group commit upon shutdown", missingCommits.size(), branchURI));
+		}
+		eventDBclient.appendCommitsAndCacheEntries(missingCommits, cache, entries);
+		missingCommits.forEach(this::registerProducedCommit);
+	}
+
+	private boolean isPaged() {
+		return commitCacheSize > 0;
+	}
+	
+	private synchronized void loadHistory() throws PersistenceException {		
+		if (isPaged()) {
+			// only the ids, commits are loaded upon access
+			eventDBclient.forEachCommitId(producedCommitIds::append);
+			if (!producedCommitIds.isEmpty()) {
+				lastCommit = getCommitAt(producedCommitIds.size()-1);
+			}
+		} else {
+			// sequential load of all commits, keeping them in memory
+			List<Commit> commits = eventDBclient.loadAllCommits();
+			for (Commit commit : commits) {
 				producedCommits.put(commit.getCommitId(), commit);
-				seenCommitIds.add(commit.getCommitId());
+				producedCommitIds.append(commit.getCommitId());
 				lastCommit = commit;
-		}		
+			}
+		}
+	}
+	
+	/**
+	 * @return the commit with the given sequence number, in paged mode loading it (and subsequent ones) from the event store if not cached, 
+	 * or null if the event store cannot provide it (e.g., as it is not yet persisted upon group commit) 
+	 */
+	private synchronized Commit getCommitAt(int sequenceNr) throws PersistenceException {
+		String commitId = producedCommitIds.get(sequenceNr);
+		Commit commit = deferredCommits.get(commitId);
+		if (commit == null) {
+			commit = producedCommits.get(commitId);
+		}
+		if (commit == null && isPaged()) {
+			for (Commit loadedCommit : eventDBclient.loadCommits(sequenceNr, pageSize)) {
+				producedCommits.put(loadedCommit.getCommitId(), loadedCommit);
+			}
+			commit = producedCommits.get(commitId);
+			if (commit == null) {
+				log.warn(String.format("Commit %s at position %s not available from event store for branch %s", commitId, sequenceNr, branchURI));
+			}
+		}
+		return commit;
 	}
 	
 	@Override
@@ -106,45 +230,144 @@ public class StateKeeperImpl implements BranchStateUpdater {
 	
 	@Override
 	public List<Commit> getNonMergedCommits() throws PersistenceException {
-		String lastMergedCommitId = cache.get(LAST_PROCESSED_INCOMING_COMMIT+branchURI);
+		String lastMergedCommitId = cache.get(LAST_PROCESSED_INCOMING_COMMIT);
 		return eventDBclient.loadAllIncomingCommitsForBranchFromCommitIdOnward(lastMergedCommitId);
 	}
 
 	@Override
 	public void finishedMerge(Commit commit) throws PersistenceException {
-		cache.put(LAST_PROCESSED_INCOMING_COMMIT+branchURI, commit.getCommitId());
+		cache.put(LAST_PROCESSED_INCOMING_COMMIT, commit.getCommitId());
 		log.debug("Finished merge of" +commit.getCommitId());
 	}
+	
+	@Override
+	public synchronized void afterCoalescedMerge(@NonNull List<Commit> mergedCommits) {
+		// only kept in memory, like the preliminary commit ids
+		mergedCommits.stream()
+			.map(Commit::getCommitId)
+			.filter(commitId -> !producedCommitIds.contains(commitId))
+			.forEach(coalescedCommitIds::add);
+	}
 
 	@Override
-	public void beforeServices(Commit commit) throws PersistenceException {
+	public synchronized void beforeServices(Commit commit) throws PersistenceException {
 		try {
-			String commitAsJson = jsonMapper.writeValueAsString(commit);
-			cache.put(LAST_OPEN_PRELEMINARY_COMMIT_ID+branchURI, commit.getCommitId());
-			cache.put(LAST_OPEN_PRELEMINARY_COMMIT_CONTENT+branchURI, commitAsJson);
-		} catch (JsonProcessingException e) {
+			String commitContent = encodeCacheContent(commit);
+			cache.putAll(Map.of(LAST_OPEN_PRELEMINARY_COMMIT_ID, commit.getCommitId(), LAST_OPEN_PRELEMINARY_COMMIT_CONTENT, commitContent));
+			cache.flush(); // until the commit is persisted after the services, this entry is its only copy
+		} catch (IOException e) {
 			String msg = String.format("Error serializing commit %s for branch %s with error %s", commit.getCommitId(), branchURI, e.getMessage());
 			log.warn(msg);
 			throw new PersistenceException(msg);
 		}					
-		seenCommitIds.add(commit.getCommitId());
+		if (!producedCommitIds.contains(commit.getCommitId())) {
+			preliminaryCommitIds.add(commit.getCommitId());
+		}
 		log.debug("Pre Services: "+commit.getCommitId());
 	}
 
-	@Override
-	public void afterServices(Commit commit) throws PersistenceException {
-		// first store the commit
-		eventDBclient.appendCommit(commit);
+	/**
+	 * json is cached as is, any other format as format id and base64 encoded payload, separated by ':'
+	 */
+	private String encodeCacheContent(Commit commit) throws IOException {
+		if (commitCodec == jsonCodec) {
+			return jsonMapper.writeValueAsString(commit);
+		} else {
+			return commitCodec.getFormat()+":"+Base64.getEncoder().encodeToString(commitCodec.encode(commit));
+		}
+	}
 	
-		// then store the cache entry
-		cache.put(LAST_PRODUCED_COMMIT+branchURI, commit.getCommitId()); // first store what we have processed
-		cache.put(LAST_OPEN_PRELEMINARY_COMMIT_ID+branchURI, "");
-		cache.put(LAST_OPEN_PRELEMINARY_COMMIT_CONTENT+branchURI, "");
+	private Commit decodeCacheContent(String content) throws IOException {
+		if (content.startsWith("{")) {
+			return jsonCodec.decode(content.getBytes(StandardCharsets.UTF_8));
+		} 
+		int separator = content.indexOf(':');
+		String format = separator < 0 ? "" : content.substring(0, separator);
+		if (!format.equals(commitCodec.getFormat())) {
+			throw new IOException(String.format("Cached commit in format '%s' but configured for format %s", format, commitCodec.getFormat()));
+		}
+		return commitCodec.decode(Base64.getDecoder().decode(content.substring(separator+1)));
+	}
 
+	@Override
+	public synchronized void afterServices(Commit commit) throws PersistenceException {
+		// first store the commit, then the cache entries (atomically if the store supports it)
+		Map<String, String> entries = new LinkedHashMap<>();
+		entries.put(LAST_PRODUCED_COMMIT, commit.getCommitId()); // first store what we have processed
+		entries.put(LAST_OPEN_PRELEMINARY_COMMIT_ID, "");
+		entries.put(LAST_OPEN_PRELEMINARY_COMMIT_CONTENT, "");
+		eventDBclient.appendCommitsAndCacheEntries(List.of(commit), cache, entries);
+
+		registerProducedCommit(commit);
+		log.debug("Post Services: "+commit.getCommitId());
+	}
+	
+	@Override
+	public synchronized void afterServicesDeferred(Commit commit) throws PersistenceException {
+		// the model changes are committed before the group is persisted, hence the commit needs to be recoverable until then
+		pendingGroupCommitIds.add(commit.getCommitId());
+		Map<String, String> entries = new LinkedHashMap<>();
+		try {
+			entries.put(PENDING_GROUP_COMMIT_CONTENT+commit.getCommitId(), encodeCacheContent(commit));
+		} catch (IOException e) {
+			pendingGroupCommitIds.remove(commit.getCommitId());
+			String msg = String.format("Error serializing commit %s for branch %s with error %s", commit.getCommitId(), branchURI, e.getMessage());
+			log.warn(msg);
+			throw new PersistenceException(msg);
+		}
+		entries.put(PENDING_GROUP_COMMIT_IDS, String.join(",", pendingGroupCommitIds));
+		entries.put(LAST_OPEN_PRELEMINARY_COMMIT_ID, ""); // superseded by the pending entry
+		entries.put(LAST_OPEN_PRELEMINARY_COMMIT_CONTENT, "");
+		try {
+			cache.putAll(entries);
+			cache.flush();
+		} catch (PersistenceException e) {
+			pendingGroupCommitIds.remove(commit.getCommitId());
+			throw e;
+		}
+		if (isPaged()) { // the event store cannot provide it until persisted, thus must not get lost upon eviction
+			deferredCommits.put(commit.getCommitId(), commit);
+		}
+		registerProducedCommit(commit);
+		log.debug("Post Services, persistence deferred: "+commit.getCommitId());
+	}
+	
+	@Override
+	public synchronized void afterServices(List<Commit> commits) throws PersistenceException {
+		if (commits.isEmpty()) return;
+		Map<String, String> entries = new LinkedHashMap<>();
+		entries.put(LAST_PRODUCED_COMMIT, commits.get(commits.size()-1).getCommitId());
+		// only clear the preliminary commit if it belongs to this group, otherwise a later commit is currently processed by services 
+		String openPrelimCommitId = cache.get(LAST_OPEN_PRELEMINARY_COMMIT_ID);
+		if (openPrelimCommitId == null || commits.stream().anyMatch(commit -> commit.getCommitId().equals(openPrelimCommitId))) {
+			entries.put(LAST_OPEN_PRELEMINARY_COMMIT_ID, "");
+			entries.put(LAST_OPEN_PRELEMINARY_COMMIT_CONTENT, "");
+		}
+		List<String> remainingPendingIds = pendingGroupCommitIds.stream()
+				.filter(commitId -> commits.stream().noneMatch(commit -> commit.getCommitId().equals(commitId)))
+				.toList();
+		if (remainingPendingIds.size() < pendingGroupCommitIds.size()) { // no longer to be recovered, atomically with appending them
+			commits.forEach(commit -> entries.put(PENDING_GROUP_COMMIT_CONTENT+commit.getCommitId(), ""));
+			entries.put(PENDING_GROUP_COMMIT_IDS, String.join(",", remainingPendingIds));
+		}
+		eventDBclient.appendCommitsAndCacheEntries(commits, cache, entries);
+		commits.forEach(commit -> {
+			deferredCommits.remove(commit.getCommitId()); // now loadable from the event store
+			pendingGroupCommitIds.remove(commit.getCommitId());
+		});
+		
+		// commits are typically already registered upon afterServicesDeferred, re-registering those would reset the last commit to an older one 
+		commits.stream()
+			.filter(commit -> !producedCommitIds.contains(commit.getCommitId()))
+			.forEach(this::registerProducedCommit);
+		log.debug(String.format("Post Services: persisted group of %s commits up to %s", commits.size(), commits.get(commits.size()-1).getCommitId()));
+	}
+	
+	private void registerProducedCommit(Commit commit) {
 		producedCommits.put(commit.getCommitId(), commit);
-		seenCommitIds.add(commit.getCommitId());
+		producedCommitIds.append(commit.getCommitId());
+		preliminaryCommitIds.remove(commit.getCommitId());
 		lastCommit = commit;
-		log.debug("Post Services: "+commit.getCommitId());
 	}
 
 	@Override
@@ -152,13 +375,20 @@ public class StateKeeperImpl implements BranchStateUpdater {
 		return hasSeenCommit(commit.getCommitId());
 	}
 
-	private boolean hasSeenCommit(String commitId) {
-		return seenCommitIds.contains(commitId);
+	private synchronized boolean hasSeenCommit(String commitId) {
+		return producedCommitIds.contains(commitId) || preliminaryCommitIds.contains(commitId) || coalescedCommitIds.contains(commitId);
 	}
 
 	@Override
-	public List<Commit> getHistory() {
-		return producedCommits.values().stream().toList();
+	public synchronized List<Commit> getHistory() {
+		return getCommitsFrom(0);
+	}
+	
+	/**
+	 * @return a view on the commits from the given sequence number up to the current last commit, in paged mode commits are loaded upon access 
+	 */
+	private List<Commit> getCommitsFrom(int sequenceNr) {
+		return new CommitRangeList(sequenceNr, producedCommitIds.size());
 	}
 
 	@Override
@@ -168,13 +398,13 @@ public class StateKeeperImpl implements BranchStateUpdater {
 
 	@Override
 	public void afterForwarded(@NonNull Commit commit) throws PersistenceException {
-		cache.put(LAST_FORWARDED_COMMIT+branchURI, commit.getCommitId()); 
+		cache.put(LAST_FORWARDED_COMMIT, commit.getCommitId()); 
 	}
 
 //	@Override
 //	public Optional<String> getLastMergedCommitId() {
 //		try {
-//			return Optional.ofNullable(cache.get(LAST_PROCESSED_INCOMING_COMMIT+branchURI));
+//			return Optional.ofNullable(cache.get(LAST_PROCESSED_INCOMING_COMMIT));
 //		} catch (Exception e) {
 //			log.warn("Error reading from cache "+e.getMessage());
 //			return Optional.empty();
@@ -194,8 +424,8 @@ public class StateKeeperImpl implements BranchStateUpdater {
 				} else {
 					commitsToRequeue = getCommitsForwardIncludingFrom(lastForwardedCommitId.get());
 					if (!commitsToRequeue.isEmpty()) {
-						// remove the one already forwarded
-						commitsToRequeue.remove(0);
+						// skip the one already forwarded
+						commitsToRequeue = commitsToRequeue.subList(1, commitsToRequeue.size());
 					}
 				}
 			} else {
@@ -210,7 +440,7 @@ public class StateKeeperImpl implements BranchStateUpdater {
 	@Override
 	public Optional<String> getLastForwardedCommitId() throws PersistenceException {
 		try {
-			return Optional.ofNullable(cache.get(LAST_FORWARDED_COMMIT+branchURI));
+			return Optional.ofNullable(cache.get(LAST_FORWARDED_COMMIT));
 		} catch (Exception e) {
 			String msg = String.format("Cannot access cache for last forwarded commit id for branch %s with error %s", branchURI, e.getMessage()); 
 			log.warn(msg);
@@ -219,30 +449,51 @@ public class StateKeeperImpl implements BranchStateUpdater {
 	}
 
 	@Override
-	public List<Commit> getCommitsForwardIncludingFrom(String commitId) {
-		Commit commit = producedCommits.get(commitId);
-		if (commit == null) {
+	public synchronized List<Commit> getCommitsForwardIncludingFrom(String commitId) {
+		int pos = producedCommitIds.indexOf(commitId);
+		if (pos < 0) {
 			log.warn("Asked to find a commit that we haven't seen by lookup id: "+commitId);
 			return Collections.emptyList();
+		} else if (pos == producedCommitIds.size()-1) {
+			return List.of(lastCommit);
 		} else {
-			if (commit.getCommitId().equals(lastCommit.getCommitId())) {
-				return List.of(commit);
-			} else {
-				List<String> ids = new ArrayList<>(seenCommitIds);
-				int pos = ids.indexOf(commitId);
-				if (pos < 0) {
-					log.error("Inconsistency between commit map and commit id index when trying to lookup id: "+commitId);
-					return Collections.emptyList();
-				} else {
-					return ids.subList(pos, ids.size()).stream()
-							.map(producedCommits::get)
-							.filter(Objects::nonNull)
-							.toList();
-				}
-			}
+			return getCommitsFrom(pos);
 		}
 	}
 	
-	
+	/**
+	 * Read-only view on a range of commits, fetched via {@link StateKeeperImpl#getCommitAt(int)}, 
+	 * hence no copying of the history, and in paged mode sequential iteration loads one page per event store access.
+	 */
+	private class CommitRangeList extends AbstractList<Commit> implements RandomAccess {
+		
+		private final int fromSequenceNr;
+		private final int toSequenceNr; // exclusive
+		
+		private CommitRangeList(int fromSequenceNr, int toSequenceNr) {
+			this.fromSequenceNr = fromSequenceNr;
+			this.toSequenceNr = toSequenceNr;
+		}
 
+		@Override
+		public Commit get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException(index);
+			}
+			try {
+				Commit commit = getCommitAt(fromSequenceNr+index);
+				if (commit == null) {
+					throw new RuntimeException(String.format("Commit at position %s not available for branch %s", fromSequenceNr+index, branchURI));
+				}
+				return commit;
+			} catch (PersistenceException e) {
+				throw new RuntimeException(e.getMessage());
+			}
+		}
+
+		@Override
+		public int size() {
+			return toSequenceNr - fromSequenceNr;
+		}
+	}
 }
@@ -0,0 +1,189 @@
+package at.jku.isse.artifacteventstreaming.branch.persistence;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import at.jku.isse.artifacteventstreaming.api.BranchStateCache;
+import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Decorator that keeps the latest value of each key in memory and writes changed entries to the underlying cache in the background,
+ * as one batch (putAll) at most maxStalenessMillis after they were put, repeated puts of the same key in between result in a single write.
+ * Reads are served from memory once a key was written or read.
+ *
+ * Entries not yet written are lost upon a crash, hence callers that need an entry to be durable call {@link #flush()},
+ * as the StateKeeperImpl does for the preliminary commit.
+ * Meant for the small number of bookkeeping entries per branch and service, all keys are kept in memory.
+ * Branch views write behind to the branch view of the underlying cache, thus keep using its per branch storage,
+ * and are flushed by the same background thread as the cache they were obtained from.
+ */
+@Slf4j
+public class WriteBehindBranchStateCache implements BranchStateCache, AutoCloseable {
+
+	public static final long DEFAULT_MAX_STALENESS_MILLIS = 100;
+
+	private final BranchStateCache delegate;
+	@Getter private final long maxStalenessMillis;
+	private final Map<String, String> values = new ConcurrentHashMap<>();
+	private Map<String, String> dirtyEntries = new LinkedHashMap<>(); // guarded by this
+	private final Object flushLock = new Object(); // ensures batches reach the delegate in the order they were taken
+	private final ScheduledExecutorService flushScheduler; // shared with the branch views
+	private final boolean isSchedulerOwner; // false for branch views
+	private final ScheduledFuture<?> scheduledFlush;
+	private final Map<String, WriteBehindBranchStateCache> branchViews = new ConcurrentHashMap<>();
+
+	public WriteBehindBranchStateCache(@NonNull BranchStateCache delegate) {
+		this(delegate, DEFAULT_MAX_STALENESS_MILLIS);
+	}
+
+	public WriteBehindBranchStateCache(@NonNull BranchStateCache delegate, long maxStalenessMillis) {
+		if (maxStalenessMillis <= 0) {
+			throw new IllegalArgumentException("Max staleness must be positive, but was "+maxStalenessMillis);
+		}
+		this.delegate = delegate;
+		this.maxStalenessMillis = maxStalenessMillis;
+		this.flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "WriteBehindBranchStateCacheFlush");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.isSchedulerOwner = true;
+		this.scheduledFlush = flushScheduler.scheduleWithFixedDelay(this::flushInBackground, maxStalenessMillis, maxStalenessMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * for branch views, flushed in the background via the scheduler of the cache they were obtained from
+	 */
+	WriteBehindBranchStateCache(@NonNull BranchStateCache delegate, long maxStalenessMillis, @NonNull ScheduledExecutorService sharedFlushScheduler) {
+		this.delegate = delegate;
+		this.maxStalenessMillis = maxStalenessMillis;
+		this.flushScheduler = sharedFlushScheduler;
+		this.isSchedulerOwner = false;
+		this.scheduledFlush = flushScheduler.scheduleWithFixedDelay(this::flushInBackground, maxStalenessMillis, maxStalenessMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public synchronized void put(String key, String value) throws PersistenceException {
+		values.put(key, value);
+		dirtyEntries.put(key, value);
+	}
+
+	@Override
+	public synchronized void putAll(Map<String, String> entries) throws PersistenceException {
+		// taken as a whole into the next batch, hence still written atomically if the delegate does so
+		values.putAll(entries);
+		dirtyEntries.putAll(entries);
+	}
+
+	@Override
+	public String get(String key) throws PersistenceException {
+		String value = values.get(key);
+		if (value == null) {
+			value = delegate.get(key);
+			if (value != null) {
+				String concurrentlyPut = values.putIfAbsent(key, value);
+				return concurrentlyPut != null ? concurrentlyPut : value;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * @return a write behind view on the underlying cache's view for the branch, the same instance for repeated calls
+	 */
+	@Override
+	public BranchStateCache forBranch(String branchURI) {
+		return branchViews.computeIfAbsent(branchURI, uri -> new WriteBehindBranchStateCache(delegate.forBranch(uri), maxStalenessMillis, flushScheduler));
+	}
+
+	/**
+	 * for stores that write entries together with other data (e.g., commits) in one atomic batch directly to the underlying cache: 
+	 * first flushes pending entries, so that these cannot later overwrite the directly written ones, 
+	 * then performs the write, and finally serves the entries from memory (unless put again meanwhile)
+	 */
+	public void writeThrough(@NonNull Map<String, String> entries, @NonNull DelegateWrite write) throws PersistenceException {
+		synchronized (flushLock) {
+			flush();
+			write.writeTo(delegate);
+			synchronized (this) {
+				entries.forEach((key, value) -> {
+					if (!dirtyEntries.containsKey(key)) {
+						values.put(key, value);
+					}
+				});
+			}
+		}
+	}
+
+	@FunctionalInterface
+	public interface DelegateWrite {
+		void writeTo(BranchStateCache delegate) throws PersistenceException;
+	}
+
+	/**
+	 * @return the number of entries not yet written to the underlying cache
+	 */
+	public synchronized int getPendingCount() {
+		return dirtyEntries.size();
+	}
+
+	/**
+	 * writes all entries put so far to the underlying cache before returning,
+	 * upon failure the entries remain pending (unless overwritten meanwhile) and are retried with the next flush
+	 */
+	@Override
+	public void flush() throws PersistenceException {
+		synchronized (flushLock) {
+			Map<String, String> batch;
+			synchronized (this) {
+				if (dirtyEntries.isEmpty()) {
+					return;
+				}
+				batch = dirtyEntries;
+				dirtyEntries = new LinkedHashMap<>();
+			}
+			try {
+				delegate.putAll(batch);
+			} catch (PersistenceException | RuntimeException e) {
+				synchronized (this) {
+					batch.forEach(dirtyEntries::putIfAbsent); // newer values take precedence
+				}
+				throw e;
+			}
+		}
+	}
+
+	private void flushInBackground() {
+		try {
+			flush();
+		} catch (Exception e) {
+			log.warn(String.format("Error writing behind %s cache entries with error %s", getPendingCount(), e.getMessage()));
+		}
+	}
+
+	/**
+	 * stops background writing and flushes any pending entries, also of the branch views,
+	 * closing a branch view leaves the shared background thread running for the other views
+	 */
+	@Override
+	public void close() throws PersistenceException {
+		for (WriteBehindBranchStateCache branchView : branchViews.values()) {
+			branchView.close();
+		}
+		scheduledFlush.cancel(false);
+		if (isSchedulerOwner) {
+			flushScheduler.shutdown();
+		}
+		flush();
+	}
+}
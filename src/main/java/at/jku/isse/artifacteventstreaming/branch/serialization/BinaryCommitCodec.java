@@ -0,0 +1,430 @@
+package at.jku.isse.artifacteventstreaming.branch.serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Compact binary commit format: all IRIs, blank node ids, and datatypes of a commit are written once into a dictionary,
+ * statements then only reference dictionary entries via varints, only literal values are written inline.
+ * Decoding streams over the payload without any intermediate tree and creates each distinct node only once per commit (IRIs are interned across commits).
+ *
+ * Layout: version, commitId, branchId, precedingCommitId, message, timestamp, dictionary, added statements, removed statements
+ * Statement: flags, subject, [container], predicate, [containment property], object (either term ref, or datatype ref + lexical form [+ language])
+ *
+ * Note: the history projection of the EventStoreBackedHistoryRepository inspects JSON payloads, hence does not index binary commits.
+ */
+public class BinaryCommitCodec implements CommitCodec {
+
+	public static final String FORMAT = "bin1";
+
+	private static final byte VERSION = 1;
+	private static final byte KIND_IRI = 0;
+	private static final byte KIND_BLANK = 1;
+
+	private static final int FLAG_CONTAINER = 1;
+	private static final int FLAG_CONTAINMENT_PROPERTY = 2;
+	private static final int FLAG_LITERAL = 4;
+	private static final int FLAG_LANGUAGE = 8;
+
+	private final NodeInterner nodes = new NodeInterner();
+
+	@Override
+	public String getFormat() {
+		return FORMAT;
+	}
+
+	@Override
+	public byte[] encode(Commit commit) throws IOException {
+		BinaryBatchEncoder encoder = new BinaryBatchEncoder(commit, Integer.MAX_VALUE);
+		for (ContainedStatement stmt : commit.getAddedStatements()) {
+			encoder.tryAdd(stmt, true);
+		}
+		for (ContainedStatement stmt : commit.getRemovedStatements()) {
+			encoder.tryAdd(stmt, false);
+		}
+		return encoder.finishBatch();
+	}
+	
+	@Override
+	public StatementBatchEncoder createBatchEncoder(Commit commit, int maxPayloadSize) {
+		return new BinaryBatchEncoder(commit, maxPayloadSize);
+	}
+
+	private static void writeStatement(ByteArrayOutputStream out, ContainedStatement stmt, Dictionary dictionary) {
+		Resource container = stmt.getContainerOrSubject();
+		Property containmentProperty = stmt.getContainmentPropertyOrPredicate();
+		RDFNode object = stmt.getObject();
+		boolean hasContainer = !container.equals(stmt.getSubject());
+		boolean hasContainmentProperty = !containmentProperty.equals(stmt.getPredicate());
+		String language = object.isLiteral() ? object.asLiteral().getLanguage() : "";
+		int flags = (hasContainer ? FLAG_CONTAINER : 0)
+				| (hasContainmentProperty ? FLAG_CONTAINMENT_PROPERTY : 0)
+				| (object.isLiteral() ? FLAG_LITERAL : 0)
+				| (!language.isEmpty() ? FLAG_LANGUAGE : 0);
+		out.write(flags);
+		writeVarInt(out, dictionary.refOf(stmt.getSubject()));
+		if (hasContainer) {
+			writeVarInt(out, dictionary.refOf(container));
+		}
+		writeVarInt(out, dictionary.refOf(stmt.getPredicate()));
+		if (hasContainmentProperty) {
+			writeVarInt(out, dictionary.refOf(containmentProperty));
+		}
+		if (object.isLiteral()) {
+			Literal literal = object.asLiteral();
+			writeVarInt(out, dictionary.refOf(KIND_IRI, literal.getDatatypeURI()));
+			writeString(out, literal.getLexicalForm());
+			if (!language.isEmpty()) {
+				writeString(out, language);
+			}
+		} else {
+			writeVarInt(out, dictionary.refOf(object.asResource()));
+		}
+	}
+	
+	/**
+	 * each batch gets its own dictionary, a statement that does not fit anymore has its new dictionary entries rolled back
+	 */
+	private static class BinaryBatchEncoder implements StatementBatchEncoder {
+		
+		private final int maxPayloadSize;
+		private final byte[] header;
+		private Dictionary dictionary = new Dictionary();
+		private final ByteArrayOutputStream added = new ByteArrayOutputStream();
+		private final ByteArrayOutputStream removed = new ByteArrayOutputStream();
+		private final ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+		private int addedCount = 0;
+		private int removedCount = 0;
+		
+		BinaryBatchEncoder(Commit commit, int maxPayloadSize) {
+			this.maxPayloadSize = maxPayloadSize;
+			ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+			out.write(VERSION);
+			writeString(out, commit.getCommitId());
+			writeString(out, commit.getOriginatingBranchId());
+			writeString(out, commit.getPrecedingCommitId());
+			writeString(out, commit.getCommitMessage());
+			writeVarLong(out, commit.getTimeStamp());
+			this.header = out.toByteArray();
+		}
+		
+		@Override
+		public boolean tryAdd(ContainedStatement stmt, boolean isAddition) throws IOException {
+			int termMark = dictionary.terms.size();
+			scratch.reset();
+			writeStatement(scratch, stmt, dictionary);
+			long sizeWith = (long) header.length 
+					+ varIntSize(dictionary.terms.size()) + dictionary.encodedSize
+					+ varIntSize(addedCount + (isAddition ? 1 : 0)) + added.size() 
+					+ varIntSize(removedCount + (isAddition ? 0 : 1)) + removed.size()
+					+ scratch.size();
+			if (sizeWith > maxPayloadSize) {
+				dictionary.rollbackTo(termMark);
+				return false;
+			}
+			if (isAddition) {
+				scratch.writeTo(added);
+				addedCount++;
+			} else {
+				scratch.writeTo(removed);
+				removedCount++;
+			}
+			return true;
+		}
+		
+		@Override
+		public boolean isEmpty() {
+			return addedCount == 0 && removedCount == 0;
+		}
+		
+		@Override
+		public byte[] finishBatch() throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(header.length + dictionary.encodedSize + added.size() + removed.size() + 16);
+			out.writeBytes(header);
+			writeVarInt(out, dictionary.terms.size());
+			for (int i = 0; i < dictionary.terms.size(); i++) {
+				out.write(dictionary.kinds.get(i));
+				writeString(out, dictionary.terms.get(i));
+			}
+			writeVarInt(out, addedCount);
+			added.writeTo(out);
+			writeVarInt(out, removedCount);
+			removed.writeTo(out);
+			// start next batch
+			dictionary = new Dictionary();
+			added.reset();
+			removed.reset();
+			addedCount = 0;
+			removedCount = 0;
+			return out.toByteArray();
+		}
+	}
+
+	@Override
+	public Commit decode(byte[] payload) throws IOException {
+		return decode(ByteBuffer.wrap(payload));
+	}
+	
+	@Override
+	public Commit decode(ByteBuffer payload) throws IOException {
+		try {
+			Reader in = new Reader(payload.slice());
+			byte version = in.readByte();
+			if (version != VERSION) {
+				throw new IOException("Unsupported binary commit format version "+version);
+			}
+			String commitId = in.readString();
+			String branchId = in.readString();
+			String precedingCommitId = in.readString();
+			String commitMessage = in.readString();
+			long timeStamp = in.readVarLong();
+			int termCount = in.readVarInt();
+			byte[] kinds = new byte[termCount];
+			String[] terms = new String[termCount];
+			for (int i = 0; i < termCount; i++) {
+				kinds[i] = in.readByte();
+				terms[i] = in.readString();
+			}
+			Terms decodedTerms = new Terms(kinds, terms);
+			Set<ContainedStatement> added = readStatements(in, decodedTerms);
+			Set<ContainedStatement> removed = readStatements(in, decodedTerms);
+			return new StatementCommitImpl(branchId, commitId, commitMessage, precedingCommitId, timeStamp, added, removed);
+		} catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new IOException("Corrupt binary commit payload: "+e.getMessage());
+		}
+	}
+
+	private Set<ContainedStatement> readStatements(Reader in, Terms terms) throws IOException {
+		int count = in.readVarInt();
+		Set<ContainedStatement> stmts = new LinkedHashSet<>(Math.max(16, (int) (count/0.75f)+1));
+		for (int i = 0; i < count; i++) {
+			int flags = in.readByte();
+			Node subject = terms.node(in.readVarInt());
+			Node container = (flags & FLAG_CONTAINER) != 0 ? terms.node(in.readVarInt()) : null;
+			Node predicate = terms.node(in.readVarInt());
+			Node containmentProperty = (flags & FLAG_CONTAINMENT_PROPERTY) != 0 ? terms.node(in.readVarInt()) : null;
+			Node object;
+			if ((flags & FLAG_LITERAL) != 0) {
+				String datatypeURI = terms.term(in.readVarInt());
+				String lexicalForm = in.readString();
+				if ((flags & FLAG_LANGUAGE) != 0) {
+					object = nodes.langLiteral(lexicalForm, in.readString());
+				} else {
+					object = nodes.literal(lexicalForm, datatypeURI);
+				}
+			} else {
+				object = terms.node(in.readVarInt());
+			}
+			stmts.add(NodeInterner.toContainedStatement(subject, predicate, object, container, containmentProperty));
+		}
+		return stmts;
+	}
+
+	private static class Dictionary {
+		private final Map<String, Integer> iriRefs = new HashMap<>();
+		private final Map<String, Integer> blankRefs = new HashMap<>();
+		private final List<String> terms = new ArrayList<>();
+		private final List<Byte> kinds = new ArrayList<>();
+		private final List<Integer> termSizes = new ArrayList<>();
+		private int encodedSize = 0; // exact size of the encoded entries, without the entry count
+
+		int refOf(Resource res) {
+			return res.isAnon() ? refOf(KIND_BLANK, res.getId().toString()) : refOf(KIND_IRI, res.getURI());
+		}
+
+		int refOf(byte kind, String term) {
+			Map<String, Integer> refs = kind == KIND_IRI ? iriRefs : blankRefs;
+			Integer ref = refs.get(term);
+			if (ref == null) {
+				ref = terms.size();
+				refs.put(term, ref);
+				terms.add(term);
+				kinds.add(kind);
+				int termSize = 1 + stringSize(term);
+				termSizes.add(termSize);
+				encodedSize += termSize;
+			}
+			return ref;
+		}
+		
+		/**
+		 * removes all entries added after the first termCount entries
+		 */
+		void rollbackTo(int termCount) {
+			for (int i = terms.size()-1; i >= termCount; i--) {
+				(kinds.get(i) == KIND_IRI ? iriRefs : blankRefs).remove(terms.get(i));
+				encodedSize -= termSizes.get(i);
+				terms.remove(i);
+				kinds.remove(i);
+				termSizes.remove(i);
+			}
+		}
+	}
+
+	/**
+	 * lazily creates the nodes for the dictionary entries, each at most once
+	 */
+	private class Terms {
+		private final byte[] kinds;
+		private final String[] terms;
+		private final Node[] nodes;
+
+		Terms(byte[] kinds, String[] terms) {
+			this.kinds = kinds;
+			this.terms = terms;
+			this.nodes = new Node[terms.length];
+		}
+
+		Node node(int ref) {
+			if (nodes[ref] == null) {
+				nodes[ref] = kinds[ref] == KIND_BLANK ? BinaryCommitCodec.this.nodes.blank(terms[ref]) : BinaryCommitCodec.this.nodes.iri(terms[ref]);
+			}
+			return nodes[ref];
+		}
+
+		String term(int ref) {
+			return terms[ref];
+		}
+	}
+
+	// varint and string encoding
+
+	private static void writeVarInt(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static void writeVarLong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static int varIntSize(int value) {
+		int size = 1;
+		while ((value & ~0x7F) != 0) {
+			size++;
+			value >>>= 7;
+		}
+		return size;
+	}
+	
+	private static int stringSize(String value) {
+		int length = utf8Length(value);
+		return varIntSize(length+1) + length;
+	}
+	
+	private static int utf8Length(String value) {
+		int length = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i+1 < value.length() && Character.isLowSurrogate(value.charAt(i+1))) {
+				length += 4;
+				i++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * length is written +1 to distinguish null from empty strings
+	 */
+	private static void writeString(ByteArrayOutputStream out, String value) {
+		if (value == null) {
+			writeVarInt(out, 0);
+		} else {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(out, bytes.length+1);
+			out.write(bytes, 0, bytes.length);
+		}
+	}
+
+	private static class Reader {
+		private final ByteBuffer data;
+		private int pos = 0;
+
+		Reader(ByteBuffer data) {
+			this.data = data;
+		}
+
+		byte readByte() {
+			return data.get(pos++);
+		}
+
+		int readVarInt() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				byte b = data.get(pos++);
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IOException("Malformed varint at position "+pos);
+		}
+
+		long readVarLong() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = data.get(pos++);
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IOException("Malformed varlong at position "+pos);
+		}
+
+		String readString() throws IOException {
+			int length = readVarInt();
+			if (length == 0) {
+				return null;
+			}
+			length--;
+			if (length > data.limit() - pos) {
+				throw new IOException("String length exceeds payload at position "+pos);
+			}
+			String value;
+			if (data.hasArray()) {
+				value = new String(data.array(), data.arrayOffset() + pos, length, StandardCharsets.UTF_8);
+			} else { // e.g., memory mapped
+				byte[] bytes = new byte[length];
+				data.get(pos, bytes);
+				value = new String(bytes, StandardCharsets.UTF_8);
+			}
+			pos += length;
+			return value;
+		}
+	}
+}
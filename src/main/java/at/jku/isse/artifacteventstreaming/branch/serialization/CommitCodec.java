@@ -0,0 +1,38 @@
+package at.jku.isse.artifacteventstreaming.branch.serialization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import at.jku.isse.artifacteventstreaming.api.Commit;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Turns commits into event payloads and back. 
+ * The format is stored alongside each persisted payload so that reading selects the codec the payload was written with.
+ */
+public interface CommitCodec {
+
+	public String getFormat();
+	
+	public byte[] encode(Commit commit) throws IOException;
+	
+	public Commit decode(byte[] payload) throws IOException;
+	
+	/**
+	 * decodes the remaining bytes of the buffer, codecs that can read directly from the buffer avoid copying it into an array
+	 */
+	public default Commit decode(ByteBuffer payload) throws IOException {
+		byte[] bytes = new byte[payload.remaining()];
+		payload.duplicate().get(bytes);
+		return decode(bytes);
+	}
+	
+	/**
+	 * @return an encoder for splitting the commit into payloads of at most maxPayloadSize bytes in a single pass, 
+	 * or null if the codec can only encode whole commits
+	 */
+	public default StatementBatchEncoder createBatchEncoder(Commit commit, int maxPayloadSize) {
+		return null;
+	}
+}
@@ -0,0 +1,145 @@
+package at.jku.isse.artifacteventstreaming.branch.serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * the original (and default) format, requires a mapper with the statement serialization modules registered
+ */
+@RequiredArgsConstructor
+public class JsonCommitCodec implements CommitCodec {
+
+	public static final String FORMAT = "json";
+	
+	private static final byte[] ADDED_START = ",\"addedStatements\":[".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] REMOVED_START = "],\"removedStatements\":[".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] END = "]}".getBytes(StandardCharsets.UTF_8);
+	
+	@NonNull private final JsonMapper jsonMapper;
+	
+	@Override
+	public String getFormat() {
+		return FORMAT;
+	}
+
+	@Override
+	public byte[] encode(Commit commit) throws IOException {
+		return jsonMapper.writeValueAsBytes(commit);
+	}
+
+	@Override
+	public Commit decode(byte[] payload) throws IOException {
+		return jsonMapper.readValue(payload, StatementCommitImpl.class);
+	}
+	
+	@Override
+	public Commit decode(ByteBuffer payload) throws IOException {
+		return jsonMapper.readValue(new ByteBufferBackedInputStream(payload.duplicate()), StatementCommitImpl.class);
+	}
+	
+	@Override
+	public StatementBatchEncoder createBatchEncoder(Commit commit, int maxPayloadSize) {
+		return new JsonBatchEncoder(commit, maxPayloadSize);
+	}
+	
+	/**
+	 * serializes each statement only once and assembles the payload from the statements' bytes, 
+	 * the result is equivalent to serializing a commit with just the batch's statements
+	 */
+	private class JsonBatchEncoder implements StatementBatchEncoder {
+		
+		private final int maxPayloadSize;
+		private final byte[] header;
+		private final List<byte[]> added = new ArrayList<>();
+		private final List<byte[]> removed = new ArrayList<>();
+		private int size;
+		// last rejected statement, to be reused when offered to the next batch
+		private ContainedStatement pendingStmt = null;
+		private byte[] pendingBytes = null;
+		
+		JsonBatchEncoder(Commit commit, int maxPayloadSize) {
+			this.maxPayloadSize = maxPayloadSize;
+			try {
+				this.header = ("{\"originatingBranchId\":"+jsonMapper.writeValueAsString(commit.getOriginatingBranchId())
+					+",\"commitId\":"+jsonMapper.writeValueAsString(commit.getCommitId())
+					+",\"commitMessage\":"+jsonMapper.writeValueAsString(commit.getCommitMessage())
+					+",\"precedingCommitId\":"+jsonMapper.writeValueAsString(commit.getPrecedingCommitId())
+					+",\"timeStamp\":"+commit.getTimeStamp()).getBytes(StandardCharsets.UTF_8);
+			} catch (JsonProcessingException e) { // strings will always serialize
+				throw new RuntimeException(e);
+			}
+			reset();
+		}
+		
+		private void reset() {
+			added.clear();
+			removed.clear();
+			size = header.length + ADDED_START.length + REMOVED_START.length + END.length;
+		}
+		
+		@Override
+		public boolean tryAdd(ContainedStatement stmt, boolean isAddition) throws IOException {
+			byte[] bytes;
+			if (stmt == pendingStmt) {
+				bytes = pendingBytes;
+			} else {
+				bytes = jsonMapper.writeValueAsBytes(stmt);
+			}
+			List<byte[]> stmts = isAddition ? added : removed;
+			int sizeWith = size + bytes.length + (stmts.isEmpty() ? 0 : 1); // plus comma
+			if (sizeWith > maxPayloadSize) {
+				pendingStmt = stmt;
+				pendingBytes = bytes;
+				return false;
+			}
+			pendingStmt = null;
+			pendingBytes = null;
+			stmts.add(bytes);
+			size = sizeWith;
+			return true;
+		}
+		
+		@Override
+		public boolean isEmpty() {
+			return added.isEmpty() && removed.isEmpty();
+		}
+		
+		@Override
+		public byte[] finishBatch() {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+			out.writeBytes(header);
+			out.writeBytes(ADDED_START);
+			writeArrayContent(out, added);
+			out.writeBytes(REMOVED_START);
+			writeArrayContent(out, removed);
+			out.writeBytes(END);
+			reset();
+			return out.toByteArray();
+		}
+		
+		private void writeArrayContent(ByteArrayOutputStream out, List<byte[]> stmts) {
+			for (int i = 0; i < stmts.size(); i++) {
+				if (i > 0) {
+					out.write(',');
+				}
+				out.writeBytes(stmts.get(i));
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package at.jku.isse.artifacteventstreaming.branch.serialization;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.impl.ModelCom;
+import org.apache.jena.rdf.model.impl.PropertyImpl;
+import org.apache.jena.rdf.model.impl.ResourceImpl;
+import org.apache.jena.rdf.model.impl.StatementImpl;
+
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.replay.ContainedStatementImpl;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Creates graph level nodes for deserialized statements without any (shared) Model,
+ * IRI nodes are interned, as the same predicates and subjects repeat across statements and commits.
+ * The cache is bounded by simply starting over once full, thread-safe as deserializers are shared across threads.
+ *
+ * Resulting statements are not backed by a usable model, they are meant to be added to or removed from a model (or transferred to it first).
+ */
+final class NodeInterner {
+
+	static final int DEFAULT_MAX_CACHED_IRIS = 100000;
+
+	// never written to, only serves as owner of the created resources, as jena's statement would otherwise recreate each resource/property via inModel()
+	private static final ModelCom OWNER = (ModelCom) ModelFactory.createDefaultModel();
+
+	private final Map<String, Node> iris = new ConcurrentHashMap<>();
+	private final int maxCachedIris;
+
+	NodeInterner() {
+		this(DEFAULT_MAX_CACHED_IRIS);
+	}
+
+	NodeInterner(int maxCachedIris) {
+		this.maxCachedIris = maxCachedIris;
+	}
+
+	Node iri(String iri) {
+		Node node = iris.get(iri);
+		if (node == null) {
+			if (iris.size() >= maxCachedIris) {
+				iris.clear();
+			}
+			node = NodeFactory.createURI(iri);
+			iris.put(iri, node);
+		}
+		return node;
+	}
+
+	Node blank(String id) {
+		return NodeFactory.createBlankNode(id);
+	}
+
+	Node literal(String lexicalForm, String datatypeURI) {
+		return NodeFactory.createLiteralDT(lexicalForm, TypeMapper.getInstance().getSafeTypeByName(datatypeURI));
+	}
+
+	Node langLiteral(String lexicalForm, String language) {
+		return NodeFactory.createLiteralLang(lexicalForm, language);
+	}
+
+	int size() {
+		return iris.size();
+	}
+
+	/**
+	 * @param container, containmentProperty null if same as subject and predicate
+	 */
+	static ContainedStatement toContainedStatement(Node subject, Node predicate, Node object, Node container, Node containmentProperty) {
+		Statement stmt = new StatementImpl(new ResourceImpl(subject, OWNER)
+				, new PropertyImpl(predicate, OWNER)
+				, StatementImpl.createObject(object, OWNER)
+				, OWNER);
+		return new ContainedStatementImpl(stmt
+				, container == null ? null : new ResourceImpl(container, OWNER)
+				, containmentProperty == null ? null : new PropertyImpl(containmentProperty, OWNER));
+	}
+}
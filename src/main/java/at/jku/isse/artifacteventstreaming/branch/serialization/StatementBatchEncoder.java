@@ -0,0 +1,29 @@
+package at.jku.isse.artifacteventstreaming.branch.serialization;
+
+import java.io.IOException;
+
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Incrementally encodes the statements of a single commit into one or more payloads,
+ * keeping track of the exact payload size so a batch can be cut right before it would exceed the maximum payload size.
+ * Each payload decodes to a commit with the same metadata as the original commit, containing only the statements of that batch.
+ */
+public interface StatementBatchEncoder {
+
+	/**
+	 * adds the statement to the current batch if the resulting payload still fits within the maximum payload size,
+	 * a rejected statement is then to be offered to the next batch (implementations may reuse its serialized form).
+	 * @return false if the statement did not fit, the batch remains unchanged
+	 */
+	public boolean tryAdd(ContainedStatement stmt, boolean isAddition) throws IOException;
+
+	public boolean isEmpty();
+
+	/**
+	 * @return the payload of the current batch, starts a new empty batch
+	 */
+	public byte[] finishBatch() throws IOException;
+}
@@ -2,25 +2,22 @@ package at.jku.isse.artifacteventstreaming.branch.serialization;
 
 import java.io.IOException;
 
-import org.apache.jena.rdf.model.AnonId;
-import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.rdf.model.Property;
-import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.graph.Node;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
-import at.jku.isse.artifacteventstreaming.replay.ContainedStatementImpl;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Streams over the statement's fields directly off the parser, i.e., without materializing a tree per statement,
+ * and creates graph level nodes (with interned IRIs) instead of going through a shared Model.
+ */
 @Slf4j
 public class StatementJsonDeserializer extends StdDeserializer<ContainedStatement> {
 
@@ -29,7 +26,7 @@ public class StatementJsonDeserializer extends StdDeserializer<ContainedStatemen
 	 */
 	private static final long serialVersionUID = 1L;
 
-	private final transient Model model = ModelFactory.createDefaultModel();
+	private final transient NodeInterner nodes = new NodeInterner();
 	
 	protected StatementJsonDeserializer(Class<ContainedStatement> t) {
 		super(t);			
@@ -37,38 +34,50 @@ public class StatementJsonDeserializer extends StdDeserializer<ContainedStatemen
 	
 	@Override
 	public ContainedStatement deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
-		
-		ObjectNode node = p.readValueAsTree();
-		var subjectId = node.get(StatementJsonSerializer.SUBJECT).asText();
-		var containmentRes = getResourceFromNodeOrNull(node.get(StatementJsonSerializer.CONTAINING_SUBJECT));
-		var containmentPred = getPropertyFromNodeOrNull(node.get(StatementJsonSerializer.CONTAINMENT_PREDICATE));
-		var predicatetURI = node.get(StatementJsonSerializer.PREDICATE).asText();
-		var value = node.get(StatementJsonSerializer.OBJECT).asText();
-		Statement stmt = null;
-		if (node.has(StatementJsonSerializer.DATATYPE) ) { // a literal object
-			String datatypeURI = node.get(StatementJsonSerializer.DATATYPE).asText();			
-			stmt = model.createStatement(createResourceFromId(subjectId), model.createProperty(predicatetURI), model.createTypedLiteral(value, datatypeURI));					
-		} else { // a resource object			
-			stmt = model.createStatement(createResourceFromId(subjectId), model.createProperty(predicatetURI), createResourceFromId(value));
-		}		
-		return new ContainedStatementImpl(stmt, containmentRes, containmentPred);		
-	}
-
-	private Property getPropertyFromNodeOrNull(JsonNode possiblyNull) {
-		if (possiblyNull == null) return null;
-		else return model.createProperty(possiblyNull.asText());
-	}
-
-	private Resource getResourceFromNodeOrNull(JsonNode possiblyNull) {
-		if (possiblyNull == null) return null;
-		else return createResourceFromId(possiblyNull.asText());
+		String subjectId = null;
+		String containingSubjectId = null;
+		String containmentPredicateURI = null;
+		String predicateURI = null;
+		String value = null;
+		String datatypeURI = null;
+		JsonToken token = p.currentToken();
+		if (token == JsonToken.START_OBJECT) {
+			token = p.nextToken();
+		}
+		for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+			String field = p.currentName();
+			p.nextToken();
+			switch (field) {
+			case StatementJsonSerializer.SUBJECT -> subjectId = p.getValueAsString();
+			case StatementJsonSerializer.CONTAINING_SUBJECT -> containingSubjectId = p.getValueAsString();
+			case StatementJsonSerializer.CONTAINMENT_PREDICATE -> containmentPredicateURI = p.getValueAsString();
+			case StatementJsonSerializer.PREDICATE -> predicateURI = p.getValueAsString();
+			case StatementJsonSerializer.OBJECT -> value = p.getValueAsString();
+			case StatementJsonSerializer.DATATYPE -> datatypeURI = p.getValueAsString();
+			default -> p.skipChildren();
+			}
+		}
+		if (token != JsonToken.END_OBJECT) {
+			return (ContainedStatement) ctxt.handleUnexpectedToken(ContainedStatement.class, p);
+		}
+		if (subjectId == null || predicateURI == null || value == null) {
+			return ctxt.reportInputMismatch(this, "Statement lacks subject, predicate, or object");
+		}
+		Node object = datatypeURI != null 
+				? nodes.literal(value, datatypeURI) // a literal object
+				: createNodeFromId(value); // a resource object
+		return NodeInterner.toContainedStatement(createNodeFromId(subjectId)
+				, nodes.iri(predicateURI)
+				, object
+				, containingSubjectId == null ? null : createNodeFromId(containingSubjectId)
+				, containmentPredicateURI == null ? null : nodes.iri(containmentPredicateURI));		
 	}
 
-	private Resource createResourceFromId(String id) {
+	private Node createNodeFromId(String id) {
 		if (isValidURL(id)) {
-			return model.createResource(id);
+			return nodes.iri(id);
 		} else {
-			return model.createResource(AnonId.create(id));
+			return nodes.blank(id);
 		}
 	}
 	
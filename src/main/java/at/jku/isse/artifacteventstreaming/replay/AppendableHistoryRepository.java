@@ -0,0 +1,17 @@
+package at.jku.isse.artifacteventstreaming.replay;
+
+import java.util.Set;
+
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * A per resource history that is fed with the commits of branches, e.g., by the CommitToHistoryHandler
+ */
+public interface AppendableHistoryRepository extends PerResourceHistoryRepository {
+
+	public void appendHistory(String commitId, String branchURI, long timeStamp, Set<ContainedStatement> addedStatements,
+			Set<ContainedStatement> removedStatements) throws PersistenceException;
+}
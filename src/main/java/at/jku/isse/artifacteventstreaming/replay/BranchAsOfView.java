@@ -0,0 +1,105 @@
+package at.jku.isse.artifacteventstreaming.replay;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.compose.Delta;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+
+import at.jku.isse.artifacteventstreaming.api.Branch;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.api.exceptions.NotFoundException;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Read-only view on the state of a branch as of a given commit or timestamp, without copying the branch model:
+ * the view is an overlay (a Jena Delta graph) on top of the live branch graph that records only the statements
+ * that differ, obtained by reverse applying the commits made after the requested one (newest first).
+ * Hence the cost of a query is proportional to the changes since then, not to the model size.
+ *
+ * The overlay is only valid as long as the live graph does not change underneath,
+ * thus queries run within a read transaction on the branch dataset (or the transaction the calling thread is already in).
+ * Commits that are already in the branch history but whose changes are not yet visible in the dataset are no issue,
+ * as reverse applying their (effective) changes to a graph that does not yet contain them has no effect.
+ */
+@RequiredArgsConstructor
+public class BranchAsOfView {
+
+	@NonNull private final Branch branch;
+
+	/**
+	 * @param query evaluated against the branch state right after the commit with the given id
+	 * @throws NotFoundException if the branch history does not contain that commit
+	 */
+	public <T> T queryAtCommit(@NonNull String commitId, @NonNull Function<Model, T> query) throws NotFoundException {
+		return inReadTransaction(() -> {
+			List<Commit> commitsFrom = branch.getStateKeeper().getCommitsForwardIncludingFrom(commitId);
+			if (commitsFrom.isEmpty()) {
+				throw new NotFoundException(String.format("Commit %s not found in history of branch %s", commitId, branch.getBranchId()));
+			}
+			Delta overlay = new Delta(getLiveGraph());
+			revertNewestFirst(commitsFrom.subList(1, commitsFrom.size()), overlay);
+			return query.apply(ModelFactory.createModelForGraph(overlay));
+		});
+	}
+
+	/**
+	 * @param query evaluated against the branch state right after the last commit made at or before the given timestamp,
+	 * if the branch has no commit that old, the state before its first commit, i.e., including any statements that were never committed 
+	 * (e.g., added before the commit handlers were started)
+	 */
+	public <T> T queryAtTimestamp(long timeStamp, @NonNull Function<Model, T> query) {
+		try {
+			return inReadTransaction(() -> {
+				List<Commit> history = branch.getStateKeeper().getHistory();
+				int firstNewer = history.size();
+				while (firstNewer > 0 && history.get(firstNewer-1).getTimeStamp() > timeStamp) { // only touches the commits to revert
+					firstNewer--;
+				}
+				Delta overlay = new Delta(getLiveGraph());
+				revertNewestFirst(history.subList(firstNewer, history.size()), overlay);
+				return query.apply(ModelFactory.createModelForGraph(overlay));
+			});
+		} catch (NotFoundException e) { // cannot happen, no lookup by id
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	private Graph getLiveGraph() {
+		return branch.getDataset().asDatasetGraph().getDefaultGraph();
+	}
+
+	private static void revertNewestFirst(List<Commit> commits, Graph overlay) {
+		for (int i = commits.size()-1; i >= 0; i--) {
+			Commit commit = commits.get(i);
+			commit.getAddedStatements().stream().map(ContainedStatement::asTriple).forEach(overlay::delete);
+			commit.getRemovedStatements().stream().map(ContainedStatement::asTriple).forEach(overlay::add);
+		}
+	}
+
+	private <T> T inReadTransaction(QueryExecution<T> execution) throws NotFoundException {
+		Dataset dataset = branch.getDataset();
+		if (dataset.isInTransaction()) {
+			return execution.execute();
+		}
+		dataset.begin(ReadWrite.READ);
+		try {
+			return execution.execute();
+		} finally {
+			dataset.end();
+		}
+	}
+
+	@FunctionalInterface
+	private interface QueryExecution<T> {
+		T execute() throws NotFoundException;
+	}
+}
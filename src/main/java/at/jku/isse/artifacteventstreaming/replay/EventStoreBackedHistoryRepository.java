@@ -1,11 +1,18 @@
 package at.jku.isse.artifacteventstreaming.replay;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Stream;
 
 import com.eventstore.dbclient.CreateProjectionOptions;
@@ -23,24 +30,52 @@ import at.jku.isse.artifacteventstreaming.api.Commit;
 import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
 import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
 import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 
+/**
+ * Reads the per resource streams emitted by the history projection from json commit events only,
+ * thus use EventStoreFactory#getHistoryRepository() which rejects factories writing commits in a binary format.
+ */
 @Slf4j
 public class EventStoreBackedHistoryRepository implements PerResourceHistoryRepository {
 
 	public static final String projectionName = "perResourceAndBranchHistoryEmitter";
+	public static final long DEFAULT_MAX_CACHED_ENTRIES = 100000;
+	public static final int DEFAULT_MAX_CONCURRENT_READS = 16;
 	
 	private final EventStoreDBClient eventDBclient;
 	private final EventStoreDBProjectionManagementClient projectionClient;
 	private final JsonMapper jsonMapper;
+	private final ResourceHistoryCache historyCache;
+	private final Semaphore concurrentReads;
 
 	public EventStoreBackedHistoryRepository(EventStoreDBClient eventDBclient,
 			EventStoreDBProjectionManagementClient projectionClient, JsonMapper jsonMapper) {
+		this(eventDBclient, projectionClient, jsonMapper, DEFAULT_MAX_CACHED_ENTRIES, DEFAULT_MAX_CONCURRENT_READS);
+	}
+	
+	/**
+	 * @param maxCachedEntries how many replay entries to keep across all cached resource streams, 0 to always read streams from their start
+	 */
+	public EventStoreBackedHistoryRepository(EventStoreDBClient eventDBclient,
+			EventStoreDBProjectionManagementClient projectionClient, JsonMapper jsonMapper, long maxCachedEntries) {
+		this(eventDBclient, projectionClient, jsonMapper, maxCachedEntries, DEFAULT_MAX_CONCURRENT_READS);
+	}
+	
+	/**
+	 * @param maxConcurrentReads how many resource streams to read at the same time when fetching the history of several resources
+	 */
+	public EventStoreBackedHistoryRepository(EventStoreDBClient eventDBclient,
+			EventStoreDBProjectionManagementClient projectionClient, JsonMapper jsonMapper, long maxCachedEntries, int maxConcurrentReads) {
 		super();
 		this.eventDBclient = eventDBclient;
 		this.projectionClient = projectionClient;
 		this.jsonMapper = jsonMapper;
+		this.historyCache = new ResourceHistoryCache(maxCachedEntries);
+		this.concurrentReads = new Semaphore(maxConcurrentReads);
 		createProjectionIfNotExists();
 	}
 	
@@ -70,51 +105,125 @@ public class EventStoreBackedHistoryRepository implements PerResourceHistoryRepo
 	}
 	
 	
+	/**
+	 * issues the reads of up to maxConcurrentReads resource streams at a time, 
+	 * @return the entries of all resources ordered by their timestamp
+	 * @throws PartialHistoryException if the history of some resources could not be obtained, containing the entries of all other resources
+	 */
 	@Override
 	public Stream<ReplayEntry> getHistoryForResources(Set<String> uriOrAnonIds, String branchURI)
 			throws PersistenceException {
-		return uriOrAnonIds.stream()
-				.flatMap(uriOrAnonId -> {
-					try {
-						return getHistoryForResource(uriOrAnonId, branchURI);
-					} catch (PersistenceException e) {
-						//TODO what to do here
-						e.printStackTrace();
-						return Stream.empty();
-					}
-				} );
+		Map<String, CompletableFuture<List<ReplayEntry>>> pendingReads = new LinkedHashMap<>();
+		try {
+			for (String uriOrAnonId : uriOrAnonIds) {
+				concurrentReads.acquire();
+				CompletableFuture<List<ReplayEntry>> read;
+				try {
+					read = getHistoryForResourceAsync(uriOrAnonId, branchURI);
+				} catch (RuntimeException e) { // client failed without issuing the read
+					read = CompletableFuture.failedFuture(e);
+				}
+				pendingReads.put(uriOrAnonId, read.whenComplete((entries, e) -> concurrentReads.release()));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			pendingReads.values().forEach(read -> read.cancel(false));
+			throw new PersistenceException(String.format("Interrupted while fetching history of %s resources in branch %s", uriOrAnonIds.size(), branchURI));
+		}
+		List<ReplayEntry> entries = new ArrayList<>();
+		Map<String, String> failures = new LinkedHashMap<>();
+		for (Map.Entry<String, CompletableFuture<List<ReplayEntry>>> read : pendingReads.entrySet()) {
+			try {
+				entries.addAll(read.getValue().join());
+			} catch (CompletionException | CancellationException e) {
+				failures.put(read.getKey(), unwrap(e).getMessage());
+			}
+		}
+		entries.sort(new ReplayEntry.CompareByTimeStamp()); // stable, hence entries of the same commit remain in order
+		if (!failures.isEmpty()) {
+			String msg = String.format("Failed to fetch history of %s out of %s resources in branch %s, first failure: %s", failures.size(), uriOrAnonIds.size(), branchURI, failures.values().iterator().next());
+			log.warn(msg);
+			throw new PartialHistoryException(msg, entries, failures);
+		}
+		return entries.stream();
 	}
 	
 	/**
-	 * returns only history for non-anonymous resources as anonymous resources are not tracked in the event store
+	 * returns only history for non-anonymous resources as anonymous resources are not tracked in the event store,
+	 * only events after the last cached revision of the resource's stream are fetched
 	 */
 	@Override
 	public Stream<ReplayEntry> getHistoryForResource(String uriOrAnonId, String branchURI) throws PersistenceException {
-		
-		// fetch event stream for that resource and branch
-		// map to replay entry, done
-		// TODO: some caching of past changes?! for now lets just fetch this from the event store every time :-(		
+		try {
+			return getHistoryForResourceAsync(uriOrAnonId, branchURI).join().stream();
+		} catch (CompletionException e) {
+			Throwable cause = unwrap(e);
+			throw cause instanceof PersistenceException pe ? pe : new PersistenceException(cause.getMessage());
+		}
+	}
+	
+	private CompletableFuture<List<ReplayEntry>> getHistoryForResourceAsync(String uriOrAnonId, String branchURI) {
 		var streamId = produceStreamId(uriOrAnonId, branchURI);
-		var commits = fetchCommitsAboutResource(streamId);
-		return obtainReplayEntriesForResource(commits, uriOrAnonId);				
+		long lastRevision = historyCache.getLastRevision(streamId);
+		return fetchCommitsAboutResource(streamId, lastRevision).thenCompose(commits -> {
+			var entries = historyCache.append(streamId, lastRevision, obtainReplayEntriesForResource(commits.getCommits(), uriOrAnonId).toList(), commits.getLastRevision());
+			if (entries != null) {
+				return CompletableFuture.completedFuture(entries);
+			} else { // cached stream was evicted or updated concurrently, hence we need the whole stream
+				return fetchCommitsAboutResource(streamId, ResourceHistoryCache.NO_REVISION)
+						.thenApply(allCommits -> historyCache.append(streamId, ResourceHistoryCache.NO_REVISION, obtainReplayEntriesForResource(allCommits.getCommits(), uriOrAnonId).toList(), allCommits.getLastRevision()));
+			}
+		});
+	}
+	
+	private static Throwable unwrap(Throwable e) {
+		return (e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null ? e.getCause() : e;
+	}
+	
+	public void clearCache() {
+		historyCache.clear();
+	}
+	
+	long getCachedEntryCount() {
+		return historyCache.getCachedEntryCount();
 	}
 
 	private String produceStreamId(String resourceURI, String branchURI) {
 		return "resource-"+branchURI+"-"+resourceURI; // keep this in SYNC with projection definition below
 	}
 	
-	private List<Commit> fetchCommitsAboutResource(String streamName) throws PersistenceException {
-		// for now, we do a inefficient sequential load of all commits for that resource
-		List<Commit> commits = new LinkedList<>();
+	/**
+	 * @param afterRevision only events after this revision are read, or all if NO_REVISION
+	 * @return completes exceptionally with a PersistenceException if the stream cannot be read
+	 */
+	private CompletableFuture<StreamChunk> fetchCommitsAboutResource(String streamName, long afterRevision) {
 		ReadStreamOptions options = ReadStreamOptions.get()
-				.forwards() // direction is irrelevant for now as we dont cache, might change							
-				.fromStart()
+				.forwards()
 				.resolveLinkTos();
-		ReadResult result = null;
+		if (afterRevision == ResourceHistoryCache.NO_REVISION) {
+			options.fromStart();
+		} else {
+			options.fromRevision(afterRevision+1);
+		}
+		return eventDBclient.readStream(streamName, options).handle((result, e) -> {
+			if (e != null) {
+				if (unwrap(e) instanceof StreamNotFoundException) {
+					return new StreamChunk(Collections.emptyList(), afterRevision); //done
+				}
+				String msg = String.format("Error accessing event stream for resource and branch %s with error %s", streamName, unwrap(e).getMessage());
+				log.warn(msg);
+				throw new CompletionException(new PersistenceException(msg));
+			}
+			return toCommits(streamName, result, afterRevision);
+		});
+	}
+	
+	private StreamChunk toCommits(String streamName, ReadResult result, long afterRevision) {
+		List<Commit> commits = new LinkedList<>();
+		long lastRevision = afterRevision;
 		try {
-			result = eventDBclient.readStream(streamName, options)
-					.get();
 			for (ResolvedEvent resolvedEvent : result.getEvents()) {
+				lastRevision = Math.max(lastRevision, resolvedEvent.getOriginalEvent().getRevision()); // the link's revision in the resource stream
 				if (resolvedEvent.getEvent() == null) continue; // a deleted event
 				RecordedEvent recordedEvent = resolvedEvent.getEvent();				
 				//RecordedEvent recordedEvent = resolvedEvent.getOriginalEvent(); this returns the link					
@@ -122,22 +231,21 @@ public class EventStoreBackedHistoryRepository implements PerResourceHistoryRepo
 				StatementCommitImpl commit = jsonMapper.readValue(recordedEvent.getEventData(), StatementCommitImpl.class);
 				commits.add(commit);
 			}
-		} catch (ExecutionException | InterruptedException e) {
-			Throwable innerException = e.getCause();
-			if (innerException instanceof StreamNotFoundException) {
-				return Collections.emptyList(); //done
-			}
-			String msg = String.format("Error accessing event stream for resource and branch %s with error %s", streamName, e.getMessage());
-			log.warn(msg);
-			throw new PersistenceException(msg);
 		} catch (IOException e) {
 			String msg = String.format("Error loading commits for stream %s with error %s", streamName, e.getMessage());
 			log.warn(msg);
-			throw new PersistenceException(msg);
+			throw new CompletionException(new PersistenceException(msg));
 		}
-		return commits;
+		return new StreamChunk(commits, lastRevision);
 	}	
 	
+	@RequiredArgsConstructor
+	@Getter
+	private static class StreamChunk {
+		private final List<Commit> commits;
+		private final long lastRevision;
+	}
+	
 	private Stream<ReplayEntry> obtainReplayEntriesForResource(List<Commit> commits, String subjectURI) {
 		return commits.stream().flatMap(commit -> Stream.concat(
 											filterStatementsByContainerSubject(commit.getAddedStatements(), subjectURI)
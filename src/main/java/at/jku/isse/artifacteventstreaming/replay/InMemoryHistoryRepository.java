@@ -12,10 +12,11 @@ import at.jku.isse.artifacteventstreaming.api.AES.OPTYPE;
 import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
 import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
 
-public class InMemoryHistoryRepository implements PerResourceHistoryRepository {
+public class InMemoryHistoryRepository implements AppendableHistoryRepository {
 
 	private final HashMap<String, List<ReplayEntry>> history = new HashMap<>();
 	
+	@Override
 	public void appendHistory(String commitId, String branchURI, long timeStamp, Set<ContainedStatement> addedStatements,
 			Set<ContainedStatement> removedStatements) {
 		addedStatements.forEach(stmt -> history.computeIfAbsent(AES.resourceToId(stmt.getContainerOrSubject()), 
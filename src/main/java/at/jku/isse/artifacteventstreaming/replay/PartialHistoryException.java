@@ -0,0 +1,27 @@
+package at.jku.isse.artifacteventstreaming.replay;
+
+import java.util.List;
+import java.util.Map;
+
+import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
+import lombok.Getter;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Signals that the history of only some of the requested resources could be fetched, 
+ * provides the entries of the others for callers that can continue with a partial history.
+ */
+public class PartialHistoryException extends PersistenceException {
+
+	private static final long serialVersionUID = 1L;
+
+	@Getter private final transient List<ReplayEntry> fetchedEntries; // ordered by timestamp
+	@Getter private final Map<String, String> failedResources; // resource id to error message
+
+	public PartialHistoryException(String msg, List<ReplayEntry> fetchedEntries, Map<String, String> failedResources) {
+		super(msg);
+		this.fetchedEntries = fetchedEntries;
+		this.failedResources = failedResources;
+	}
+}
@@ -10,4 +10,13 @@ public interface PerResourceHistoryRepository {
 	public Stream<ReplayEntry> getHistoryForResource(String uriOrAnonId, String branchURI) throws PersistenceException;
 	
 	public Stream<ReplayEntry> getHistoryForResources(Set<String> uriOrAnonIds, String branchURI) throws PersistenceException;
+	
+	/**
+	 * @return the history entries of the resource with a timestamp from (inclusive) until (exclusive) the given timestamps, 
+	 * repositories with an ordered store should override this with a range scan 
+	 */
+	public default Stream<ReplayEntry> getHistoryForResourceBetween(String uriOrAnonId, String branchURI, long fromTimeStamp, long untilTimeStamp) throws PersistenceException {
+		return getHistoryForResource(uriOrAnonId, branchURI)
+				.filter(entry -> entry.getTimeStamp() >= fromTimeStamp && entry.getTimeStamp() < untilTimeStamp);
+	}
 }
@@ -1,6 +1,7 @@
 package at.jku.isse.artifacteventstreaming.replay;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -13,8 +14,10 @@ import org.apache.jena.rdf.model.Resource;
 import at.jku.isse.artifacteventstreaming.api.AES;
 import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 @RequiredArgsConstructor
+@Slf4j
 public class ReplayEntryCollectorFromHistory implements ReplayEntryCollector {
 
 	private final PerResourceHistoryRepository historyRepo;
@@ -27,21 +30,23 @@ public class ReplayEntryCollectorFromHistory implements ReplayEntryCollector {
 
 	@Override
 	public List<ReplayEntry> getPartialReplayEntries(long fromTimeStampIncl, Map<Resource, Set<Property>> replayScope) {
-		return replayScope.entrySet().stream()
-				.flatMap(entry -> 
-					getReplayEntriesOrEmpty(AES.resourceToId(entry.getKey()), branchURI) 
-						.filter(replEntry -> entry.getValue().contains(replEntry.getStatement().getContainmentPropertyOrPredicate()) )
-				)
+		Map<String, Set<Property>> scopePerId = new HashMap<>();
+		replayScope.forEach((res, props) -> scopePerId.put(AES.resourceToId(res), props));
+		return getReplayEntriesOrEmpty(scopePerId.keySet(), branchURI)
+				.filter(replEntry -> scopePerId.getOrDefault(AES.resourceToId(replEntry.getStatement().getContainerOrSubject()), Set.of()).contains(replEntry.getStatement().getContainmentPropertyOrPredicate()) )
 				.filter(replEntry -> replEntry.getTimeStamp() >= fromTimeStampIncl)
 				.sorted(new ReplayEntry.CompareByTimeStamp())
 				.collect(Collectors.toCollection(ArrayList::new));
 	}
 	
-	private Stream<ReplayEntry> getReplayEntriesOrEmpty(String uriOrId, String branchURI) {
+	private Stream<ReplayEntry> getReplayEntriesOrEmpty(Set<String> uriOrIds, String branchURI) {
 		try {
-			return historyRepo.getHistoryForResource(uriOrId, branchURI);
+			return historyRepo.getHistoryForResources(uriOrIds, branchURI);
+		} catch (PartialHistoryException e) {
+			log.warn(String.format("Replaying without history of resources %s: %s", e.getFailedResources().keySet(), e.getMessage()));
+			return e.getFetchedEntries().stream();
 		} catch (PersistenceException e) {
-			// TODO how to handle this?
+			log.warn(String.format("Replaying without history of %s resources: %s", uriOrIds.size(), e.getMessage()));
 			return Stream.empty();
 		}
 	}
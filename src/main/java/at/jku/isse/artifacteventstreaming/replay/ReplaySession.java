@@ -3,7 +3,6 @@ package at.jku.isse.artifacteventstreaming.replay;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -21,38 +20,44 @@ public class ReplaySession {
 	private final Map<Resource, Set<Property>> replayScope;
 	private final Model model;
 	
-	private int currentNonReplayedEntryPos = 0;
-	private List<ReplayEntry> history;
+	private ReplayTimeline timeline = new ReplayTimeline();
 	
 	public void revert() {
-		history = collector.getReplayEntriesInChronologicalOrder(replayScope);
+		var history = collector.getReplayEntriesInChronologicalOrder(replayScope);
 		revert(history);
+		timeline = new ReplayTimeline();
+		timeline.addAll(history);
 	}
 	
 	private void revert(List<ReplayEntry> history) {
 		if (history.isEmpty()) return;
-		history.sort(new ReplayEntry.CompareByTimeStamp()); // oldest first					
+		history.sort(new ReplayEntry.CompareByTimeStamp()); // oldest first, only sorts this run, not the whole timeline
 		for (int i = history.size()-1; i>= 0 ; i--) {
 			var entry = history.get(i);
 			entry.applyBackward(model);
 		}
 	}
 	
+	/**
+	 * @return the entries applied to the model, i.e., all changes that happened at the next not yet replayed timestamp (as per commit timestamp)
+	 */
 	public List<ReplayEntry> playForwardOneTimestamp() {
-		if (currentNonReplayedEntryPos >= history.size()) {
-			return Collections.emptyList();
-		}
-		List<ReplayEntry> replayedEntries = new LinkedList<>();
-		var nextTimestamp = history.get(currentNonReplayedEntryPos).getTimeStamp();
-		while (currentNonReplayedEntryPos < history.size() &&  nextTimestamp == history.get(currentNonReplayedEntryPos).getTimeStamp()) {// as long as changes happened at the same time (as per commit timestamp)
-			var entry = history.get(currentNonReplayedEntryPos);
-			entry.applyForward(model);
-			replayedEntries.add(entry);
-			currentNonReplayedEntryPos++;
-		} 
+		var replayedEntries = timeline.advance();
+		replayedEntries.forEach(entry -> entry.applyForward(model));
 		return replayedEntries;
 	}
 	
+	/**
+	 * @return the entries undone in the model, i.e., all changes of the last replayed timestamp, in the order they were originally applied
+	 */
+	public List<ReplayEntry> playBackwardOneTimestamp() {
+		var revertedEntries = timeline.retreat();
+		for (int i = revertedEntries.size()-1; i>= 0 ; i--) {
+			revertedEntries.get(i).applyBackward(model);
+		}
+		return revertedEntries;
+	}
+	
 	public void addToScope(Map<Resource, Set<Property>> additionalReplayScope) {
 		//copy to ensure mutability:
 		Map<Resource, Set<Property>> filteredReplayScope = new HashMap<>();
@@ -64,21 +69,17 @@ public class ReplaySession {
 				replayScope.computeIfAbsent(entry.getKey(), k-> new HashSet<>()).addAll(entry.getValue());// add the filtered scope to the replayScope for future checking in this method
 			});
 		
-		var partialHistory = collector.getPartialReplayEntries(getCurrentReplayTimestamp(), filteredReplayScope);
+		// once all is replayed, only changes after the end of the timeline are still to be replayed, older ones remain applied
+		var partialHistory = collector.getPartialReplayEntries(timeline.getEarliestInsertableTimestamp(), filteredReplayScope);
 		revert(partialHistory);
 		// insert history, there wont be any event earlier that current pos in history (as we asked not to have anything earlier)
-		history.addAll(partialHistory);
-		history.sort(new ReplayEntry.CompareByTimeStamp()); // resort to oldest first	
+		timeline.addAll(partialHistory);
 	}
 	
 	/**
 	 * @return the timestamp of the next, not yet replayed change, or -1 if history is empty or replay is complete
 	 */
 	public long getCurrentReplayTimestamp() {
-		if (history.isEmpty() || currentNonReplayedEntryPos >= history.size()) {
-			return -1;
-		} else {
-			return history.get(currentNonReplayedEntryPos).getTimeStamp();
-		}
+		return timeline.getNextTimestamp();
 	}
 }
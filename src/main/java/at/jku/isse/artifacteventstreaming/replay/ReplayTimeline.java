@@ -0,0 +1,90 @@
+package at.jku.isse.artifacteventstreaming.replay;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Replay entries grouped per timestamp in a sorted map, together with a cursor pointing at the next, not yet replayed timestamp.
+ * Adding entries and moving the cursor is logarithmic in the number of distinct timestamps, no re-sorting of the whole history.
+ * Entries with the same timestamp keep the order in which they were added.
+ */
+class ReplayTimeline {
+
+	private final NavigableMap<Long, List<ReplayEntry>> entriesPerTimestamp = new TreeMap<>();
+	private Long nextTimestamp = null; // null when all entries are replayed (or there are none)
+	private int size = 0;
+
+	/**
+	 * adds the entries (in any order) as not yet replayed, hence none of them may be older than the cursor
+	 */
+	void addAll(Collection<ReplayEntry> entries) {
+		for (ReplayEntry entry : entries) {
+			if (nextTimestamp == null && !entriesPerTimestamp.isEmpty() && entry.getTimeStamp() <= entriesPerTimestamp.lastKey()
+					|| nextTimestamp != null && entry.getTimeStamp() < nextTimestamp) {
+				throw new IllegalArgumentException(String.format("Cannot add entry at %s before the current replay position", entry.getTimeStamp()));
+			}
+			entriesPerTimestamp.computeIfAbsent(entry.getTimeStamp(), k -> new ArrayList<>()).add(entry);
+			size++;
+			if (nextTimestamp == null || entry.getTimeStamp() < nextTimestamp) {
+				nextTimestamp = entry.getTimeStamp();
+			}
+		}
+	}
+
+	/**
+	 * @return the entries of the next not yet replayed timestamp, oldest first, and moves the cursor past them
+	 */
+	List<ReplayEntry> advance() {
+		if (nextTimestamp == null) {
+			return Collections.emptyList();
+		}
+		List<ReplayEntry> entries = entriesPerTimestamp.get(nextTimestamp);
+		nextTimestamp = entriesPerTimestamp.higherKey(nextTimestamp);
+		return Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * @return the entries of the last replayed timestamp, oldest first, and moves the cursor back to them
+	 */
+	List<ReplayEntry> retreat() {
+		Map.Entry<Long, List<ReplayEntry>> previous = nextTimestamp == null ? entriesPerTimestamp.lastEntry() : entriesPerTimestamp.lowerEntry(nextTimestamp);
+		if (previous == null) {
+			return Collections.emptyList();
+		}
+		nextTimestamp = previous.getKey();
+		return Collections.unmodifiableList(previous.getValue());
+	}
+
+	/**
+	 * @return the timestamp of the next, not yet replayed entries, or -1 if there are none
+	 */
+	long getNextTimestamp() {
+		return nextTimestamp == null ? -1 : nextTimestamp;
+	}
+
+	/**
+	 * @return the timestamp from which on entries may be added, i.e., the next not yet replayed timestamp,
+	 * or just after the last entry when all are replayed
+	 */
+	long getEarliestInsertableTimestamp() {
+		if (nextTimestamp != null) {
+			return nextTimestamp;
+		}
+		return entriesPerTimestamp.isEmpty() ? -1 : entriesPerTimestamp.lastKey()+1;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+}
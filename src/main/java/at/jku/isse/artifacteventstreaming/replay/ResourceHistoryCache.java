@@ -0,0 +1,95 @@
+package at.jku.isse.artifacteventstreaming.replay;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Remembers the replay entries read so far from per resource event streams together with the last read stream revision,
+ * so that only events after that revision need to be fetched.
+ * Bounded by the total number of cached entries, evicting the least recently accessed streams first.
+ */
+class ResourceHistoryCache {
+
+	public static final long NO_REVISION = -1; // nothing read yet from a stream
+
+	private final long maxEntries;
+	private final LinkedHashMap<String, CachedStream> streams = new LinkedHashMap<>(16, 0.75f, true);
+	private long entryCount = 0;
+	@Getter private long evictionCount = 0;
+
+	ResourceHistoryCache(long maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * @return the last revision read from the stream, or NO_REVISION if the stream is not cached
+	 */
+	synchronized long getLastRevision(String streamId) {
+		CachedStream cached = streams.get(streamId);
+		return cached != null ? cached.lastRevision : NO_REVISION;
+	}
+
+	/**
+	 * @param readAfterRevision the revision after which the new entries were read, as obtained via {@link #getLastRevision(String)}
+	 * @param newEntries entries of the events read after that revision
+	 * @param lastRevision the revision of the last event read
+	 * @return all cached entries of the stream including the new ones, 
+	 * or null if the new entries cannot be combined with the cached ones as the stream was evicted or read concurrently in the meantime
+	 */
+	synchronized List<ReplayEntry> append(String streamId, long readAfterRevision, List<ReplayEntry> newEntries, long lastRevision) {
+		CachedStream cached = streams.get(streamId);
+		if (cached != null && cached.lastRevision != readAfterRevision && cached.lastRevision >= lastRevision) {
+			return List.copyOf(cached.entries); // a concurrent read already cached (at least) these events
+		}
+		if (readAfterRevision == NO_REVISION) { // read from the start, replaces anything cached
+			if (cached != null) {
+				entryCount -= cached.entries.size();
+			}
+			cached = new CachedStream();
+			streams.put(streamId, cached);
+		} else if (cached == null || cached.lastRevision != readAfterRevision) {
+			return null;
+		}
+		cached.entries.addAll(newEntries);
+		cached.lastRevision = lastRevision;
+		entryCount += newEntries.size();
+		List<ReplayEntry> result = List.copyOf(cached.entries);
+		evictIfNeeded();
+		return result;
+	}
+
+	private void evictIfNeeded() {
+		Iterator<Map.Entry<String, CachedStream>> iterator = streams.entrySet().iterator();
+		while (entryCount > maxEntries && iterator.hasNext()) {
+			// least recently accessed first, the stream just appended to is only evicted if it alone exceeds the bound
+			entryCount -= iterator.next().getValue().entries.size();
+			iterator.remove();
+			evictionCount++;
+		}
+	}
+
+	synchronized int getCachedStreamCount() {
+		return streams.size();
+	}
+
+	synchronized long getCachedEntryCount() {
+		return entryCount;
+	}
+
+	synchronized void clear() {
+		streams.clear();
+		entryCount = 0;
+	}
+
+	private static class CachedStream {
+		private final List<ReplayEntry> entries = new ArrayList<>();
+		private long lastRevision = NO_REVISION;
+	}
+}
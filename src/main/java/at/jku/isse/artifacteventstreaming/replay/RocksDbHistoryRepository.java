@@ -0,0 +1,236 @@
+package at.jku.isse.artifacteventstreaming.replay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import at.jku.isse.artifacteventstreaming.api.AES;
+import at.jku.isse.artifacteventstreaming.api.AES.OPTYPE;
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author Christoph Mayr-Dorn
+ *
+ * Disk-backed per resource history (obtained via RocksDBFactory#getHistoryRepository(int)),
+ * entries are keyed by branch, resource, timestamp (big-endian), and an append sequence, hence the history of a resource within a branch
+ * is a range scan in timestamp order, without touching the history of other branches or resources.
+ * The histories of the most recently accessed resources are kept in a hot cache shared by all branches,
+ * bounded by the total number of cached entries, evicting the least recently accessed histories first.
+ */
+@Slf4j
+public class RocksDbHistoryRepository implements AppendableHistoryRepository {
+
+	private static final byte SEPARATOR = 0;
+	private static final int SUFFIX_LENGTH = 3*Long.BYTES; // timestamp, epoch, sequence
+
+	private final RocksDB db;
+	private final ColumnFamilyHandle family;
+	private final WriteOptions writeOptions;
+	private final ObjectWriter statementWriter;
+	private final ObjectReader statementReader;
+	private final LinkedHashMap<String, List<ReplayEntry>> hotCache = new LinkedHashMap<>(16, 0.75f, true); // keyed by branch and resource
+	private final long maxCachedEntries;
+	@Getter private long cachedEntryCount = 0;
+	// entries with the same timestamp are ordered by the epoch of the repository instance and then their sequence
+	private final long epoch = System.currentTimeMillis();
+	private long nextSequenceNr = 0;
+	@Getter private long cacheHits = 0;
+	@Getter private long cacheMisses = 0;
+
+	/**
+	 * @param jsonMapper with the statement modules registered
+	 * @param maxCachedEntries how many history entries in total (of all branches and resources) to keep in memory, 0 for no caching
+	 */
+	public RocksDbHistoryRepository(@NonNull RocksDB db, @NonNull ColumnFamilyHandle family, @NonNull JsonMapper jsonMapper
+			, @NonNull WriteOptions writeOptions, long maxCachedEntries) {
+		this.db = db;
+		this.family = family;
+		this.writeOptions = writeOptions;
+		this.statementWriter = jsonMapper.writerFor(ContainedStatement.class);
+		this.statementReader = jsonMapper.readerFor(ContainedStatement.class);
+		this.maxCachedEntries = maxCachedEntries;
+	}
+
+	@Override
+	public synchronized void appendHistory(String commitId, String branchURI, long timeStamp, Set<ContainedStatement> addedStatements,
+			Set<ContainedStatement> removedStatements) throws PersistenceException {
+		List<ReplayEntry> entries = new ArrayList<>(addedStatements.size() + removedStatements.size());
+		addedStatements.forEach(stmt -> entries.add(new ReplayEntry(OPTYPE.ADD, stmt, commitId, timeStamp, branchURI)));
+		removedStatements.forEach(stmt -> entries.add(new ReplayEntry(OPTYPE.REMOVE, stmt, commitId, timeStamp, branchURI)));
+		try (WriteBatch batch = new WriteBatch()) {
+			for (ReplayEntry entry : entries) {
+				String resourceId = AES.resourceToId(entry.getStatement().getContainerOrSubject());
+				batch.put(family, toKey(branchURI, resourceId, timeStamp, nextSequenceNr++), encode(entry));
+			}
+			db.write(writeOptions, batch);
+		} catch (IOException | RocksDBException e) {
+			String msg = String.format("Error storing history of commit %s of branch %s with error %s", commitId, branchURI, e.getMessage());
+			log.warn(msg);
+			throw new PersistenceException(msg);
+		}
+		// only after a successful write, keep cached histories up to date
+		for (ReplayEntry entry : entries) {
+			String cacheKey = toCacheKey(branchURI, AES.resourceToId(entry.getStatement().getContainerOrSubject()));
+			List<ReplayEntry> cached = hotCache.get(cacheKey);
+			if (cached != null) {
+				if (cached.isEmpty() || cached.get(cached.size()-1).getTimeStamp() <= timeStamp) {
+					cached.add(entry);
+					cachedEntryCount++;
+				} else { // out of timestamp order, the next access reads it from the store in the right order
+					hotCache.remove(cacheKey);
+					cachedEntryCount -= cached.size();
+				}
+			}
+		}
+		evictIfNeeded();
+	}
+
+	@Override
+	public synchronized Stream<ReplayEntry> getHistoryForResource(String uriOrAnonId, String branchURI) throws PersistenceException {
+		String cacheKey = toCacheKey(branchURI, uriOrAnonId);
+		List<ReplayEntry> history = hotCache.get(cacheKey);
+		if (history != null) {
+			cacheHits++;
+		} else {
+			cacheMisses++;
+			history = scan(branchURI, uriOrAnonId, Long.MIN_VALUE, Long.MAX_VALUE);
+			if (!history.isEmpty()) { // unknown resources are cheap to look up again, but would not count towards the bound
+				hotCache.put(cacheKey, history);
+				cachedEntryCount += history.size();
+			}
+		}
+		List<ReplayEntry> result = List.copyOf(history); // entries appended later must not affect the returned stream
+		evictIfNeeded();
+		return result.stream();
+	}
+
+	private void evictIfNeeded() {
+		Iterator<Map.Entry<String, List<ReplayEntry>>> iterator = hotCache.entrySet().iterator();
+		while (cachedEntryCount > maxCachedEntries && iterator.hasNext()) {
+			// least recently accessed first, the history just read is only evicted if it alone exceeds the bound
+			cachedEntryCount -= iterator.next().getValue().size();
+			iterator.remove();
+		}
+	}
+
+	@Override
+	public Stream<ReplayEntry> getHistoryForResources(Set<String> uriOrAnonIds, String branchURI) throws PersistenceException {
+		List<ReplayEntry> entries = new ArrayList<>();
+		for (String uriOrAnonId : uriOrAnonIds) {
+			getHistoryForResource(uriOrAnonId, branchURI).forEach(entries::add);
+		}
+		return entries.stream();
+	}
+
+	/**
+	 * range scan that bypasses (and does not fill) the hot cache
+	 */
+	@Override
+	public synchronized Stream<ReplayEntry> getHistoryForResourceBetween(String uriOrAnonId, String branchURI, long fromTimeStamp, long untilTimeStamp) throws PersistenceException {
+		return scan(branchURI, uriOrAnonId, fromTimeStamp, untilTimeStamp).stream();
+	}
+
+	private List<ReplayEntry> scan(String branchURI, String resourceId, long fromTimeStamp, long untilTimeStamp) throws PersistenceException {
+		byte[] prefix = toPrefix(branchURI, resourceId);
+		List<ReplayEntry> entries = new ArrayList<>();
+		try (RocksIterator iterator = db.newIterator(family)) {
+			byte[] start = Arrays.copyOf(prefix, prefix.length + Long.BYTES);
+			ByteBuffer.wrap(start, prefix.length, Long.BYTES).putLong(toSortable(fromTimeStamp));
+			for (iterator.seek(start); iterator.isValid() && hasPrefix(iterator.key(), prefix); iterator.next()) {
+				long timeStamp = fromSortable(ByteBuffer.wrap(iterator.key(), prefix.length, Long.BYTES).getLong());
+				if (timeStamp >= untilTimeStamp) {
+					break;
+				}
+				entries.add(decode(iterator.value(), timeStamp, branchURI));
+			}
+		} catch (IOException e) {
+			String msg = String.format("Error loading history of resource %s in branch %s with error %s", resourceId, branchURI, e.getMessage());
+			log.warn(msg);
+			throw new PersistenceException(msg);
+		}
+		return entries;
+	}
+
+	public synchronized void clearHotCache() {
+		hotCache.clear();
+		cachedEntryCount = 0;
+	}
+
+	private static String toCacheKey(String branchURI, String resourceId) {
+		return branchURI+" "+resourceId;
+	}
+
+	private static byte[] toPrefix(String branchURI, String resourceId) {
+		byte[] branchBytes = branchURI.getBytes(StandardCharsets.UTF_8);
+		byte[] resourceBytes = resourceId.getBytes(StandardCharsets.UTF_8);
+		return ByteBuffer.allocate(branchBytes.length + 1 + resourceBytes.length + 1)
+				.put(branchBytes).put(SEPARATOR)
+				.put(resourceBytes).put(SEPARATOR)
+				.array();
+	}
+
+	private byte[] toKey(String branchURI, String resourceId, long timeStamp, long sequenceNr) {
+		byte[] prefix = toPrefix(branchURI, resourceId);
+		return ByteBuffer.allocate(prefix.length + SUFFIX_LENGTH)
+				.put(prefix)
+				.putLong(toSortable(timeStamp))
+				.putLong(epoch)
+				.putLong(sequenceNr)
+				.array();
+	}
+
+	private static boolean hasPrefix(byte[] key, byte[] prefix) {
+		return key.length == prefix.length + SUFFIX_LENGTH && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+	}
+
+	// flips the sign bit, so that the unsigned byte order of keys equals the numeric order, also for negative timestamps
+	private static long toSortable(long timeStamp) {
+		return timeStamp ^ Long.MIN_VALUE;
+	}
+
+	private static long fromSortable(long sortable) {
+		return sortable ^ Long.MIN_VALUE;
+	}
+
+	private byte[] encode(ReplayEntry entry) throws IOException {
+		byte[] idBytes = entry.getCommitId().getBytes(StandardCharsets.UTF_8);
+		byte[] stmtBytes = statementWriter.writeValueAsBytes(entry.getStatement());
+		return ByteBuffer.allocate(1 + Integer.BYTES + idBytes.length + stmtBytes.length)
+				.put((byte) entry.getOpType().ordinal())
+				.putInt(idBytes.length).put(idBytes)
+				.put(stmtBytes)
+				.array();
+	}
+
+	private ReplayEntry decode(byte[] value, long timeStamp, String branchURI) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(value);
+		OPTYPE opType = OPTYPE.values()[buffer.get()];
+		byte[] idBytes = new byte[buffer.getInt()];
+		buffer.get(idBytes);
+		ContainedStatement stmt = statementReader.readValue(value, buffer.position(), buffer.remaining());
+		return new ReplayEntry(opType, stmt, new String(idBytes, StandardCharsets.UTF_8), timeStamp, branchURI);
+	}
+}
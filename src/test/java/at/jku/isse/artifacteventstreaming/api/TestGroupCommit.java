@@ -0,0 +1,177 @@
+package at.jku.isse.artifacteventstreaming.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.ontapi.OntModelFactory;
+import org.apache.jena.ontapi.OntSpecification;
+import org.apache.jena.ontapi.model.OntModel;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+import at.jku.isse.artifacteventstreaming.branch.BranchBuilder;
+import at.jku.isse.artifacteventstreaming.branch.incoming.CompleteCommitMerger;
+import at.jku.isse.artifacteventstreaming.branch.outgoing.DefaultDirectBranchCommitStreamer;
+import at.jku.isse.artifacteventstreaming.branch.persistence.InMemoryBranchStateCache;
+import at.jku.isse.artifacteventstreaming.branch.persistence.InMemoryEventStore;
+import at.jku.isse.artifacteventstreaming.branch.persistence.StateKeeperImpl;
+import at.jku.isse.passiveprocessengine.rdf.trialcode.SyncForTestingService;
+
+class TestGroupCommit {
+
+	public static URI repoURI = URI.create("http://at.jku.isse.artifacteventstreaming/testrepos/groupcommit");
+
+	@Test
+	void testGroupPersistedUponCount() throws Exception {
+		InMemoryEventStore eventStore = new InMemoryEventStore();
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		URI branchURI = BranchBuilder.generateBranchURI(repoURI, "main");
+		Branch branch = new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setStateKeeper(new StateKeeperImpl(branchURI, new InMemoryBranchStateCache(), eventStore))
+				.setGroupCommit(3, 60000)
+				.build();
+		branch.startCommitHandlers(null);
+		OntModel model = branch.getModel();
+		Resource testResource = model.createResource(repoURI+"#art1");
+
+		branch.getDataset().begin();
+		model.add(testResource, RDFS.label, model.createTypedLiteral(1));
+		Commit commit1 = branch.commitChanges("TestCommit1");
+		branch.getDataset().begin();
+		model.add(testResource, RDFS.label, model.createTypedLiteral(2));
+		Commit commit2 = branch.commitChanges("TestCommit2");
+		// not yet persisted, but already the base for the next commit
+		assertEquals(0, eventStore.loadAllCommits().size());
+		assertEquals(commit2, branch.getLastCommit());
+		assertEquals(commit1.getCommitId(), commit2.getPrecedingCommitId());
+
+		branch.getDataset().begin();
+		model.add(testResource, RDFS.label, model.createTypedLiteral(3));
+		Commit commit3 = branch.commitChanges("TestCommit3");
+		assertEquals(List.of(commit1, commit2, commit3), eventStore.loadAllCommits());
+
+		branch.getDataset().begin();
+		model.add(testResource, RDFS.label, model.createTypedLiteral(4));
+		Commit commit4 = branch.commitChanges("TestCommit4");
+		assertEquals(3, eventStore.loadAllCommits().size());
+		branch.flushPendingCommits();
+		assertEquals(commit4, eventStore.loadAllCommits().get(3));
+		branch.deactivate();
+	}
+
+	@Test
+	void testPendingCommitsAppendedUponRestart() throws Exception {
+		InMemoryEventStore eventStore = new InMemoryEventStore();
+		InMemoryBranchStateCache cache = new InMemoryBranchStateCache();
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		URI branchURI = BranchBuilder.generateBranchURI(repoURI, "main");
+		Branch branch = new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setStateKeeper(new StateKeeperImpl(branchURI, cache, eventStore))
+				.setGroupCommit(3, 60000)
+				.build();
+		branch.startCommitHandlers(null);
+		OntModel model = branch.getModel();
+		Resource testResource = model.createResource(repoURI+"#art1");
+		List<Commit> commits = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			branch.getDataset().begin();
+			model.add(testResource, RDFS.label, model.createTypedLiteral(i));
+			commits.add(branch.commitChanges("TestCommit"+i));
+		}
+		// first group persisted, the remaining two still pending when the branch goes down without being deactivated
+		assertEquals(commits.subList(0, 3), eventStore.loadAllCommits());
+		
+		StateKeeperImpl restartedStateKeeper = new StateKeeperImpl(branchURI, cache, eventStore);
+		assertNull(restartedStateKeeper.loadState());
+		assertEquals(commits, eventStore.loadAllCommits());
+		assertEquals(commits.get(4).getCommitId(), restartedStateKeeper.getLastCommit().get().getCommitId());
+		assertEquals("", cache.forBranch(branchURI.toString()).get(StateKeeperImpl.PENDING_GROUP_COMMIT_IDS));
+		
+		// recovered only once
+		assertNull(new StateKeeperImpl(branchURI, cache, eventStore).loadState());
+		assertEquals(5, eventStore.loadAllCommits().size());
+	}
+
+	@Test
+	void testGroupPersistedUponDelay() throws Exception {
+		InMemoryEventStore eventStore = new InMemoryEventStore();
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		URI branchURI = BranchBuilder.generateBranchURI(repoURI, "main");
+		Branch branch = new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setStateKeeper(new StateKeeperImpl(branchURI, new InMemoryBranchStateCache(), eventStore))
+				.setGroupCommit(100, 50)
+				.build();
+		branch.startCommitHandlers(null);
+		OntModel model = branch.getModel();
+		branch.getDataset().begin();
+		model.add(model.createResource(repoURI+"#art1"), RDFS.label, model.createTypedLiteral(1));
+		Commit commit = branch.commitChanges("TestCommit1");
+
+		long waitUntil = System.currentTimeMillis() + 5000;
+		while (eventStore.loadAllCommits().isEmpty() && System.currentTimeMillis() < waitUntil) {
+			Thread.sleep(10);
+		}
+		assertEquals(List.of(commit), eventStore.loadAllCommits());
+		branch.deactivate();
+	}
+
+	@Test
+	void testGroupedMergesForwardedInOrder() throws Exception {
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		InMemoryBranchStateCache cache = new InMemoryBranchStateCache();
+		URI sourceURI = BranchBuilder.generateBranchURI(repoURI, "source");
+		URI destURI = BranchBuilder.generateBranchURI(repoURI, "dest");
+		InMemoryEventStore destEventStore = new InMemoryEventStore();
+		CountDownLatch latch = new CountDownLatch(3);
+		Branch destBranch = new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setBranchLocalName("dest")
+				.setStateKeeper(new StateKeeperImpl(destURI, cache, destEventStore))
+				.setGroupCommit(2, 60000)
+				.addBranchInternalCommitService(new SyncForTestingService("DestSync", latch, repoModel))
+				.build();
+		destBranch.appendIncomingCommitMerger(new CompleteCommitMerger(destBranch));
+		destBranch.startCommitHandlers(null);
+		Branch sourceBranch = new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setBranchLocalName("source")
+				.setStateKeeper(new StateKeeperImpl(sourceURI, cache, new InMemoryEventStore()))
+				.setGroupCommit(3, 60000)
+				.build();
+		sourceBranch.appendOutgoingCommitDistributer(new DefaultDirectBranchCommitStreamer(sourceBranch, destBranch, cache));
+		sourceBranch.startCommitHandlers(null);
+
+		OntModel model = sourceBranch.getModel();
+		Resource testResource = model.createResource(repoURI+"#art1");
+		for (int i = 0; i < 3; i++) {
+			sourceBranch.getDataset().begin();
+			model.add(testResource, RDFS.label, model.createTypedLiteral(i));
+			sourceBranch.commitChanges("TestCommit"+i);
+		}
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		// the latch is released during service processing, hence the last merge commit might not have been handed to the group yet
+		long waitUntil = System.currentTimeMillis() + 5000;
+		do {
+			Thread.sleep(10);
+			destBranch.flushPendingCommits();
+		} while (destEventStore.loadAllCommits().size() < 3 && System.currentTimeMillis() < waitUntil);
+		List<Commit> destCommits = destEventStore.loadAllCommits();
+		assertEquals(3, destCommits.size());
+		assertEquals("TestCommit0", destCommits.get(0).getCommitMessage());
+		assertEquals("TestCommit2", destCommits.get(2).getCommitMessage());
+		assertEquals(destCommits.get(1).getCommitId(), destCommits.get(2).getPrecedingCommitId());
+		assertEquals(3, destBranch.getModel().listStatements(null, RDFS.label, (String) null).toList().size());
+	}
+}
@@ -0,0 +1,136 @@
+package at.jku.isse.artifacteventstreaming.branch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.ontapi.OntModelFactory;
+import org.apache.jena.ontapi.OntSpecification;
+import org.apache.jena.ontapi.model.OntModel;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+import at.jku.isse.artifacteventstreaming.api.Branch;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.branch.incoming.CompleteCommitMerger;
+import at.jku.isse.artifacteventstreaming.branch.persistence.InMemoryBranchStateCache;
+import at.jku.isse.artifacteventstreaming.branch.persistence.InMemoryEventStore;
+import at.jku.isse.artifacteventstreaming.branch.persistence.StateKeeperImpl;
+import at.jku.isse.artifacteventstreaming.replay.ContainedStatementImpl;
+
+class TestCoalescedMerge {
+
+	public static final String base = "http://at.jku.isse.artifacteventstreaming/testrepos/coalescedmerge#";
+	public static final URI repoURI = URI.create(base.substring(0, base.length()-1));
+
+	@Test
+	void testQueuedCommitsMergedInBatches() throws Exception {
+		InMemoryEventStore destEventStore = new InMemoryEventStore();
+		StateKeeperImpl destStateKeeper = new StateKeeperImpl(BranchBuilder.generateBranchURI(repoURI, "dest"), new InMemoryBranchStateCache(), destEventStore);
+		Branch destBranch = buildDestBranch(destStateKeeper, false);
+		List<Commit> incoming = createIncomingCommits(5);
+		for (Commit commit : incoming) { // handlers not yet started, hence all commits queue up
+			destBranch.enqueueIncomingCommit(commit);
+		}
+		destBranch.startCommitHandlers(null);
+		waitForCheckpoint(destStateKeeper, incoming.get(4));
+
+		List<Commit> mergeCommits = destEventStore.loadAllCommits();
+		assertEquals(2, mergeCommits.size());
+		assertEquals(incoming.get(2).getCommitId(), mergeCommits.get(0).getCommitId());
+		assertEquals(incoming.get(4).getCommitId(), mergeCommits.get(1).getCommitId());
+		assertEquals(mergeCommits.get(0).getCommitId(), mergeCommits.get(1).getPrecedingCommitId());
+		assertEquals(3, mergeCommits.get(0).getAdditionCount());
+		assertEquals(2, mergeCommits.get(1).getAdditionCount());
+		incoming.subList(0, 3).forEach(commit -> assertTrue(mergeCommits.get(0).getCommitMessage().contains(commit.getCommitId())));
+		assertEquals(List.of(incoming.get(4)), destStateKeeper.getNonMergedCommits());
+		destBranch.getDataset().begin(ReadWrite.READ);
+		assertEquals(5, destBranch.getModel().listStatements(null, RDFS.label, (RDFNode)null).toList().size());
+		destBranch.getDataset().end();
+		destBranch.deactivate();
+	}
+
+	@Test
+	void testRedeliveredCommitOfBatchNotMergedAgain() throws Exception {
+		InMemoryEventStore destEventStore = new InMemoryEventStore();
+		StateKeeperImpl destStateKeeper = new StateKeeperImpl(BranchBuilder.generateBranchURI(repoURI, "dest"), new InMemoryBranchStateCache(), destEventStore);
+		Branch destBranch = buildDestBranch(destStateKeeper, false);
+		List<Commit> incoming = createIncomingCommits(3);
+		for (Commit commit : incoming) {
+			destBranch.enqueueIncomingCommit(commit);
+		}
+		destBranch.startCommitHandlers(null);
+		waitForCheckpoint(destStateKeeper, incoming.get(2));
+		assertEquals(1, destEventStore.loadAllCommits().size());
+		incoming.forEach(commit -> assertTrue(destStateKeeper.hasSeenCommit(commit)));
+
+		// e.g., upon recovery of the source branch's streamer
+		destBranch.enqueueIncomingCommit(incoming.get(0));
+		Thread.sleep(100);
+		assertEquals(1, destEventStore.loadAllCommits().size());
+		assertEquals(List.of(incoming.get(2)), destStateKeeper.getNonMergedCommits());
+		destBranch.deactivate();
+	}
+
+	@Test
+	void testCoalescedMergeWithSchedulerAndGroupCommit() throws Exception {
+		InMemoryEventStore destEventStore = new InMemoryEventStore();
+		StateKeeperImpl destStateKeeper = new StateKeeperImpl(BranchBuilder.generateBranchURI(repoURI, "dest"), new InMemoryBranchStateCache(), destEventStore);
+		Branch destBranch = buildDestBranch(destStateKeeper, true);
+		List<Commit> incoming = createIncomingCommits(5);
+		for (Commit commit : incoming) {
+			destBranch.enqueueIncomingCommit(commit);
+		}
+		destBranch.startCommitHandlers(null);
+		waitForCheckpoint(destStateKeeper, incoming.get(4));
+		// how many commits end up in a batch depends on how fast they are prepared
+		List<Commit> mergeCommits = destEventStore.loadAllCommits();
+		assertEquals(5, mergeCommits.stream().mapToInt(Commit::getAdditionCount).sum());
+		assertEquals(incoming.get(4).getCommitId(), mergeCommits.get(mergeCommits.size()-1).getCommitId());
+		assertEquals(List.of(incoming.get(4)), destStateKeeper.getNonMergedCommits());
+		destBranch.deactivate();
+	}
+
+	private Branch buildDestBranch(StateKeeperImpl stateKeeper, boolean withSchedulerAndGroupCommit) throws Exception {
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		BranchBuilder builder = new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setBranchLocalName("dest")
+				.setStateKeeper(stateKeeper)
+				.setCoalescedMerge(3);
+		if (withSchedulerAndGroupCommit) {
+			builder.setParallelMergePreparation(2).setGroupCommit(10, 10);
+		}
+		Branch branch = builder.build();
+		branch.appendIncomingCommitMerger(new CompleteCommitMerger(branch));
+		return branch;
+	}
+
+	private void waitForCheckpoint(StateKeeperImpl stateKeeper, Commit lastIncoming) throws Exception {
+		long waitUntil = System.currentTimeMillis() + 5000;
+		// in memory store returns deliveries including the checkpoint
+		while (!stateKeeper.getNonMergedCommits().equals(List.of(lastIncoming)) && System.currentTimeMillis() < waitUntil) {
+			Thread.sleep(10);
+		}
+	}
+
+	private List<Commit> createIncomingCommits(int count) {
+		Model m = ModelFactory.createDefaultModel();
+		List<Commit> commits = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			var stmt = new ContainedStatementImpl(m.createStatement(m.createResource(base+"art"+i), RDFS.label, "label"+i));
+			commits.add(new StatementCommitImpl(base+"source", "Commit"+i, null, i, Set.of(stmt), Set.of()));
+		}
+		return commits;
+	}
+}
@@ -0,0 +1,228 @@
+package at.jku.isse.artifacteventstreaming.branch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.ontapi.OntModelFactory;
+import org.apache.jena.ontapi.OntSpecification;
+import org.apache.jena.ontapi.model.OntModel;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+import at.jku.isse.artifacteventstreaming.api.AbstractHandlerBase;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.CommitHandler;
+import at.jku.isse.artifacteventstreaming.api.ConcurrentCommitHandler;
+import at.jku.isse.artifacteventstreaming.api.IncrementalCommitHandler;
+
+class TestConcurrentServices {
+
+	public static final String base = "http://at.jku.isse.artifacteventstreaming/testrepos/concurrentservices#";
+	public static final URI repoURI = URI.create(base.substring(0, base.length()-1));
+	public static final Property checkedBy = ResourceFactory.createProperty(base+"checkedBy");
+
+	@Test
+	void testConcurrentServicesOnSnapshot() throws Exception {
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		CyclicBarrier bothRunning = new CyclicBarrier(2);
+		Map<String, String> threadPerInvocation = new ConcurrentHashMap<>();
+		Validator first = new Validator("First", repoModel, bothRunning, threadPerInvocation);
+		Validator second = new Validator("Second", repoModel, bothRunning, threadPerInvocation);
+		BranchImpl branch = (BranchImpl) new BranchBuilder(repoURI, repoDataset, repoModel)
+				.addBranchInternalCommitService(first)
+				.addBranchInternalCommitService(second)
+				.addBranchInternalCommitService(new CommentWriter("CommentWriter", repoModel))
+				.setConcurrentServices(2)
+				.build();
+		branch.startCommitHandlers(null);
+		OntModel model = branch.getModel();
+		Resource art = model.createResource(base+"art1");
+		branch.getDataset().begin();
+		model.add(art, RDFS.label, "first");
+		Commit commit = branch.commitChanges("TestCommit");
+
+		// label and comment, each checked by both validators
+		assertEquals(6, commit.getAdditionCount());
+		assertTrue(model.contains(art, checkedBy, "First"+RDFS.label.getLocalName()));
+		assertTrue(model.contains(art, checkedBy, "Second"+RDFS.comment.getLocalName()));
+		String committingThread = Thread.currentThread().getName();
+		// first round in parallel on the snapshot, second round for the comment on the committing thread
+		assertNotEquals(committingThread, threadPerInvocation.get("First"+RDFS.label.getLocalName()));
+		assertNotEquals(committingThread, threadPerInvocation.get("Second"+RDFS.label.getLocalName()));
+		assertEquals(committingThread, threadPerInvocation.get("First"+RDFS.comment.getLocalName()));
+		assertEquals(committingThread, threadPerInvocation.get("Second"+RDFS.comment.getLocalName()));
+		assertEquals(5, branch.getLastServiceLoopStatistics().getInvocations()); // the comment writer is not woken by the validators' output
+	}
+
+	@Test
+	void testConcurrentServicesSequentialWithoutPool() throws Exception {
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		Map<String, String> threadPerInvocation = new ConcurrentHashMap<>();
+		BranchImpl branch = (BranchImpl) new BranchBuilder(repoURI, repoDataset, repoModel)
+				.addBranchInternalCommitService(new Validator("First", repoModel, null, threadPerInvocation))
+				.build();
+		branch.startCommitHandlers(null);
+		OntModel model = branch.getModel();
+		Resource art = model.createResource(base+"art1");
+		branch.getDataset().begin();
+		model.add(art, RDFS.label, "first");
+		Commit commit = branch.commitChanges("TestCommit");
+		assertEquals(2, commit.getAdditionCount());
+		assertEquals(Thread.currentThread().getName(), threadPerInvocation.get("First"+RDFS.label.getLocalName()));
+	}
+
+	@Test
+	void testConcurrentServicesSequentialWhenPreServiceCommitFailed() throws Exception {
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		Map<String, String> threadPerInvocation = new ConcurrentHashMap<>();
+		BranchImpl branch = (BranchImpl) new BranchBuilder(repoURI, repoDataset, repoModel)
+				.addBranchInternalCommitService(new Validator("First", repoModel, null, threadPerInvocation))
+				.addBranchInternalCommitService(new Validator("Second", repoModel, null, threadPerInvocation))
+				.setConcurrentServices(2)
+				.build();
+		branch.startCommitHandlers(null);
+		OntModel model = branch.getModel();
+		// changed outside of a transaction, hence the pre-service commit of the model state fails
+		model.add(model.createResource(base+"art1"), RDFS.label, "first");
+		branch.commitChanges("TestCommit");
+		// read transactions would not see the state the services are invoked upon
+		assertEquals(Thread.currentThread().getName(), threadPerInvocation.get("First"+RDFS.label.getLocalName()));
+		assertEquals(Thread.currentThread().getName(), threadPerInvocation.get("Second"+RDFS.label.getLocalName()));
+	}
+
+	@Test
+	void testConcurrentServicesSequentialWithInference() throws Exception {
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		Map<String, String> threadPerInvocation = new ConcurrentHashMap<>();
+		BranchImpl branch = (BranchImpl) new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setModelReasoner(OntSpecification.OWL2_DL_MEM_RDFS_INF)
+				.addBranchInternalCommitService(new Validator("First", repoModel, null, threadPerInvocation))
+				.addBranchInternalCommitService(new Validator("Second", repoModel, null, threadPerInvocation))
+				.setConcurrentServices(2)
+				.build();
+		branch.startCommitHandlers(null);
+		OntModel model = branch.getModel();
+		Resource art = model.createResource(base+"art1");
+		branch.getDataset().begin();
+		model.add(art, RDFS.label, "first");
+		Commit commit = branch.commitChanges("TestCommit");
+		// the inference graph is not safe for concurrent readers
+		assertEquals(Thread.currentThread().getName(), threadPerInvocation.get("First"+RDFS.label.getLocalName()));
+		assertEquals(Thread.currentThread().getName(), threadPerInvocation.get("Second"+RDFS.label.getLocalName()));
+		assertTrue(commit.getAddedStatements().stream().anyMatch(stmt -> stmt.getPredicate().equals(checkedBy)));
+	}
+
+	/**
+	 * marks each resource with a label or comment as checked, reading the branch model (i.e., the snapshot) to do so
+	 */
+	private static class Validator extends AbstractHandlerBase implements ConcurrentCommitHandler {
+
+		private final CyclicBarrier bothRunning;
+		private final Map<String, String> threadPerInvocation;
+
+		public Validator(String serviceName, OntModel repoModel, CyclicBarrier bothRunning, Map<String, String> threadPerInvocation) {
+			super(serviceName, repoModel);
+			this.bothRunning = bothRunning;
+			this.threadPerInvocation = threadPerInvocation;
+		}
+
+		@Override
+		public void handleCommit(Commit commit) {
+			handleCommitFromOffset(commit, 0, 0);
+		}
+
+		@Override
+		public void handleCommitFromOffset(Commit commit, int indexOfNewAddition, int indexOfNewRemoval) {
+			Model additions = ModelFactory.createDefaultModel();
+			handleCommitConcurrently(commit, indexOfNewAddition, indexOfNewRemoval, additions, ModelFactory.createDefaultModel());
+			commit.getAddedStatements().get(0).getModel().add(additions.listStatements().toList());
+		}
+
+		@Override
+		public void handleCommitConcurrently(Commit commit, int indexOfNewAddition, int indexOfNewRemoval, Model additions, Model removals) {
+			for (var stmt : commit.getAddedStatements().subList(indexOfNewAddition, commit.getAdditionCount())) {
+				if (stmt.getPredicate().equals(RDFS.label) || stmt.getPredicate().equals(RDFS.comment)) {
+					String invocation = serviceName+stmt.getPredicate().getLocalName();
+					threadPerInvocation.put(invocation, Thread.currentThread().getName());
+					if (stmt.getModel().contains(stmt)) { // visible in the snapshot
+						additions.add(stmt.getSubject(), checkedBy, invocation);
+					}
+				}
+			}
+			if (bothRunning != null && Thread.currentThread() instanceof ForkJoinWorkerThread) {
+				try {
+					bothRunning.await(5, TimeUnit.SECONDS); // fails unless both validators run at the same time
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+
+		@Override
+		public Set<Property> getReadPredicates() {
+			return Set.of(RDFS.label, RDFS.comment);
+		}
+
+		@Override
+		public Set<Property> getWrittenPredicates() {
+			return Set.of(checkedBy);
+		}
+
+		@Override
+		protected String getServiceTypeURI() {
+			return CommitHandler.serviceTypeBaseURI+this.getClass().getSimpleName();
+		}
+	}
+
+	private static class CommentWriter extends AbstractHandlerBase implements IncrementalCommitHandler {
+
+		public CommentWriter(String serviceName, OntModel repoModel) {
+			super(serviceName, repoModel);
+		}
+
+		@Override
+		public void handleCommit(Commit commit) {
+			handleCommitFromOffset(commit, 0, 0);
+		}
+
+		@Override
+		public void handleCommitFromOffset(Commit commit, int indexOfNewAddition, int indexOfNewRemoval) {
+			for (var stmt : List.copyOf(commit.getAddedStatements().subList(indexOfNewAddition, commit.getAdditionCount()))) {
+				if (stmt.getPredicate().equals(RDFS.label)) {
+					stmt.getModel().add(stmt.getSubject(), RDFS.comment, "comment");
+				}
+			}
+		}
+
+		@Override
+		public Set<Property> getReadPredicates() {
+			return Set.of(RDFS.label);
+		}
+
+		@Override
+		protected String getServiceTypeURI() {
+			return CommitHandler.serviceTypeBaseURI+this.getClass().getSimpleName();
+		}
+	}
+}
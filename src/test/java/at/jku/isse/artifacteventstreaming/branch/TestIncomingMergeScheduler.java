@@ -0,0 +1,189 @@
+package at.jku.isse.artifacteventstreaming.branch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.ontapi.OntModelFactory;
+import org.apache.jena.ontapi.OntSpecification;
+import org.apache.jena.ontapi.model.OntModel;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import at.jku.isse.artifacteventstreaming.api.Branch;
+import at.jku.isse.artifacteventstreaming.api.BranchStateUpdater;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.branch.incoming.GraphLevelCommitMerger;
+import at.jku.isse.artifacteventstreaming.branch.outgoing.DefaultDirectBranchCommitStreamer;
+import at.jku.isse.artifacteventstreaming.branch.persistence.InMemoryBranchStateCache;
+import at.jku.isse.artifacteventstreaming.branch.persistence.InMemoryEventStore;
+import at.jku.isse.artifacteventstreaming.branch.persistence.StateKeeperImpl;
+import at.jku.isse.artifacteventstreaming.replay.ContainedStatementImpl;
+
+class TestIncomingMergeScheduler {
+
+	public static final String base = "http://at.jku.isse.artifacteventstreaming/testrepos/mergescheduler#";
+
+	@Test
+	void testNonConflictingCommitsOvertakeSlowPreparation() throws Exception {
+		BranchStateUpdater stateKeeper = mock(BranchStateUpdater.class);
+		BlockingQueue<Commit> inQueue = new LinkedBlockingQueue<>();
+		IncomingMergeScheduler scheduler = new IncomingMergeScheduler(stateKeeper, inQueue, 4);
+		CountDownLatch slowPreparation = new CountDownLatch(1);
+
+		Commit a = createCommit("source1", "x");
+		Commit b = createCommit("source2", "y");
+		Commit c = createCommit("source1", "z"); // same source as a
+		Commit d = createCommit("source3", "x"); // same subject as a
+		scheduler.submit(a, () -> await(slowPreparation));
+		scheduler.submit(b, () -> {});
+		scheduler.submit(c, () -> {});
+		scheduler.submit(d, () -> {});
+
+		assertEquals(b, pollReleased(inQueue));
+		Thread.sleep(100);
+		assertTrue(inQueue.isEmpty());
+		assertTrue(scheduler.isPending(c));
+		assertEquals(3, scheduler.getPendingCount());
+
+		slowPreparation.countDown();
+		assertEquals(a, pollReleased(inQueue));
+		assertEquals(c, pollReleased(inQueue));
+		assertEquals(d, pollReleased(inQueue));
+		assertEquals(0, scheduler.getPendingCount());
+		scheduler.shutdown();
+	}
+
+	@Test
+	void testCheckpointOnlyAdvancesOverMergedPrefix() throws Exception {
+		BranchStateUpdater stateKeeper = mock(BranchStateUpdater.class);
+		IncomingMergeScheduler scheduler = new IncomingMergeScheduler(stateKeeper, new LinkedBlockingQueue<>(), 1);
+		Commit a = createCommit("source1", "x");
+		Commit b = createCommit("source2", "y");
+		Commit c = createCommit("source3", "z");
+		for (Commit commit : List.of(a, b, c)) {
+			scheduler.submit(commit, () -> {});
+		}
+		scheduler.finishedMerge(b);
+		verify(stateKeeper, never()).finishedMerge(Mockito.any());
+		scheduler.finishedMerge(a);
+		scheduler.failedMerge(c); // does not hold back, but is not the checkpoint either
+		InOrder inOrder = inOrder(stateKeeper);
+		inOrder.verify(stateKeeper).finishedMerge(b);
+		inOrder.verifyNoMoreInteractions();
+		scheduler.shutdown();
+	}
+
+	@Test
+	void testParallelPreparationMergesAllSources() throws Exception {
+		URI repoURI = URI.create(base.substring(0, base.length()-1));
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		InMemoryBranchStateCache cache = new InMemoryBranchStateCache();
+		URI destURI = BranchBuilder.generateBranchURI(repoURI, "dest");
+		InMemoryEventStore destEventStore = new InMemoryEventStore();
+		StateKeeperImpl destStateKeeper = new StateKeeperImpl(destURI, cache, destEventStore);
+		Branch destBranch = new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setBranchLocalName("dest")
+				.setStateKeeper(destStateKeeper)
+				.setParallelMergePreparation(4)
+				.build();
+		destBranch.appendIncomingCommitMerger(new GraphLevelCommitMerger(destBranch)); // applies the prepared triples
+		destBranch.startCommitHandlers(null);
+		List<Branch> sources = new ArrayList<>();
+		for (int s = 0; s < 3; s++) {
+			Branch source = new BranchBuilder(repoURI, repoDataset, repoModel)
+					.setBranchLocalName("source"+s)
+					.setStateKeeper(new StateKeeperImpl(BranchBuilder.generateBranchURI(repoURI, "source"+s), cache, new InMemoryEventStore()))
+					.build();
+			source.appendOutgoingCommitDistributer(new DefaultDirectBranchCommitStreamer(source, destBranch, cache));
+			source.startCommitHandlers(null);
+			sources.add(source);
+		}
+		for (int i = 0; i < 5; i++) {
+			for (int s = 0; s < sources.size(); s++) {
+				OntModel model = sources.get(s).getModel();
+				sources.get(s).getDataset().begin();
+				model.add(model.createResource(base+"art"+s), RDFS.label, model.createTypedLiteral(i));
+				sources.get(s).commitChanges("Commit"+i+"OnSource"+s);
+			}
+		}
+		long waitUntil = System.currentTimeMillis() + 5000;
+		while ((destEventStore.loadAllCommits().size() < 15 || destStateKeeper.getNonMergedCommits().size() > 1) && System.currentTimeMillis() < waitUntil) {
+			Thread.sleep(10);
+		}
+		List<Commit> destCommits = destEventStore.loadAllCommits();
+		assertEquals(15, destCommits.size());
+		for (int s = 0; s < sources.size(); s++) { // per source order kept
+			String postfix = "OnSource"+s;
+			assertEquals(List.of("Commit0", "Commit1", "Commit2", "Commit3", "Commit4"), destCommits.stream()
+					.map(Commit::getCommitMessage)
+					.filter(msg -> msg.endsWith(postfix))
+					.map(msg -> msg.substring(0, msg.length()-postfix.length()))
+					.toList());
+		}
+		// checkpoint reached the last delivered commit (the in memory store returns deliveries including the checkpoint)
+		List<Commit> deliveries = destEventStore.loadAllIncomingCommitsForBranchFromCommitIdOnward(null);
+		assertEquals(List.of(deliveries.get(deliveries.size()-1)), destStateKeeper.getNonMergedCommits());
+		destBranch.deactivate();
+		sources.forEach(Branch::deactivate);
+	}
+
+	@Test
+	void testReleasedCommitsComeWithTheirTriples() throws Exception {
+		BlockingQueue<Commit> inQueue = new LinkedBlockingQueue<>();
+		IncomingMergeScheduler scheduler = new IncomingMergeScheduler(mock(BranchStateUpdater.class), inQueue, 1);
+		Commit a = createCommit("source1", "x");
+		scheduler.submit(a, () -> {});
+		Commit released = inQueue.poll(5, TimeUnit.SECONDS);
+		PreparedCommit prepared = assertInstanceOf(PreparedCommit.class, released);
+		assertEquals(a, prepared.getDelegate());
+		assertEquals(a.getAddedStatements().get(0).asTriple(), prepared.getAddedTriples()[0]);
+		assertEquals(0, prepared.getRemovedTriples().length);
+		assertEquals(Set.of(NodeFactory.createURI(base+"x")), prepared.getSubjects());
+		assertTrue(scheduler.isPending(a)); // until merged
+		scheduler.finishedMerge(released);
+		assertFalse(scheduler.isPending(a));
+		scheduler.shutdown();
+	}
+
+	private static Commit pollReleased(BlockingQueue<Commit> inQueue) throws InterruptedException {
+		Commit released = inQueue.poll(5, TimeUnit.SECONDS);
+		return released instanceof PreparedCommit prepared ? prepared.getDelegate() : released;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private Commit createCommit(String source, String subject) {
+		Model m = ModelFactory.createDefaultModel();
+		var stmt = new ContainedStatementImpl(m.createStatement(m.createResource(base+subject), RDFS.label, source));
+		return new StatementCommitImpl(base+source, "Commit on "+subject, null, 0, Set.of(stmt), Set.of());
+	}
+}
@@ -0,0 +1,140 @@
+package at.jku.isse.artifacteventstreaming.branch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.ontapi.OntModelFactory;
+import org.apache.jena.ontapi.OntSpecification;
+import org.apache.jena.ontapi.model.OntModel;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+import at.jku.isse.artifacteventstreaming.api.AbstractHandlerBase;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.CommitHandler;
+import at.jku.isse.artifacteventstreaming.api.IncrementalCommitHandler;
+
+class TestServiceLoopScheduling {
+
+	public static final String base = "http://at.jku.isse.artifacteventstreaming/testrepos/serviceloop#";
+	public static final URI repoURI = URI.create(base.substring(0, base.length()-1));
+	public static final Property unusedProperty = ResourceFactory.createProperty(base+"unused");
+	public static final Resource issueType = ResourceFactory.createResource(base+"Issue");
+
+	@Test
+	void testOnlyAffectedServicesInvoked() throws Exception {
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		List<String> invocations = new ArrayList<>();
+		// configured such that the reader of comments comes before the writer of comments
+		RecordingService commentReader = new RecordingService("CommentReader", repoModel, invocations, Set.of(RDFS.comment), null, null);
+		RecordingService labelToComment = new RecordingService("LabelToComment", repoModel, invocations, Set.of(RDFS.label), Set.of(RDFS.comment), null);
+		RecordingService unaffected = new RecordingService("Unaffected", repoModel, invocations, Set.of(unusedProperty), null, null);
+		RecordingService issueReader = new RecordingService("IssueReader", repoModel, invocations, null, null, Set.of(issueType));
+		BranchImpl branch = (BranchImpl) new BranchBuilder(repoURI, repoDataset, repoModel)
+				.addBranchInternalCommitService(commentReader)
+				.addBranchInternalCommitService(labelToComment)
+				.addBranchInternalCommitService(unaffected)
+				.addBranchInternalCommitService(issueReader)
+				.build();
+		branch.startCommitHandlers(null);
+		OntModel model = branch.getModel();
+		Resource art = model.createResource(base+"art1");
+		model.add(art, RDFS.label, "first");
+		Commit commit = branch.commitChanges("TestCommit");
+
+		assertEquals(List.of("LabelToComment", "CommentReader"), invocations);
+		assertEquals(2, commit.getAdditionCount());
+		ServiceLoopStatistics stats = branch.getLastServiceLoopStatistics();
+		assertEquals(commit.getCommitId(), stats.getCommitId());
+		assertEquals(2, stats.getRounds()); // second round to detect that no new input emerged
+		assertEquals(2, stats.getInvocations());
+		assertEquals(6, stats.getSkippedInvocations());
+
+		// a statement about an issue wakes the type reader, also when the type is not part of the commit
+		invocations.clear();
+		model.add(art, RDF.type, issueType);
+		branch.commitChanges("Typed");
+		invocations.clear();
+		model.add(art, unusedProperty, "value");
+		branch.commitChanges("AboutIssue");
+		assertEquals(List.of("Unaffected", "IssueReader"), invocations);
+	}
+
+	@Test
+	void testOrderByDependencies() throws Exception {
+		OntModel repoModel = OntModelFactory.createModel(OntSpecification.OWL2_DL_MEM);
+		List<String> invocations = new ArrayList<>();
+		RecordingService undeclared = new RecordingService("Undeclared", repoModel, invocations, null, null, null);
+		RecordingService commentReader = new RecordingService("CommentReader", repoModel, invocations, Set.of(RDFS.comment), Set.of(RDFS.seeAlso), null);
+		RecordingService labelToComment = new RecordingService("LabelToComment", repoModel, invocations, Set.of(RDFS.label), Set.of(RDFS.comment), null);
+		List<IncrementalCommitHandler> configured = List.of(undeclared, commentReader, labelToComment);
+		assertEquals(List.of(undeclared, labelToComment, commentReader), ServiceLoopScheduler.orderByDependencies(configured));
+
+		RecordingService seeAlsoToLabel = new RecordingService("SeeAlsoToLabel", repoModel, invocations, Set.of(RDFS.seeAlso), Set.of(RDFS.label), null);
+		List<IncrementalCommitHandler> cyclic = List.of(commentReader, labelToComment, seeAlsoToLabel);
+		assertEquals(cyclic, ServiceLoopScheduler.orderByDependencies(cyclic));
+	}
+
+	private static class RecordingService extends AbstractHandlerBase implements IncrementalCommitHandler {
+
+		private final List<String> invocations;
+		private final Set<Property> readPredicates;
+		private final Set<Property> writtenPredicates;
+		private final Set<Resource> readTypes;
+
+		public RecordingService(String serviceName, OntModel repoModel, List<String> invocations
+				, Set<Property> readPredicates, Set<Property> writtenPredicates, Set<Resource> readTypes) {
+			super(serviceName, repoModel);
+			this.invocations = invocations;
+			this.readPredicates = readPredicates;
+			this.writtenPredicates = writtenPredicates;
+			this.readTypes = readTypes;
+		}
+
+		@Override
+		public void handleCommit(Commit commit) {
+			handleCommitFromOffset(commit, 0, 0);
+		}
+
+		@Override
+		public void handleCommitFromOffset(Commit commit, int indexOfNewAddition, int indexOfNewRemoval) {
+			invocations.add(serviceName);
+			if (writtenPredicates != null && writtenPredicates.contains(RDFS.comment)) {
+				commit.getAddedStatements().subList(indexOfNewAddition, commit.getAdditionCount()).stream()
+					.filter(stmt -> stmt.getPredicate().equals(RDFS.label))
+					.forEach(stmt -> stmt.getModel().add(stmt.getSubject(), RDFS.comment, "commented "+stmt.getString()));
+			}
+		}
+
+		@Override
+		public Set<Property> getReadPredicates() {
+			return readPredicates;
+		}
+
+		@Override
+		public Set<Property> getWrittenPredicates() {
+			return writtenPredicates;
+		}
+
+		@Override
+		public Set<Resource> getReadTypes() {
+			return readTypes;
+		}
+
+		@Override
+		protected String getServiceTypeURI() {
+			return CommitHandler.serviceTypeBaseURI+this.getClass().getSimpleName();
+		}
+	}
+}
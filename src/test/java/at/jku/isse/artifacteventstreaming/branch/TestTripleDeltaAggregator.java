@@ -0,0 +1,116 @@
+package at.jku.isse.artifacteventstreaming.branch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.ontapi.OntModelFactory;
+import org.apache.jena.ontapi.OntSpecification;
+import org.apache.jena.ontapi.model.OntModel;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+class TestTripleDeltaAggregator {
+
+	public static final String baseURI = "http://at.jku.isse.artifacteventstreaming/test/aggregator#";
+
+	@Test
+	void testInverseChangesCancelOut() {
+		OntModel m = OntModelFactory.createModel(OntSpecification.OWL2_DL_MEM);
+		TripleDeltaAggregator aggr = new TripleDeltaAggregator();
+		aggr.registerWithModel(m);
+		Resource res = m.createResource(baseURI+"res1");
+		m.add(res, RDFS.label, "first");
+		m.add(res, RDFS.label, "second");
+		m.remove(res, RDFS.label, m.createLiteral("first"));
+		assertTrue(aggr.hasAdditions());
+		assertFalse(aggr.hasRemovals());
+
+		var added = aggr.retrieveAddedStatements();
+		assertEquals(1, added.size());
+		assertEquals("second", added.iterator().next().getString());
+		assertFalse(aggr.hasAdditions());
+
+		m.remove(res, RDFS.label, m.createLiteral("second"));
+		m.add(res, RDFS.label, "second");
+		assertFalse(aggr.hasAdditions());
+		assertFalse(aggr.hasRemovals());
+	}
+
+	@Test
+	void testInsertionOrderRetained() {
+		OntModel m = OntModelFactory.createModel(OntSpecification.OWL2_DL_MEM_RDFS_INF);
+		TripleDeltaAggregator aggr = new TripleDeltaAggregator();
+		aggr.registerWithModel(m);
+		Resource res = m.createResource(baseURI+"res1");
+		for (int i = 0; i < 1000; i++) {
+			m.add(res, RDFS.label, m.createTypedLiteral(i));
+		}
+		for (int i = 0; i < 1000; i += 2) {
+			m.remove(res, RDFS.label, m.createTypedLiteral(i));
+		}
+		List<Statement> added = new ArrayList<>(aggr.retrieveAddedStatements());
+		assertEquals(500, added.size());
+		for (int i = 0; i < 500; i++) {
+			assertEquals(i*2+1, added.get(i).getInt());
+		}
+		assertTrue(aggr.retrieveRemovedStatements().isEmpty());
+	}
+
+	@Test
+	void testDeltaSetGrowAndCompact() {
+		TripleDeltaSet set = new TripleDeltaSet();
+		List<Triple> triples = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			triples.add(Triple.create(NodeFactory.createURI(baseURI+"s"+(i%7)), RDFS.label.asNode(), NodeFactory.createLiteralString("v"+i)));
+		}
+		for (Triple triple : triples) {
+			assertTrue(set.add(triple));
+			assertFalse(set.add(triple));
+		}
+		for (int i = 0; i < 10000; i += 3) {
+			assertTrue(set.remove(triples.get(i)));
+		}
+		// adding after removal triggers compaction of gaps
+		for (int i = 0; i < 10000; i += 3) {
+			assertTrue(set.add(triples.get(i)));
+		}
+		assertEquals(10000, set.size());
+		triples.forEach(triple -> assertTrue(set.contains(triple)));
+		List<Triple> ordered = new ArrayList<>();
+		set.forEach(ordered::add);
+		assertEquals(triples.get(1), ordered.get(0));
+		assertEquals(triples.get(0), ordered.get(10000-3334));
+		set.clear();
+		assertTrue(set.isEmpty());
+		assertFalse(set.contains(triples.get(1)));
+	}
+
+	@Test
+	void testEnsureCapacityKeepsContentAndOrder() {
+		TripleDeltaSet set = new TripleDeltaSet();
+		Triple first = Triple.create(NodeFactory.createURI(baseURI+"s"), RDFS.label.asNode(), NodeFactory.createLiteralString("first"));
+		Triple second = Triple.create(NodeFactory.createURI(baseURI+"s"), RDFS.label.asNode(), NodeFactory.createLiteralString("second"));
+		set.add(first);
+		set.add(second);
+		set.remove(first);
+		set.ensureCapacity(1000);
+		assertEquals(1, set.size());
+		assertTrue(set.contains(second));
+		assertFalse(set.contains(first));
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(set.add(Triple.create(NodeFactory.createURI(baseURI+"s"), RDFS.label.asNode(), NodeFactory.createLiteralString("v"+i))));
+		}
+		List<Triple> ordered = new ArrayList<>();
+		set.forEach(ordered::add);
+		assertEquals(1001, ordered.size());
+		assertEquals(second, ordered.get(0));
+	}
+}
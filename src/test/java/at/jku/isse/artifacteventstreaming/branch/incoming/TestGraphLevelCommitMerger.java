@@ -0,0 +1,175 @@
+package at.jku.isse.artifacteventstreaming.branch.incoming;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphListener;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.ontapi.OntModelFactory;
+import org.apache.jena.ontapi.OntSpecification;
+import org.apache.jena.ontapi.model.OntModel;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+import at.jku.isse.artifacteventstreaming.api.Branch;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.branch.BranchBuilder;
+import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+import at.jku.isse.artifacteventstreaming.branch.persistence.InMemoryBranchStateCache;
+import at.jku.isse.artifacteventstreaming.branch.persistence.InMemoryEventStore;
+import at.jku.isse.artifacteventstreaming.branch.persistence.StateKeeperImpl;
+import at.jku.isse.artifacteventstreaming.replay.ContainedStatementImpl;
+
+class TestGraphLevelCommitMerger {
+
+	public static final String base = "http://at.jku.isse.artifacteventstreaming/testrepos/graphmerger#";
+	public static final URI repoURI = URI.create(base.substring(0, base.length()-1));
+
+	@Test
+	void testCommitAppliedAsBulkGraphEvents() throws Exception {
+		InMemoryEventStore eventStore = new InMemoryEventStore();
+		StateKeeperImpl stateKeeper = new StateKeeperImpl(BranchBuilder.generateBranchURI(repoURI, "dest"), new InMemoryBranchStateCache(), eventStore);
+		Branch branch = buildBranch(stateKeeper);
+		BulkEventCounter counter = new BulkEventCounter();
+		branch.getModel().getGraph().getEventManager().register(counter);
+		branch.startCommitHandlers(null);
+
+		Model m = ModelFactory.createDefaultModel();
+		Resource res = m.createResource(base+"art");
+		Set<ContainedStatement> added = new LinkedHashSet<>();
+		for (int i = 0; i < 1000; i++) {
+			added.add(new ContainedStatementImpl(m.createStatement(res, RDFS.label, m.createTypedLiteral(i))));
+		}
+		branch.enqueueIncomingCommit(new StatementCommitImpl(base+"source", "Bulk", null, 0, added, Set.of()));
+		Set<ContainedStatement> removed = Set.of(new ContainedStatementImpl(m.createStatement(res, RDFS.label, m.createTypedLiteral(0))));
+		Commit second = new StatementCommitImpl(base+"source", "Removal", null, 1, Set.of(), removed);
+		branch.enqueueIncomingCommit(second);
+
+		long waitUntil = System.currentTimeMillis() + 5000;
+		// merge is marked as finished only after the branch model transaction is committed
+		while (!stateKeeper.getNonMergedCommits().equals(List.of(second)) && System.currentTimeMillis() < waitUntil) {
+			Thread.sleep(10);
+		}
+		List<Commit> mergeCommits = eventStore.loadAllCommits();
+		assertEquals(1000, mergeCommits.get(0).getAdditionCount());
+		assertEquals(1, mergeCommits.get(1).getRemovalCount());
+		assertEquals(second.getCommitId(), mergeCommits.get(1).getCommitId());
+		branch.getDataset().begin(ReadWrite.READ);
+		assertEquals(999, branch.getModel().listStatements(null, RDFS.label, (RDFNode)null).toList().size());
+		branch.getDataset().end();
+		assertEquals(1, counter.addArrays.get());
+		assertEquals(1, counter.deleteArrays.get());
+		assertEquals(0, counter.singleEvents.get());
+		branch.deactivate();
+	}
+
+	@Test
+	void testFallbackToModelWithInference() throws Exception {
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		Branch branch = new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setBranchLocalName("inference")
+				.setModelReasoner(OntSpecification.OWL2_DL_MEM_RDFS_INF)
+				.build();
+		GraphLevelCommitMerger merger = new GraphLevelCommitMerger(branch);
+		Model m = ModelFactory.createDefaultModel();
+		Resource res = m.createResource(base+"art");
+		ContainedStatement stmt = new ContainedStatementImpl(m.createStatement(res, RDFS.label, "label"));
+		branch.getDataset().begin();
+		merger.handleCommit(new StatementCommitImpl(base+"source", "Single", null, 0, Set.of(stmt), Set.of()));
+		assertTrue(branch.getModel().contains(stmt));
+		merger.handleCommit(new StatementCommitImpl(base+"source", "Removal", null, 1, Set.of(), Set.of(stmt)));
+		assertFalse(branch.getModel().contains(stmt));
+		branch.getDataset().abort();
+		branch.getDataset().end();
+	}
+
+	private Branch buildBranch(StateKeeperImpl stateKeeper) throws Exception {
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		Branch branch = new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setBranchLocalName("dest")
+				.setStateKeeper(stateKeeper)
+				.build();
+		branch.appendIncomingCommitMerger(new GraphLevelCommitMerger(branch));
+		return branch;
+	}
+
+	private static class BulkEventCounter implements GraphListener {
+		private final AtomicInteger addArrays = new AtomicInteger();
+		private final AtomicInteger deleteArrays = new AtomicInteger();
+		private final AtomicInteger singleEvents = new AtomicInteger(); // any non array event
+
+		@Override
+		public void notifyAddArray(Graph g, Triple[] triples) {
+			addArrays.incrementAndGet();
+		}
+
+		@Override
+		public void notifyDeleteArray(Graph g, Triple[] triples) {
+			deleteArrays.incrementAndGet();
+		}
+
+		@Override
+		public void notifyAddTriple(Graph g, Triple t) {
+			singleEvents.incrementAndGet();
+		}
+
+		@Override
+		public void notifyDeleteTriple(Graph g, Triple t) {
+			singleEvents.incrementAndGet();
+		}
+
+		@Override
+		public void notifyAddList(Graph g, List<Triple> triples) {
+			singleEvents.incrementAndGet();
+		}
+
+		@Override
+		public void notifyAddIterator(Graph g, Iterator<Triple> it) {
+			singleEvents.incrementAndGet();
+		}
+
+		@Override
+		public void notifyAddGraph(Graph g, Graph added) {
+			singleEvents.incrementAndGet();
+		}
+
+		@Override
+		public void notifyDeleteList(Graph g, List<Triple> L) {
+			singleEvents.incrementAndGet();
+		}
+
+		@Override
+		public void notifyDeleteIterator(Graph g, Iterator<Triple> it) {
+			singleEvents.incrementAndGet();
+		}
+
+		@Override
+		public void notifyDeleteGraph(Graph g, Graph removed) {
+			singleEvents.incrementAndGet();
+		}
+
+		@Override
+		public void notifyEvent(Graph source, Object value) {
+			// not relevant here
+		}
+	}
+}
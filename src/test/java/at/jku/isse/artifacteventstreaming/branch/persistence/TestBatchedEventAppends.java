@@ -0,0 +1,188 @@
+package at.jku.isse.artifacteventstreaming.branch.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+import com.eventstore.dbclient.AppendToStreamOptions;
+import com.eventstore.dbclient.EventData;
+import com.eventstore.dbclient.EventDataBuilder;
+import com.eventstore.dbclient.EventStoreDBClient;
+import com.eventstore.dbclient.ExpectedRevision;
+import com.eventstore.dbclient.WriteResult;
+import com.eventstore.dbclient.WrongExpectedVersionException;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
+import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+import at.jku.isse.artifacteventstreaming.branch.persistence.EventStoreFactory.EventMetaData;
+import at.jku.isse.artifacteventstreaming.branch.persistence.EventStoreFactory.EventStoreImpl;
+import at.jku.isse.artifacteventstreaming.branch.serialization.BinaryCommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.CommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.StatementJsonDeserializer;
+import at.jku.isse.artifacteventstreaming.branch.serialization.StatementJsonSerializer;
+import at.jku.isse.artifacteventstreaming.replay.ContainedStatementImpl;
+
+class TestBatchedEventAppends {
+
+	public static final String branchURI = "http://at.jku.isse.artifacteventstreaming/testrepos/batchedappends/branch/main";
+
+	@Test
+	void testGroupingRespectsMaxAppendSize() {
+		List<EventData> events = List.of(event(400), event(400), event(400), event(2000), event(100));
+		List<List<EventData>> batches = EventStoreImpl.groupIntoAppendBatches(events, 1000 + 2*EventStoreImpl.EVENT_SIZE_OVERHEAD);
+		assertEquals(List.of(2, 1, 1, 1), batches.stream().map(List::size).toList());
+		assertEquals(events, batches.stream().flatMap(List::stream).toList());
+	}
+
+	@Test
+	void testLargeCommitNeedsFewerAppendsThanEvents() throws Exception {
+		List<List<EventData>> appends = new ArrayList<>();
+		EventStoreDBClient client = mockClient(appends);
+		JsonMapper jsonMapper = createMapper();
+		EventStoreImpl store = new EventStoreImpl(branchURI, client, jsonMapper, binaryCodecWithoutBatchEncoder());
+
+		store.appendCommit(createCommit(10*CommitSplitter.STATEMENT_BATCH_SIZE));
+		List<EventData> events = appends.stream().flatMap(List::stream).toList();
+		assertEquals(10, events.size());
+		assertTrue(appends.size() < events.size());
+		// parts of the commit remain in order
+		for (int i = 0; i < events.size(); i++) {
+			EventMetaData metadata = jsonMapper.readValue(events.get(i).getUserMetadata(), EventMetaData.class);
+			assertEquals(i+1, metadata.getBatchId());
+		}
+		for (List<EventData> append : appends) {
+			assertTrue(append.stream().mapToLong(e -> e.getEventData().length + e.getUserMetadata().length).sum() <= EventStoreImpl.MAX_APPEND_SIZE);
+		}
+	}
+
+	@Test
+	void testSmallCommitsAppendedAtOnce() throws Exception {
+		List<List<EventData>> appends = new ArrayList<>();
+		EventStoreImpl store = new EventStoreImpl(branchURI, mockClient(appends), createMapper());
+		store.appendCommits(List.of(createCommit(10), createCommit(20), createCommit(30)));
+		assertEquals(1, appends.size());
+		assertEquals(3, appends.get(0).size());
+	}
+
+	@Test
+	void testChainedBatchesExpectRevisionOfPreviousBatch() throws Exception {
+		List<List<EventData>> appends = new ArrayList<>();
+		List<ExpectedRevision> expectedRevisions = new ArrayList<>();
+		EventStoreDBClient client = mockClient(appends, expectedRevisions);
+		EventStoreImpl store = new EventStoreImpl(branchURI, client, createMapper(), binaryCodecWithoutBatchEncoder());
+		store.appendCommit(createCommit(10*CommitSplitter.STATEMENT_BATCH_SIZE));
+		assertTrue(appends.size() > 1);
+		assertEquals(ExpectedRevision.any(), expectedRevisions.get(0));
+		long lastRevision = -1;
+		for (int i = 1; i < appends.size(); i++) {
+			lastRevision += appends.get(i-1).size();
+			assertEquals(ExpectedRevision.expectedRevision(lastRevision), expectedRevisions.get(i));
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void testConcurrentAppendBetweenBatchesFailsAppend() throws Exception {
+		EventStoreDBClient client = mock(EventStoreDBClient.class);
+		WriteResult firstResult = mock(WriteResult.class);
+		when(firstResult.getNextExpectedRevision()).thenReturn(ExpectedRevision.expectedRevision(0));
+		when(client.appendToStream(eq(branchURI), any(AppendToStreamOptions.class), any(Iterator.class)))
+			.thenReturn(CompletableFuture.completedFuture(firstResult))
+			.thenReturn(CompletableFuture.failedFuture(mock(WrongExpectedVersionException.class)));
+		EventStoreImpl store = new EventStoreImpl(branchURI, client, createMapper(), binaryCodecWithoutBatchEncoder());
+		assertThrows(PersistenceException.class, () -> store.appendCommit(createCommit(10*CommitSplitter.STATEMENT_BATCH_SIZE)));
+		verify(client, times(2)).appendToStream(eq(branchURI), any(AppendToStreamOptions.class), any(Iterator.class)); // no further batches
+	}
+
+	private EventStoreDBClient mockClient(List<List<EventData>> appends) {
+		return mockClient(appends, new ArrayList<>());
+	}
+
+	@SuppressWarnings("unchecked")
+	private EventStoreDBClient mockClient(List<List<EventData>> appends, List<ExpectedRevision> expectedRevisions) {
+		EventStoreDBClient client = mock(EventStoreDBClient.class);
+		when(client.appendToStream(eq(branchURI), any(AppendToStreamOptions.class), any(Iterator.class))).thenAnswer(invocation -> {
+			expectedRevisions.add(getExpectedRevision(invocation.getArgument(1)));
+			List<EventData> batch = new ArrayList<>();
+			((Iterator<EventData>) invocation.getArgument(2)).forEachRemaining(batch::add);
+			appends.add(batch);
+			long lastRevision = appends.stream().mapToLong(List::size).sum() - 1;
+			WriteResult result = mock(WriteResult.class);
+			when(result.getNextExpectedRevision()).thenReturn(ExpectedRevision.expectedRevision(lastRevision));
+			return CompletableFuture.completedFuture(result);
+		});
+		return client;
+	}
+
+	private static ExpectedRevision getExpectedRevision(AppendToStreamOptions options) throws Exception {
+		Method getter = options.getClass().getSuperclass().getDeclaredMethod("getExpectedRevision"); // not public in the client
+		getter.setAccessible(true);
+		return (ExpectedRevision) getter.invoke(options);
+	}
+
+	/**
+	 * binary events of STATEMENT_BATCH_SIZE statements are small enough for several to fit into one append
+	 */
+	private CommitCodec binaryCodecWithoutBatchEncoder() {
+		BinaryCommitCodec binaryCodec = new BinaryCommitCodec();
+		return new CommitCodec() {
+			@Override
+			public String getFormat() {
+				return binaryCodec.getFormat();
+			}
+			@Override
+			public byte[] encode(Commit commit) throws IOException {
+				return binaryCodec.encode(commit);
+			}
+			@Override
+			public Commit decode(byte[] payload) throws IOException {
+				return binaryCodec.decode(payload);
+			}
+		};
+	}
+
+	private JsonMapper createMapper() {
+		JsonMapper jsonMapper = new JsonMapper();
+		StatementJsonSerializer.registerSerializationModule(jsonMapper);
+		StatementJsonDeserializer.registerDeserializationModule(jsonMapper);
+		return jsonMapper;
+	}
+
+	private EventData event(int size) {
+		return EventDataBuilder.binary("TestType", new byte[size]).metadataAsBytes(new byte[0]).build();
+	}
+
+	private Commit createCommit(int stmtCount) {
+		Model m = ModelFactory.createDefaultModel();
+		Set<ContainedStatement> added = new LinkedHashSet<>();
+		for (int i = 0; i < stmtCount; i++) {
+			Resource res = m.createResource("http://x/r"+i);
+			added.add(new ContainedStatementImpl(m.createStatement(res, RDFS.label, m.createTypedLiteral(i))));
+		}
+		return new StatementCommitImpl(branchURI, "Commit with "+stmtCount, null, 0, added, Set.of());
+	}
+}
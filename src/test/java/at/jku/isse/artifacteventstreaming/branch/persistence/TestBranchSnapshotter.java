@@ -0,0 +1,123 @@
+package at.jku.isse.artifacteventstreaming.branch.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.jena.ontapi.OntModelFactory;
+import org.apache.jena.ontapi.OntSpecification;
+import org.apache.jena.ontapi.model.OntModel;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import at.jku.isse.artifacteventstreaming.api.Branch;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.branch.BranchBuilder;
+
+class TestBranchSnapshotter {
+
+	public static final String base = "http://at.jku.isse.artifacteventstreaming/testrepos/snapshots#";
+	public static final URI repoURI = URI.create(base.substring(0, base.length()-1));
+
+	@TempDir
+	Path snapshotDir;
+
+	@Test
+	void testRestoreFromSnapshotAndReplayLaterCommits() throws Exception {
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		InMemoryEventStore eventStore = new InMemoryEventStore();
+		InMemoryBranchStateCache cache = new InMemoryBranchStateCache();
+		URI branchURI = BranchBuilder.generateBranchURI(repoURI, "main");
+
+		StateKeeperImpl stateKeeper = new StateKeeperImpl(branchURI, cache, eventStore);
+		Branch branch = new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setStateKeeper(stateKeeper)
+				.build();
+		stateKeeper.loadState();
+		BranchSnapshotter snapshotter = new BranchSnapshotter(branch, snapshotDir, 5);
+		assertEquals(0, snapshotter.restore()); // nothing to restore yet
+		branch.appendOutgoingCommitDistributer(snapshotter);
+		branch.startCommitHandlers(null);
+		OntModel model = branch.getModel();
+		Resource art = model.createResource(base+"art1");
+		for (int i = 0; i < 12; i++) {
+			branch.getDataset().begin();
+			model.add(art, RDFS.label, model.createTypedLiteral(i));
+			branch.commitChanges("Commit"+i);
+		}
+		branch.getDataset().begin();
+		model.remove(art, RDFS.label, model.createTypedLiteral(0));
+		Commit last = branch.commitChanges("Removal");
+		long waitUntil = System.currentTimeMillis() + 5000;
+		while (!stateKeeper.getNonForwardedCommits().isEmpty() && System.currentTimeMillis() < waitUntil) {
+			Thread.sleep(10);
+		}
+		snapshotter.shutdown();
+		branch.deactivate();
+		assertTrue(snapshotter.findNewestSnapshot().isPresent());
+
+		// restart with an empty in-memory dataset
+		StateKeeperImpl stateKeeper2 = new StateKeeperImpl(branchURI, cache, eventStore);
+		Branch branch2 = new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setStateKeeper(stateKeeper2)
+				.build();
+		stateKeeper2.loadState();
+		BranchSnapshotter snapshotter2 = new BranchSnapshotter(branch2, snapshotDir, 5);
+		int replayed = snapshotter2.restore();
+		// snapshot after 10 commits, thus only the last three are replayed
+		assertEquals(3, replayed);
+		branch2.getDataset().begin(ReadWrite.READ);
+		assertEquals(11, branch2.getModel().listStatements(art, RDFS.label, (RDFNode)null).toList().size());
+		assertFalse(branch2.getModel().contains(art, RDFS.label, branch2.getModel().createTypedLiteral(0)));
+		branch2.getDataset().end();
+		assertEquals(last, stateKeeper2.getLastCommit().get());
+		assertEquals(0, snapshotter2.restore()); // model not empty anymore
+	}
+
+	@Test
+	void testRestoreFullHistoryWithoutSnapshot() throws Exception {
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		InMemoryEventStore eventStore = new InMemoryEventStore();
+		InMemoryBranchStateCache cache = new InMemoryBranchStateCache();
+		URI branchURI = BranchBuilder.generateBranchURI(repoURI, "nosnapshot");
+		StateKeeperImpl stateKeeper = new StateKeeperImpl(branchURI, cache, eventStore);
+		Branch branch = new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setBranchLocalName("nosnapshot")
+				.setStateKeeper(stateKeeper)
+				.build();
+		branch.startCommitHandlers(null);
+		OntModel model = branch.getModel();
+		Resource art = model.createResource(base+"art2");
+		for (int i = 0; i < 3; i++) {
+			branch.getDataset().begin();
+			model.add(art, RDFS.label, model.createTypedLiteral(i));
+			branch.commitChanges("Commit"+i);
+		}
+		branch.deactivate();
+
+		StateKeeperImpl stateKeeper2 = new StateKeeperImpl(branchURI, cache, eventStore);
+		Branch branch2 = new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setBranchLocalName("nosnapshot")
+				.setStateKeeper(stateKeeper2)
+				.build();
+		stateKeeper2.loadState();
+		BranchSnapshotter snapshotter = new BranchSnapshotter(branch2, snapshotDir, 5);
+		assertEquals(3, snapshotter.restore());
+		branch2.getDataset().begin(ReadWrite.READ);
+		assertEquals(List.of(0, 1, 2), branch2.getModel().listStatements(art, RDFS.label, (RDFNode)null)
+				.mapWith(stmt -> stmt.getInt()).toList().stream().sorted().toList());
+		branch2.getDataset().end();
+	}
+}
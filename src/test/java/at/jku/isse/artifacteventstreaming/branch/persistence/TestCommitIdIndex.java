@@ -0,0 +1,52 @@
+package at.jku.isse.artifacteventstreaming.branch.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+class TestCommitIdIndex {
+
+	@Test
+	void testSequenceNumberLookup() {
+		CommitIdIndex index = new CommitIdIndex();
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 100000; i++) {
+			String id = UUID.randomUUID().toString();
+			ids.add(id);
+			assertEquals(i, index.append(id));
+		}
+		assertEquals(100000, index.size());
+		for (int i = 0; i < ids.size(); i += 7) {
+			assertEquals(i, index.indexOf(ids.get(i)));
+			assertEquals(ids.get(i), index.get(i));
+		}
+		assertEquals(-1, index.indexOf(UUID.randomUUID().toString()));
+		assertFalse(index.contains(null));
+	}
+
+	@Test
+	void testNonUUIDIds() {
+		CommitIdIndex index = new CommitIdIndex();
+		String upperCaseUUID = UUID.randomUUID().toString().toUpperCase();
+		index.append("commit1");
+		index.append(upperCaseUUID);
+		String uuid = UUID.randomUUID().toString();
+		index.append(uuid);
+		index.append("commit1"); // duplicates keep their first position
+		assertEquals(4, index.size());
+		assertEquals(0, index.indexOf("commit1"));
+		assertEquals(1, index.indexOf(upperCaseUUID));
+		assertEquals(-1, index.indexOf(upperCaseUUID.toLowerCase()));
+		assertEquals(2, index.indexOf(uuid));
+		assertEquals(upperCaseUUID, index.get(1));
+		assertEquals("commit1", index.get(3));
+		assertTrue(CommitIdIndex.isCanonicalUUID(uuid));
+		assertFalse(CommitIdIndex.isCanonicalUUID(upperCaseUUID));
+	}
+}
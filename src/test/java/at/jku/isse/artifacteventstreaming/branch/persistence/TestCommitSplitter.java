@@ -0,0 +1,96 @@
+package at.jku.isse.artifacteventstreaming.branch.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+import at.jku.isse.artifacteventstreaming.branch.serialization.BinaryCommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.CommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.JsonCommitCodec;
+import at.jku.isse.artifacteventstreaming.branch.serialization.StatementJsonDeserializer;
+import at.jku.isse.artifacteventstreaming.branch.serialization.StatementJsonSerializer;
+import at.jku.isse.artifacteventstreaming.replay.ContainedStatementImpl;
+
+class TestCommitSplitter {
+
+	public static final String baseURI = "http://at.jku.isse.artifacteventstreaming/test/splitter#";
+	private static final int LITERAL_SIZE = 10000;
+
+	@Test
+	void testJsonSplitIntoFullBatches() throws IOException {
+		JsonMapper jsonMapper = new JsonMapper();
+		StatementJsonSerializer.registerSerializationModule(jsonMapper);
+		StatementJsonDeserializer.registerDeserializationModule(jsonMapper);
+		assertSplitAndJoin(new JsonCommitCodec(jsonMapper));
+	}
+
+	@Test
+	void testBinarySplitIntoFullBatches() throws IOException {
+		assertSplitAndJoin(new BinaryCommitCodec());
+	}
+
+	@Test
+	void testEmptyCommitResultsInSingleEvent() {
+		Commit commit = new StatementCommitImpl(baseURI+"branch", "empty", null, 0, Set.of(), Set.of());
+		assertEquals(1, new CommitSplitter(new BinaryCommitCodec()).split(commit).count());
+	}
+
+	private void assertSplitAndJoin(CommitCodec codec) throws IOException {
+		Commit commit = createCommit(250, 100);
+		CommitSplitter splitter = new CommitSplitter(codec);
+		List<byte[]> payloads = splitter.split(commit).toList();
+		assertTrue(splitter.isSinglePass());
+		assertEquals(0, splitter.getResplitCounter());
+		// 350 statements with 10KB literals each need at least 4 events, and batches are filled up to the limit
+		assertEquals(4, payloads.size());
+		for (int i = 0; i < payloads.size(); i++) {
+			assertTrue(payloads.get(i).length <= CommitSplitter.MAX_PAYLOAD_SIZE);
+			if (i < payloads.size()-1) {
+				assertTrue(payloads.get(i).length > CommitSplitter.MAX_PAYLOAD_SIZE - 2*LITERAL_SIZE);
+			}
+		}
+		CommitJoiner joiner = new CommitJoiner();
+		for (byte[] payload : payloads) {
+			Commit part = codec.decode(payload);
+			assertEquals(commit.getCommitId(), part.getCommitId());
+			assertEquals(commit.getCommitMessage(), part.getCommitMessage());
+			assertEquals(commit.getPrecedingCommitId(), part.getPrecedingCommitId());
+			joiner.addCommit(part);
+		}
+		Commit joined = joiner.join();
+		assertEquals(commit.getAddedStatementsAsSet(), joined.getAddedStatementsAsSet());
+		assertEquals(commit.getRemovedStatementsAsSet(), joined.getRemovedStatementsAsSet());
+	}
+
+	private Commit createCommit(int addedCount, int removedCount) {
+		Model m = ModelFactory.createDefaultModel();
+		String largeValue = "x".repeat(LITERAL_SIZE);
+		Set<ContainedStatement> added = new LinkedHashSet<>();
+		Set<ContainedStatement> removed = new LinkedHashSet<>();
+		for (int i = 0; i < addedCount+removedCount; i++) {
+			Resource res = m.createResource(baseURI+"res"+i);
+			var stmt = new ContainedStatementImpl(m.createStatement(res, RDFS.comment, m.createLiteral(i+largeValue)));
+			if (i < addedCount) {
+				added.add(stmt);
+			} else {
+				removed.add(stmt);
+			}
+		}
+		return new StatementCommitImpl(baseURI+"branch", "c-1", "Large values", "c-0", 1234L, added, removed);
+	}
+}
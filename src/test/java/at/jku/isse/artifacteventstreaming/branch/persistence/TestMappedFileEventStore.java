@@ -0,0 +1,128 @@
+package at.jku.isse.artifacteventstreaming.branch.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.CommitDeliveryEvent;
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+import at.jku.isse.artifacteventstreaming.branch.persistence.MappedFileEventStore.FsyncPolicy;
+import at.jku.isse.artifacteventstreaming.branch.serialization.BinaryCommitCodec;
+import at.jku.isse.artifacteventstreaming.replay.ContainedStatementImpl;
+
+class TestMappedFileEventStore {
+
+	public static final String branchURI = "http://at.jku.isse.artifacteventstreaming/testrepos/filestore/branch/main";
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testPersistAndReopen() throws Exception {
+		List<Commit> commits = new ArrayList<>();
+		try (FileEventStoreFactory factory = new FileEventStoreFactory(tempDir, 4096, FsyncPolicy.PER_GROUP, 0, null)) {
+			MappedFileEventStore store = factory.getEventStore(branchURI);
+			for (int i = 0; i < 5; i++) {
+				commits.add(createCommit(i, 20));
+			}
+			store.appendCommit(commits.get(0));
+			store.appendCommits(commits.subList(1, 5));
+			for (Commit commit : commits) {
+				store.appendCommitDelivery(new CommitDeliveryEvent(commit.getCommitId(), commit, "otherBranch", branchURI));
+			}
+		}
+		try (FileEventStoreFactory factory = new FileEventStoreFactory(tempDir, 4096, FsyncPolicy.PER_GROUP, 0, null)) {
+			MappedFileEventStore store = factory.getEventStore(branchURI);
+			List<Commit> loaded = store.loadAllCommits();
+			assertEquals(commits.stream().map(Commit::getCommitId).toList(), loaded.stream().map(Commit::getCommitId).toList());
+			assertEquals(commits.get(3).getAddedStatementsAsSet(), loaded.get(3).getAddedStatementsAsSet());
+
+			List<String> ids = new ArrayList<>();
+			store.forEachCommitId(ids::add);
+			assertEquals(loaded.stream().map(Commit::getCommitId).toList(), ids);
+			assertEquals(ids.subList(2, 4), store.loadCommits(2, 2).stream().map(Commit::getCommitId).toList());
+			assertEquals(ids.get(4), store.loadCommit(ids.get(4)).getCommitId());
+			assertNull(store.loadCommit("unknown"));
+
+			assertEquals(5, store.loadAllIncomingCommitsForBranchFromCommitIdOnward(null).size());
+			assertEquals(ids.subList(2, 5), store.loadAllIncomingCommitsForBranchFromCommitIdOnward(ids.get(1)).stream().map(Commit::getCommitId).toList());
+
+			factory.removeBranchEventData(branchURI);
+			assertTrue(factory.getEventStore(branchURI).loadAllCommits().isEmpty());
+		}
+	}
+
+	@Test
+	void testSegmentRollOverAndOversizedCommit() throws Exception {
+		try (FileEventStoreFactory factory = new FileEventStoreFactory(tempDir, 4096, FsyncPolicy.PERIODIC, 10, new BinaryCommitCodec())) {
+			MappedFileEventStore store = factory.getEventStore(branchURI);
+			for (int i = 0; i < 20; i++) {
+				store.appendCommit(createCommit(i, i == 10 ? 2000 : 10)); // one commit larger than a segment
+			}
+		}
+		try (FileEventStoreFactory factory = new FileEventStoreFactory(tempDir, 4096, FsyncPolicy.PER_COMMIT, 0, null)) {
+			MappedFileEventStore store = factory.getEventStore(branchURI);
+			List<Commit> loaded = store.loadAllCommits();
+			assertEquals(20, loaded.size());
+			assertEquals(2000, loaded.get(10).getAdditionCount());
+			assertEquals(9, store.loadCommits(11, 100).size());
+			// different codec for writing, existing binary commits remain readable
+			store.appendCommit(createCommit(20, 1));
+			assertEquals(21, store.loadAllCommits().size());
+		}
+	}
+
+	@Test
+	void testTornRecordIsDiscarded() throws Exception {
+		long lastPos;
+		try (SegmentedLog log = new SegmentedLog(tempDir, "test", 4096)) {
+			log.append("r1", "raw", "first".getBytes(StandardCharsets.UTF_8));
+			log.append("r2", "raw", "second".getBytes(StandardCharsets.UTF_8));
+			lastPos = log.append("r3", "raw", "third".getBytes(StandardCharsets.UTF_8));
+		}
+		try (RandomAccessFile file = new RandomAccessFile(tempDir.resolve("test-00000.seg").toFile(), "rw")) {
+			file.seek((int) lastPos + 12);
+			file.write(0x7F); // corrupt within the body of the last record
+		}
+		try (SegmentedLog log = new SegmentedLog(tempDir, "test", 4096)) {
+			assertEquals(List.of("r1", "r2"), keys(log));
+			log.append("r4", "raw", "fourth".getBytes(StandardCharsets.UTF_8));
+		}
+		try (SegmentedLog log = new SegmentedLog(tempDir, "test", 4096)) {
+			assertEquals(List.of("r1", "r2", "r4"), keys(log));
+		}
+	}
+
+	private List<String> keys(SegmentedLog log) {
+		List<String> keys = new ArrayList<>();
+		for (long pos = log.first(); pos >= 0; pos = log.next(pos)) {
+			keys.add(log.read(pos).getKey());
+		}
+		return keys;
+	}
+
+	private Commit createCommit(int nr, int stmtCount) {
+		Model m = ModelFactory.createDefaultModel();
+		Set<ContainedStatement> added = new LinkedHashSet<>();
+		for (int i = 0; i < stmtCount; i++) {
+			added.add(new ContainedStatementImpl(m.createStatement(m.createResource(branchURI+"#res"+i), RDFS.label, m.createTypedLiteral(nr))));
+		}
+		return new StatementCommitImpl(branchURI, "Commit "+nr, null, nr, added, Set.of());
+	}
+}
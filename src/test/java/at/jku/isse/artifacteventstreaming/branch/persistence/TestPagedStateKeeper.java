@@ -0,0 +1,121 @@
+package at.jku.isse.artifacteventstreaming.branch.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
+import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+
+class TestPagedStateKeeper {
+
+	public static URI branchURI = URI.create("http://at.jku.isse.artifacteventstreaming/testrepos/paged/branch/main");
+
+	@Test
+	void testOnlyIdsAndLastCommitLoadedEagerly() throws Exception {
+		CountingEventStore eventStore = new CountingEventStore();
+		List<Commit> commits = createCommits(eventStore, 1000);
+
+		StateKeeperImpl stateKeeper = new StateKeeperImpl(branchURI, new InMemoryBranchStateCache(), eventStore, 100);
+		stateKeeper.loadState();
+		assertEquals(0, eventStore.loadAllCounter);
+		assertEquals(1, eventStore.loadedCommitsCounter);
+		assertEquals(commits.get(999), stateKeeper.getLastCommit().get());
+		assertTrue(stateKeeper.hasSeenCommit(commits.get(0)));
+
+		List<Commit> forward = stateKeeper.getCommitsForwardIncludingFrom(commits.get(900).getCommitId());
+		assertEquals(100, forward.size());
+		assertEquals(commits.subList(900, 1000), new ArrayList<>(forward));
+		assertEquals(commits, new ArrayList<>(stateKeeper.getHistory()));
+		// pagewise fetching, not one access per commit
+		assertTrue(eventStore.loadCommitsCounter <= 1 + 1000/50 + 100/50 + 1);
+		assertEquals(0, eventStore.loadAllCounter);
+	}
+
+	@Test
+	void testNewCommitsAppendedToPagedHistory() throws Exception {
+		CountingEventStore eventStore = new CountingEventStore();
+		List<Commit> commits = createCommits(eventStore, 10);
+		InMemoryBranchStateCache cache = new InMemoryBranchStateCache();
+		StateKeeperImpl stateKeeper = new StateKeeperImpl(branchURI, cache, eventStore, 4);
+		stateKeeper.loadState();
+
+		Commit next = new StatementCommitImpl(branchURI.toString(), "Commit10", commits.get(9).getCommitId(), 0);
+		stateKeeper.beforeServices(next);
+		stateKeeper.afterServices(next);
+		commits.add(next);
+		assertEquals(next, stateKeeper.getLastCommit().get());
+		assertEquals(commits, new ArrayList<>(stateKeeper.getHistory()));
+
+		stateKeeper.afterForwarded(commits.get(7));
+		assertEquals(commits.subList(8, 11), new ArrayList<>(stateKeeper.getNonForwardedCommits()));
+		// same view as when keeping all commits in memory
+		StateKeeperImpl inMemoryKeeper = new StateKeeperImpl(branchURI, cache, eventStore);
+		inMemoryKeeper.loadState();
+		assertEquals(commits, inMemoryKeeper.getHistory());
+		assertEquals(commits.subList(8, 11), inMemoryKeeper.getNonForwardedCommits());
+	}
+
+	@Test
+	void testDeferredCommitsNotEvictedBeforePersisted() throws Exception {
+		CountingEventStore eventStore = new CountingEventStore();
+		List<Commit> commits = createCommits(eventStore, 3);
+		StateKeeperImpl stateKeeper = new StateKeeperImpl(branchURI, new InMemoryBranchStateCache(), eventStore, 4);
+		stateKeeper.loadState();
+
+		List<Commit> group = new ArrayList<>();
+		String precedingId = commits.get(2).getCommitId();
+		for (int i = 3; i < 13; i++) { // group larger than the commit cache
+			Commit commit = new StatementCommitImpl(branchURI.toString(), "Commit"+i, precedingId, 0);
+			stateKeeper.beforeServices(commit);
+			stateKeeper.afterServicesDeferred(commit);
+			group.add(commit);
+			precedingId = commit.getCommitId();
+		}
+		commits.addAll(group);
+		assertEquals(commits, new ArrayList<>(stateKeeper.getHistory()));
+		assertEquals(group, new ArrayList<>(stateKeeper.getCommitsForwardIncludingFrom(group.get(0).getCommitId())));
+
+		stateKeeper.afterServices(group);
+		assertEquals(commits, new ArrayList<>(stateKeeper.getHistory()));
+	}
+
+	private List<Commit> createCommits(InMemoryEventStore eventStore, int count) throws PersistenceException {
+		List<Commit> commits = new ArrayList<>();
+		String precedingId = "";
+		for (int i = 0; i < count; i++) {
+			Commit commit = new StatementCommitImpl(branchURI.toString(), "Commit"+i, precedingId, 0);
+			eventStore.appendCommit(commit);
+			commits.add(commit);
+			precedingId = commit.getCommitId();
+		}
+		return commits;
+	}
+
+	private static class CountingEventStore extends InMemoryEventStore {
+
+		int loadAllCounter = 0;
+		int loadCommitsCounter = 0;
+		int loadedCommitsCounter = 0;
+
+		@Override
+		public List<Commit> loadAllCommits() throws PersistenceException {
+			loadAllCounter++;
+			return super.loadAllCommits();
+		}
+
+		@Override
+		public List<Commit> loadCommits(long fromSequenceNr, int maxCount) throws PersistenceException {
+			loadCommitsCounter++;
+			List<Commit> commits = super.loadCommits(fromSequenceNr, maxCount);
+			loadedCommitsCounter += commits.size();
+			return commits;
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package at.jku.isse.artifacteventstreaming.branch.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rocksdb.TickerType;
+
+import at.jku.isse.artifacteventstreaming.api.BranchStateCache;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.CommitDeliveryEvent;
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.api.PerBranchEventStore;
+import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+import at.jku.isse.artifacteventstreaming.branch.persistence.RocksDBFactory.TuningProfile;
+import at.jku.isse.artifacteventstreaming.branch.serialization.BinaryCommitCodec;
+import at.jku.isse.artifacteventstreaming.replay.ContainedStatementImpl;
+
+class TestRocksDbEventStore {
+
+	public static final String branchURI = "http://at.jku.isse.artifacteventstreaming/testrepos/rocksstore/branch/main";
+	public static final String otherBranchURI = "http://at.jku.isse.artifacteventstreaming/testrepos/rocksstore/branch/other";
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testPersistAndReopen() throws Exception {
+		List<Commit> commits = new ArrayList<>();
+		RocksDBFactory factory = new RocksDBFactory(tempDir.toString());
+		PerBranchEventStore store = factory.getEventStore(branchURI);
+		for (int i = 0; i < 5; i++) {
+			commits.add(createCommit(i, 20));
+		}
+		store.appendCommit(commits.get(0));
+		store.appendCommits(commits.subList(1, 5));
+		factory.getEventStore(otherBranchURI, new BinaryCommitCodec()).appendCommit(createCommit(99, 1));
+		for (Commit commit : commits) {
+			store.appendCommitDelivery(new CommitDeliveryEvent(commit.getCommitId(), commit, otherBranchURI, branchURI));
+		}
+		factory.closeCache();
+
+		factory = new RocksDBFactory(tempDir.toString());
+		RocksDbEventStore reopened = (RocksDbEventStore) factory.getEventStore(branchURI);
+		List<Commit> loaded = reopened.loadAllCommits();
+		assertEquals(commits.stream().map(Commit::getCommitId).toList(), loaded.stream().map(Commit::getCommitId).toList());
+		assertEquals(commits.get(3).getAddedStatementsAsSet(), loaded.get(3).getAddedStatementsAsSet());
+
+		List<String> ids = new ArrayList<>();
+		reopened.forEachCommitId(ids::add);
+		assertEquals(loaded.stream().map(Commit::getCommitId).toList(), ids);
+		assertEquals(ids.subList(2, 4), reopened.loadCommits(2, 2).stream().map(Commit::getCommitId).toList());
+		assertEquals(ids.get(4), reopened.loadCommit(ids.get(4)).getCommitId());
+		assertNull(reopened.loadCommit("unknown"));
+
+		assertEquals(5, reopened.loadAllIncomingCommitsForBranchFromCommitIdOnward(null).size());
+		assertEquals(ids.subList(2, 5), reopened.loadAllIncomingCommitsForBranchFromCommitIdOnward(ids.get(1)).stream().map(Commit::getCommitId).toList());
+		assertEquals(1, factory.getEventStore(otherBranchURI).loadAllCommits().size());
+
+		// appending continues after the persisted commits
+		reopened.appendCommit(createCommit(5, 1));
+		assertEquals(6, reopened.loadAllCommits().size());
+
+		factory.getCache(branchURI).put("lastCommit", ids.get(4));
+		factory.getCache(otherBranchURI).put("lastCommit", "other");
+		factory.removeBranchEventData(branchURI);
+		assertTrue(factory.getEventStore(branchURI).loadAllCommits().isEmpty());
+		assertNull(factory.getCache(branchURI).get("lastCommit"));
+		assertEquals(1, factory.getEventStore(otherBranchURI).loadAllCommits().size());
+		assertEquals("other", factory.getCache(otherBranchURI).get("lastCommit"));
+		// closing releases all native resources, the same factory reopens the database upon next access
+		factory.closeCache();
+		assertEquals("other", factory.getCache(otherBranchURI).get("lastCommit"));
+		factory.clearAndCloseCache();
+	}
+
+	@Test
+	void testCommitsAndCacheEntriesInOneBatch() throws Exception {
+		RocksDBFactory factory = new RocksDBFactory(tempDir.toString());
+		BranchStateCache cache = factory.getCache();
+		PerBranchEventStore store = factory.getEventStore(branchURI);
+		Commit commit = createCommit(0, 5);
+		store.appendCommitsAndCacheEntries(List.of(commit), cache, Map.of(branchURI+"lastCommit", commit.getCommitId()));
+		factory.closeCache();
+
+		factory = new RocksDBFactory(tempDir.toString());
+		assertEquals(commit.getCommitId(), factory.getCache().get(branchURI+"lastCommit"));
+		assertEquals(commit.getCommitId(), factory.getEventStore(branchURI).loadAllCommits().get(0).getCommitId());
+		factory.clearAndCloseCache();
+	}
+
+	@Test
+	void testBranchCacheInOwnColumnFamily() throws Exception {
+		RocksDBFactory factory = new RocksDBFactory(tempDir.toString(), true, false);
+		BranchStateCache sharedCache = factory.getCache();
+		sharedCache.put("legacyKey"+branchURI, "legacyValue"); // as written prior to branch column families
+		BranchStateCache branchCache = sharedCache.forBranch(branchURI);
+		branchCache.putAll(Map.of("key", "value"));
+		assertEquals("value", branchCache.get("key"));
+		assertEquals("legacyValue", branchCache.get("legacyKey"));
+		assertNull(sharedCache.get("key"+branchURI));
+		assertNull(factory.getCache(otherBranchURI).get("key"));
+
+		Commit commit = createCommit(0, 1);
+		factory.getEventStore(branchURI).appendCommitsAndCacheEntries(List.of(commit), branchCache, Map.of("lastCommit", commit.getCommitId()));
+		factory.closeCache();
+
+		factory = new RocksDBFactory(tempDir.toString());
+		assertEquals(commit.getCommitId(), factory.getCache(branchURI).get("lastCommit"));
+		factory.clearAndCloseCache();
+	}
+
+	@Test
+	void testTuningProfilesAndStatistics() throws Exception {
+		for (TuningProfile profile : TuningProfile.values()) {
+			String path = tempDir.resolve(profile.name()).toString();
+			RocksDBFactory factory = new RocksDBFactory(path, false, false, profile, true);
+			PerBranchEventStore store = factory.getEventStore(branchURI);
+			BranchStateCache cache = factory.getCache(branchURI);
+			Commit commit = createCommit(0, 10);
+			store.appendCommitsAndCacheEntries(List.of(commit), cache, Map.of("lastCommit", commit.getCommitId()));
+			factory.closeCache();
+
+			factory = new RocksDBFactory(path, false, false, profile, true);
+			assertEquals(commit.getCommitId(), factory.getCache(branchURI).get("lastCommit"));
+			assertEquals(1, factory.getEventStore(branchURI).loadAllCommits().size());
+			assertTrue(factory.getTickerCount(TickerType.NUMBER_KEYS_READ) > 0);
+			assertTrue(factory.getStatistics().contains("rocksdb.number.keys.read"));
+			Map<String, Long> metrics = factory.getMetrics();
+			assertTrue(metrics.get("rocksdb.estimate-num-keys") >= 3); // cache entry, commit, commit id
+			assertTrue(metrics.containsKey(RocksDBFactory.BLOCK_CACHE_USAGE_METRIC));
+			factory.clearAndCloseCache();
+		}
+		assertEquals(-1, new RocksDBFactory(tempDir.resolve("nostats").toString()).getTickerCount(TickerType.NUMBER_KEYS_READ));
+	}
+
+	private Commit createCommit(int nr, int stmtCount) {
+		Model m = ModelFactory.createDefaultModel();
+		Set<ContainedStatement> added = new LinkedHashSet<>();
+		for (int i = 0; i < stmtCount; i++) {
+			added.add(new ContainedStatementImpl(m.createStatement(m.createResource(branchURI+"#res"+i), RDFS.label, m.createTypedLiteral(nr))));
+		}
+		return new StatementCommitImpl(branchURI, "Commit "+nr, null, nr, added, Set.of());
+	}
+}
@@ -0,0 +1,140 @@
+package at.jku.isse.artifacteventstreaming.branch.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import at.jku.isse.artifacteventstreaming.api.BranchStateCache;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
+import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+
+class TestWriteBehindBranchStateCache {
+
+	@Test
+	void testOverwritesAreCoalescedUntilFlush() throws Exception {
+		InMemoryBranchStateCache delegate = spy(new InMemoryBranchStateCache());
+		try (WriteBehindBranchStateCache cache = new WriteBehindBranchStateCache(delegate, 60000)) {
+			for (int i = 0; i < 10; i++) {
+				cache.put("lastForwarded", "commit"+i);
+			}
+			cache.putAll(Map.of("a", "1", "b", "2"));
+			assertEquals("commit9", cache.get("lastForwarded"));
+			assertNull(delegate.get("lastForwarded"));
+			assertEquals(3, cache.getPendingCount());
+
+			cache.flush();
+			assertEquals(0, cache.getPendingCount());
+			assertEquals("commit9", delegate.get("lastForwarded"));
+			verify(delegate, times(1)).putAll(Map.of("lastForwarded", "commit9", "a", "1", "b", "2"));
+			verify(delegate, never()).put(any(), any());
+
+			cache.flush(); // nothing pending, no write
+			verify(delegate, times(1)).putAll(any());
+		}
+	}
+
+	@Test
+	void testBackgroundFlushAndReadThrough() throws Exception {
+		InMemoryBranchStateCache delegate = new InMemoryBranchStateCache();
+		delegate.put("existing", "value");
+		try (WriteBehindBranchStateCache cache = new WriteBehindBranchStateCache(delegate, 10)) {
+			assertEquals("value", cache.get("existing"));
+			BranchStateCache branchView = cache.forBranch("branch1");
+			branchView.put("key", "value1");
+			long deadline = System.currentTimeMillis() + 5000;
+			while (delegate.get("keybranch1") == null && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals("value1", delegate.get("keybranch1"));
+		}
+	}
+
+	@Test
+	void testBranchViewsShareFlushThread() throws Exception {
+		InMemoryBranchStateCache delegate = new InMemoryBranchStateCache();
+		try (WriteBehindBranchStateCache cache = new WriteBehindBranchStateCache(delegate, 10)) {
+			long flushThreadsBefore = countFlushThreads();
+			for (int i = 0; i < 10; i++) {
+				cache.forBranch("branch"+i).put("key", "value"+i);
+			}
+			assertEquals(flushThreadsBefore, countFlushThreads());
+			long deadline = System.currentTimeMillis() + 5000;
+			while (delegate.get("keybranch9") == null && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals("value0", delegate.get("keybranch0"));
+			assertEquals("value9", delegate.get("keybranch9"));
+
+			// closing a view must not stop background writing for the others
+			((WriteBehindBranchStateCache) cache.forBranch("branch0")).close();
+			cache.forBranch("branch1").put("key", "updated");
+			deadline = System.currentTimeMillis() + 5000;
+			while (!"updated".equals(delegate.get("keybranch1")) && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals("updated", delegate.get("keybranch1"));
+		}
+	}
+
+	private long countFlushThreads() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.getName().equals("WriteBehindBranchStateCacheFlush"))
+				.count();
+	}
+
+	@Test
+	void testFailedFlushKeepsNewerValues() throws Exception {
+		InMemoryBranchStateCache delegate = spy(new InMemoryBranchStateCache());
+		WriteBehindBranchStateCache cache = new WriteBehindBranchStateCache(delegate, 60000);
+		cache.put("key", "old");
+		cache.put("other", "x");
+		doThrow(new PersistenceException("disk full")).when(delegate).putAll(any());
+		assertThrows(PersistenceException.class, cache::flush);
+		cache.put("key", "new");
+		assertEquals(2, cache.getPendingCount());
+
+		doCallRealMethod().when(delegate).putAll(any());
+		cache.close();
+		assertEquals("new", delegate.get("key"));
+		assertEquals("x", delegate.get("other"));
+	}
+
+	@Test
+	void testBranchViewOverRocksDbCacheWritesCommitsAndEntriesInOneBatch(@TempDir Path tempDir) throws Exception {
+		String branchURI = "http://at.jku.isse.artifacteventstreaming/testrepos/writebehind/branch/main";
+		RocksDBFactory factory = new RocksDBFactory(tempDir.toString());
+		try (WriteBehindBranchStateCache cache = new WriteBehindBranchStateCache(factory.getCache(), 60000)) {
+			BranchStateCache branchView = cache.forBranch(branchURI);
+			assertSame(branchView, cache.forBranch(branchURI));
+			branchView.put("pending", "old");
+			branchView.put("lastCommit", "older");
+
+			Commit commit = new StatementCommitImpl(branchURI, "Commit", "", 0);
+			factory.getEventStore(branchURI).appendCommitsAndCacheEntries(List.of(commit), branchView, Map.of("lastCommit", commit.getCommitId()));
+			// without waiting for write behind: pending entries flushed before, the new ones written together with the commit
+			BranchStateCache stored = factory.getCache(branchURI); // the branch's own column family
+			assertEquals(commit.getCommitId(), stored.get("lastCommit"));
+			assertEquals("old", stored.get("pending"));
+			assertEquals(commit.getCommitId(), branchView.get("lastCommit"));
+			assertEquals(0, ((WriteBehindBranchStateCache) branchView).getPendingCount());
+			assertNull(factory.getCache().get("lastCommit"+branchURI)); // not the key suffix view of the shared cache
+		}
+		factory.clearAndCloseCache();
+	}
+}
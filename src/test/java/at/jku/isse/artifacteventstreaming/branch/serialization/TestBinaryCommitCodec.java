@@ -0,0 +1,128 @@
+package at.jku.isse.artifacteventstreaming.branch.serialization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+import at.jku.isse.artifacteventstreaming.branch.persistence.EventStoreFactory;
+import at.jku.isse.artifacteventstreaming.branch.persistence.EventStoreFactory.EventMetaData;
+import at.jku.isse.artifacteventstreaming.branch.persistence.InMemoryBranchStateCache;
+import at.jku.isse.artifacteventstreaming.branch.persistence.InMemoryEventStore;
+import at.jku.isse.artifacteventstreaming.branch.persistence.StateKeeperImpl;
+import at.jku.isse.artifacteventstreaming.replay.ContainedStatementImpl;
+
+class TestBinaryCommitCodec {
+
+	public static final String baseURI = "http://at.jku.isse.artifacteventstreaming/test/codec#";
+
+	@Test
+	void testRoundtripAndSize() throws IOException {
+		Commit commit = createCommit(100);
+		BinaryCommitCodec binaryCodec = new BinaryCommitCodec();
+		byte[] binary = binaryCodec.encode(commit);
+		Commit decoded = binaryCodec.decode(binary);
+		assertCommitContentEquals(commit, decoded);
+
+		JsonMapper jsonMapper = new JsonMapper();
+		StatementJsonSerializer.registerSerializationModule(jsonMapper);
+		StatementJsonDeserializer.registerDeserializationModule(jsonMapper);
+		JsonCommitCodec jsonCodec = new JsonCommitCodec(jsonMapper);
+		byte[] json = jsonCodec.encode(commit);
+		assertEquals(decoded.getAdditionCount(), jsonCodec.decode(json).getAdditionCount());
+		// json drops language tags, binary keeps them
+		assertEquals("de", decoded.getAddedStatements().get(1).getObject().asLiteral().getLanguage());
+		// repeated IRIs are only written once
+		assertTrue(binary.length*3 < json.length);
+	}
+
+	@Test
+	void testCorruptPayload() throws IOException {
+		byte[] binary = new BinaryCommitCodec().encode(createCommit(5));
+		assertThrows(IOException.class, () -> new BinaryCommitCodec().decode(Arrays.copyOf(binary, binary.length/2)));
+	}
+
+	@Test
+	void testMetadataWithoutFormatMarkerIsJson() throws IOException {
+		JsonMapper jsonMapper = new JsonMapper();
+		EventMetaData metadata = jsonMapper.readValue("{\"commitUUID\":\"c1\",\"batchId\":1,\"totalBatches\":1}", EventMetaData.class);
+		assertNull(metadata.getFormat());
+		String json = jsonMapper.writeValueAsString(new EventMetaData("c1", 1, 1));
+		assertEquals(-1, json.indexOf("format"));
+		assertEquals(BinaryCommitCodec.FORMAT, jsonMapper.readValue(jsonMapper.writeValueAsBytes(new EventMetaData("c1", 1, 1, BinaryCommitCodec.FORMAT)), EventMetaData.class).getFormat());
+	}
+
+	@Test
+	void testHistoryRepositoryRejectedForBinaryCommits() {
+		// the history projection only understands json commit events, no event store connection needed to reject
+		assertThrows(IllegalStateException.class, () -> new EventStoreFactory(new BinaryCommitCodec()).getHistoryRepository());
+	}
+
+	@Test
+	void testRecoverBinaryCachedPrelimCommit() throws Exception {
+		URI branchURI = URI.create("http://at.jku.isse.artifacteventstreaming/testrepos/codec/branch/main");
+		InMemoryBranchStateCache cache = new InMemoryBranchStateCache();
+		InMemoryEventStore eventStore = new InMemoryEventStore();
+		Commit commit = createCommit(3);
+		new StateKeeperImpl(branchURI, cache, eventStore, 0, new BinaryCommitCodec()).beforeServices(commit);
+		assertTrue(cache.get(StateKeeperImpl.LAST_OPEN_PRELEMINARY_COMMIT_CONTENT+branchURI).startsWith(BinaryCommitCodec.FORMAT+":"));
+
+		Commit recovered = new StateKeeperImpl(branchURI, cache, eventStore, 0, new BinaryCommitCodec()).loadState();
+		assertCommitContentEquals(commit, recovered);
+	}
+
+	private Commit createCommit(int resourceCount) {
+		Model m = ModelFactory.createDefaultModel();
+		Property hasChild = m.createProperty(baseURI+"hasChild");
+		Property value = m.createProperty(baseURI+"value");
+		Set<ContainedStatement> added = new LinkedHashSet<>();
+		Set<ContainedStatement> removed = new LinkedHashSet<>();
+		for (int i = 0; i < resourceCount; i++) {
+			Resource res = m.createResource(baseURI+"res"+i);
+			Resource blank = m.createResource();
+			added.add(new ContainedStatementImpl(m.createStatement(res, RDFS.label, m.createTypedLiteral(i))));
+			added.add(new ContainedStatementImpl(m.createStatement(res, RDFS.comment, m.createLiteral("Kommentar "+i, "de"))));
+			added.add(new ContainedStatementImpl(m.createStatement(res, hasChild, blank)));
+			added.add(new ContainedStatementImpl(m.createStatement(blank, value, m.createLiteral("child of "+i)), res, hasChild));
+			removed.add(new ContainedStatementImpl(m.createStatement(res, RDFS.seeAlso, m.createResource(baseURI+"res"+(i+1)))));
+		}
+		return new StatementCommitImpl(baseURI+"branch", "c-1", "Some commit message", null, 1234567890123L, added, removed);
+	}
+
+	private void assertCommitContentEquals(Commit expected, Commit actual) {
+		assertEquals(expected.getCommitId(), actual.getCommitId());
+		assertEquals(expected.getOriginatingBranchId(), actual.getOriginatingBranchId());
+		assertEquals(expected.getCommitMessage(), actual.getCommitMessage());
+		assertNull(actual.getPrecedingCommitId());
+		assertEquals(expected.getTimeStamp(), actual.getTimeStamp());
+		assertStatementsEqual(expected.getAddedStatements(), actual.getAddedStatements());
+		assertStatementsEqual(expected.getRemovedStatements(), actual.getRemovedStatements());
+	}
+
+	private void assertStatementsEqual(List<ContainedStatement> expected, List<ContainedStatement> actual) {
+		assertEquals(expected, actual);
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getContainerOrSubject(), actual.get(i).getContainerOrSubject());
+			assertEquals(expected.get(i).getContainmentPropertyOrPredicate(), actual.get(i).getContainmentPropertyOrPredicate());
+		}
+	}
+}
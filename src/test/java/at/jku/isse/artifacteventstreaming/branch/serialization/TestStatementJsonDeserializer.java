@@ -0,0 +1,84 @@
+package at.jku.isse.artifacteventstreaming.branch.serialization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+import at.jku.isse.artifacteventstreaming.replay.ContainedStatementImpl;
+
+class TestStatementJsonDeserializer {
+
+	public static final String baseURI = "http://at.jku.isse.artifacteventstreaming/test/jsondeser#";
+
+	@Test
+	void testRoundtripWithInternedNodes() throws Exception {
+		JsonMapper jsonMapper = createMapper();
+		Model m = ModelFactory.createDefaultModel();
+		Property hasChild = m.createProperty(baseURI+"hasChild");
+		Set<ContainedStatement> added = new LinkedHashSet<>();
+		for (int i = 0; i < 10; i++) {
+			Resource res = m.createResource(baseURI+"res"+i);
+			Resource blank = m.createResource();
+			added.add(new ContainedStatementImpl(m.createStatement(res, RDFS.label, m.createTypedLiteral(i))));
+			added.add(new ContainedStatementImpl(m.createStatement(res, hasChild, blank)));
+			added.add(new ContainedStatementImpl(m.createStatement(blank, RDFS.label, m.createLiteral("child "+i)), res, hasChild));
+		}
+		Commit commit = new StatementCommitImpl(baseURI+"branch", "c-1", "msg", null, 1L, added, Set.of());
+
+		Commit decoded = jsonMapper.readValue(jsonMapper.writeValueAsBytes(commit), StatementCommitImpl.class);
+		Map<ContainedStatement, ContainedStatement> actual = decoded.getAddedStatements().stream()
+				.collect(Collectors.toMap(Function.identity(), Function.identity()));
+		assertEquals(added, actual.keySet());
+		for (ContainedStatement expected : added) {
+			assertEquals(expected.getContainerOrSubject(), actual.get(expected).getContainerOrSubject());
+			assertEquals(expected.getContainmentPropertyOrPredicate(), actual.get(expected).getContainmentPropertyOrPredicate());
+		}
+		// same predicate IRI results in the very same node
+		List<ContainedStatement> labels = decoded.getAddedStatements().stream().filter(stmt -> stmt.getPredicate().equals(RDFS.label)).toList();
+		assertSame(labels.get(0).getPredicate().asNode(), labels.get(1).getPredicate().asNode());
+		// statements are model-less, but can be added to any model
+		Model target = ModelFactory.createDefaultModel();
+		decoded.getAddedStatements().forEach(target::add);
+		assertEquals(30, target.size());
+	}
+
+	@Test
+	void testUnknownFieldsAreSkippedAndMissingFieldsRejected() throws Exception {
+		JsonMapper jsonMapper = createMapper();
+		String json = "{\"subject\":\""+baseURI+"res1\",\"extra\":{\"nested\":[1,2]},\"predicate\":\""+RDFS.label.getURI()
+				+"\",\"object\":\"5\",\"datatype\":\"http://www.w3.org/2001/XMLSchema#int\"}";
+		ContainedStatement stmt = jsonMapper.readValue(json, ContainedStatement.class);
+		assertEquals(5, stmt.getInt());
+		assertTrue(stmt.getSubject().isURIResource());
+
+		assertThrows(JsonMappingException.class, () -> jsonMapper.readValue("{\"subject\":\""+baseURI+"res1\",\"object\":\"5\"}", ContainedStatement.class));
+	}
+
+	private JsonMapper createMapper() {
+		JsonMapper jsonMapper = new JsonMapper();
+		StatementJsonSerializer.registerSerializationModule(jsonMapper);
+		StatementJsonDeserializer.registerDeserializationModule(jsonMapper);
+		return jsonMapper;
+	}
+}
@@ -0,0 +1,84 @@
+package at.jku.isse.artifacteventstreaming.replay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.ontapi.OntModelFactory;
+import org.apache.jena.ontapi.OntSpecification;
+import org.apache.jena.ontapi.model.OntModel;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+import at.jku.isse.artifacteventstreaming.api.Branch;
+import at.jku.isse.artifacteventstreaming.api.Commit;
+import at.jku.isse.artifacteventstreaming.api.exceptions.NotFoundException;
+import at.jku.isse.artifacteventstreaming.branch.BranchBuilder;
+
+class TestBranchAsOfView {
+
+	public static final String base = "http://at.jku.isse.artifacteventstreaming/testrepos/asof#";
+	public static final URI repoURI = URI.create(base.substring(0, base.length()-1));
+
+	@Test
+	void testQueryAtCommitAndTimestamp() throws Exception {
+		Dataset repoDataset = DatasetFactory.createTxnMem();
+		OntModel repoModel =  OntModelFactory.createModel(repoDataset.getDefaultModel().getGraph(), OntSpecification.OWL2_DL_MEM);
+		AtomicLong clock = new AtomicLong(100);
+		Branch branch = new BranchBuilder(repoURI, repoDataset, repoModel)
+				.setTimeStampProvider(() -> clock.getAndAdd(100))
+				.build();
+		OntModel model = branch.getModel();
+		Resource art = model.createResource(base+"art1");
+		branch.getDataset().begin();
+		model.add(art, RDFS.seeAlso, "setup"); // never part of any commit
+		branch.getDataset().commit();
+		branch.startCommitHandlers(null);
+
+		branch.getDataset().begin();
+		model.add(art, RDFS.label, "first");
+		Commit first = branch.commitChanges("First"); // at 100
+		branch.getDataset().begin();
+		model.remove(art, RDFS.label, model.createLiteral("first"));
+		model.add(art, RDFS.label, "second");
+		model.add(art, RDFS.comment, "note");
+		Commit second = branch.commitChanges("Second"); // at 200
+		branch.getDataset().begin();
+		model.remove(art, RDFS.comment, model.createLiteral("note"));
+		model.add(art, RDFS.label, "third");
+		branch.commitChanges("Third"); // at 300
+
+		BranchAsOfView view = new BranchAsOfView(branch);
+		assertEquals(List.of("first"), view.queryAtCommit(first.getCommitId(), m -> labelsOf(m, art)));
+		assertEquals(List.of("second"), view.queryAtCommit(second.getCommitId(), m -> labelsOf(m, art)));
+		assertEquals(1L, (long) view.queryAtCommit(second.getCommitId(), m -> m.listStatements(art, RDFS.comment, (RDFNode)null).toList().size()));
+		assertEquals(List.of("second"), view.queryAtTimestamp(250, m -> labelsOf(m, art)));
+		assertEquals(List.of("second", "third"), view.queryAtTimestamp(300, m -> labelsOf(m, art)));
+		assertEquals(List.of(), view.queryAtTimestamp(50, m -> labelsOf(m, art)));
+		assertEquals(1L, (long) view.queryAtTimestamp(50, Model::size)); // state before the first commit still contains the setup
+		assertTrue((boolean) view.queryAtTimestamp(50, m -> m.contains(art, RDFS.seeAlso, "setup")));
+		assertThrows(NotFoundException.class, () -> view.queryAtCommit("unknown", Model::size));
+
+		// live model untouched
+		branch.getDataset().begin(ReadWrite.READ);
+		assertEquals(List.of("second", "third"), labelsOf(model, art));
+		assertEquals(0, model.listStatements(art, RDFS.comment, (RDFNode)null).toList().size());
+		// also usable within an ongoing transaction
+		assertEquals(List.of("first"), view.queryAtCommit(first.getCommitId(), m -> labelsOf(m, art)));
+		branch.getDataset().end();
+	}
+
+	private static List<String> labelsOf(Model m, Resource art) {
+		return m.listStatements(art, RDFS.label, (RDFNode)null).mapWith(stmt -> stmt.getString()).toList().stream().sorted().toList();
+	}
+}
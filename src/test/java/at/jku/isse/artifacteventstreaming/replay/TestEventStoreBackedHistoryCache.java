@@ -0,0 +1,183 @@
+package at.jku.isse.artifacteventstreaming.replay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.eventstore.dbclient.EventStoreDBClient;
+import com.eventstore.dbclient.EventStoreDBProjectionManagementClient;
+import com.eventstore.dbclient.ProjectionDetails;
+import com.eventstore.dbclient.ReadResult;
+import com.eventstore.dbclient.ReadStreamOptions;
+import com.eventstore.dbclient.RecordedEvent;
+import com.eventstore.dbclient.ResolvedEvent;
+import com.eventstore.dbclient.StreamPosition;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.api.exceptions.PersistenceException;
+import at.jku.isse.artifacteventstreaming.branch.StatementCommitImpl;
+import at.jku.isse.artifacteventstreaming.branch.serialization.StatementJsonDeserializer;
+import at.jku.isse.artifacteventstreaming.branch.serialization.StatementJsonSerializer;
+
+class TestEventStoreBackedHistoryCache {
+
+	public static final String base = "http://at.jku.isse.artifacteventstreaming/testrepos/historycache#";
+	public static final String branchURI = base+"main";
+
+	private final JsonMapper jsonMapper = new JsonMapper();
+	private final Map<String, List<ResolvedEvent>> streams = new HashMap<>();
+	private final List<Long> readFromRevisions = new ArrayList<>(); // -1 for reads from the start
+	private final Model m = ModelFactory.createDefaultModel();
+	private EventStoreDBClient client;
+	private EventStoreDBProjectionManagementClient projectionClient;
+
+	@BeforeEach
+	void setup() throws Exception {
+		StatementJsonSerializer.registerSerializationModule(jsonMapper);
+		StatementJsonDeserializer.registerDeserializationModule(jsonMapper);
+		projectionClient = mock(EventStoreDBProjectionManagementClient.class);
+		ProjectionDetails details = mock(ProjectionDetails.class);
+		when(details.getName()).thenReturn(EventStoreBackedHistoryRepository.projectionName);
+		when(details.getStatus()).thenReturn("Running");
+		when(projectionClient.list()).thenReturn(CompletableFuture.completedFuture(List.of(details)));
+		client = mock(EventStoreDBClient.class);
+		when(client.readStream(anyString(), any(ReadStreamOptions.class))).thenAnswer(invocation -> {
+			long fromRevision = getStartingRevision(invocation.getArgument(1));
+			readFromRevisions.add(fromRevision);
+			List<ResolvedEvent> events = streams.getOrDefault(invocation.getArgument(0), List.of());
+			ReadResult result = mock(ReadResult.class);
+			when(result.getEvents()).thenReturn(events.subList((int) Math.min(Math.max(fromRevision, 0), events.size()), events.size()));
+			return CompletableFuture.completedFuture(result);
+		});
+	}
+
+	@Test
+	void testOnlyNewEventsFetched() throws Exception {
+		EventStoreBackedHistoryRepository repo = new EventStoreBackedHistoryRepository(client, projectionClient, jsonMapper);
+		Resource art = m.createResource(base+"art1");
+		appendCommit(art, "first");
+		appendCommit(art, "second");
+		assertEquals(2, repo.getHistoryForResource(art.getURI(), branchURI).count());
+		assertEquals(2, repo.getHistoryForResource(art.getURI(), branchURI).count());
+		appendCommit(art, "third");
+		List<ReplayEntry> history = repo.getHistoryForResource(art.getURI(), branchURI).toList();
+		assertEquals(List.of("first", "second", "third"), history.stream().map(entry -> entry.getStatement().getString()).toList());
+		assertEquals(List.of(-1L, 2L, 2L), readFromRevisions);
+		assertEquals(3, repo.getCachedEntryCount());
+	}
+
+	@Test
+	void testEvictionFallsBackToReadingFromStart() throws Exception {
+		EventStoreBackedHistoryRepository repo = new EventStoreBackedHistoryRepository(client, projectionClient, jsonMapper, 3);
+		Resource art1 = m.createResource(base+"art1");
+		Resource art2 = m.createResource(base+"art2");
+		appendCommit(art1, "first");
+		appendCommit(art1, "second");
+		appendCommit(art2, "other");
+		appendCommit(art2, "another");
+		assertEquals(2, repo.getHistoryForResource(art1.getURI(), branchURI).count());
+		assertEquals(2, repo.getHistoryForResource(art2.getURI(), branchURI).count()); // evicts art1
+		assertEquals(2, repo.getCachedEntryCount());
+		assertEquals(2, repo.getHistoryForResource(art1.getURI(), branchURI).count()); // evicts art2
+		assertEquals(List.of(-1L, -1L, -1L), readFromRevisions);
+		assertEquals(4, repo.getHistoryForResources(Set.of(art1.getURI(), art2.getURI()), branchURI).count());
+	}
+
+	@Test
+	void testBoundedParallelFetchInTimestampOrder() throws Exception {
+		ExecutorService eventStoreThreads = Executors.newFixedThreadPool(8);
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+		EventStoreDBClient asyncClient = mock(EventStoreDBClient.class);
+		when(asyncClient.readStream(anyString(), any(ReadStreamOptions.class))).thenAnswer(invocation -> {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			ReadResult result = mock(ReadResult.class);
+			when(result.getEvents()).thenReturn(streams.getOrDefault(invocation.getArgument(0), List.of()));
+			return CompletableFuture.supplyAsync(() -> {
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				inFlight.decrementAndGet();
+				return result;
+			}, eventStoreThreads);
+		});
+		EventStoreBackedHistoryRepository repo = new EventStoreBackedHistoryRepository(asyncClient, projectionClient, jsonMapper, 1000, 3);
+		Set<String> ids = new LinkedHashSet<>();
+		for (int i = 9; i >= 0; i--) { // older commits for later resources
+			Resource art = m.createResource(base+"art"+i);
+			appendCommit(art, "label"+i, i);
+			ids.add(art.getURI());
+		}
+		List<ReplayEntry> history = repo.getHistoryForResources(ids, branchURI).toList();
+		eventStoreThreads.shutdown();
+		assertEquals(LongStream.range(0, 10).boxed().toList(), history.stream().map(ReplayEntry::getTimeStamp).toList());
+		assertTrue(maxInFlight.get() > 1);
+		assertTrue(maxInFlight.get() <= 3);
+	}
+
+	@Test
+	void testPartialFailureReported() throws Exception {
+		Resource art1 = m.createResource(base+"art1");
+		Resource broken = m.createResource(base+"broken");
+		appendCommit(art1, "first");
+		when(client.readStream(eq("resource-"+branchURI+"-"+broken.getURI()), any(ReadStreamOptions.class)))
+			.thenReturn(CompletableFuture.failedFuture(new RuntimeException("connection lost")));
+		EventStoreBackedHistoryRepository repo = new EventStoreBackedHistoryRepository(client, projectionClient, jsonMapper);
+		PartialHistoryException e = assertThrows(PartialHistoryException.class, () -> repo.getHistoryForResources(Set.of(art1.getURI(), broken.getURI()), branchURI));
+		assertEquals(Set.of(broken.getURI()), e.getFailedResources().keySet());
+		assertEquals(1, e.getFetchedEntries().size());
+		assertThrows(PersistenceException.class, () -> repo.getHistoryForResource(broken.getURI(), branchURI));
+	}
+
+	private void appendCommit(Resource subject, String label) throws Exception {
+		appendCommit(subject, label, 0);
+	}
+
+	private void appendCommit(Resource subject, String label, long timeStamp) throws Exception {
+		ContainedStatement stmt = new ContainedStatementImpl(m.createStatement(subject, RDFS.label, label));
+		StatementCommitImpl commit = new StatementCommitImpl(branchURI, label, null, timeStamp, Set.of(stmt), Set.of());
+		String streamId = "resource-"+branchURI+"-"+subject.getURI();
+		List<ResolvedEvent> events = streams.computeIfAbsent(streamId, k -> new ArrayList<>());
+		RecordedEvent event = mock(RecordedEvent.class);
+		when(event.getEventData()).thenReturn(jsonMapper.writeValueAsBytes(commit));
+		RecordedEvent link = mock(RecordedEvent.class);
+		when(link.getRevision()).thenReturn((long) events.size());
+		events.add(new ResolvedEvent(event, link, null));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static long getStartingRevision(ReadStreamOptions options) throws Exception {
+		Method getter = options.getClass().getSuperclass().getDeclaredMethod("getStartingRevision");
+		getter.setAccessible(true);
+		StreamPosition<Long> position = (StreamPosition<Long>) getter.invoke(options);
+		return position.isStart() ? -1 : position.getPositionOrThrow();
+	}
+}
@@ -136,4 +136,35 @@ class TestPartialReplay {
 		assertTrue(fwd.isEmpty());
 	}
 
+	@Test
+	void testPlayBackwardAndForward() {
+		var prevSize = m.size();
+		var map = new HashMap<Resource,Set<Property>>();
+		map.put(issue1, Set.of(schema.getPriorityProperty(), schema.getStateProperty()));
+		ReplaySession session = new ReplaySession(collector, map, m);
+		session.revert();
+		assertTrue(session.playBackwardOneTimestamp().isEmpty()); // nothing replayed yet
+		
+		session.playForwardOneTimestamp();
+		session.playForwardOneTimestamp();
+		assertEquals(2, session.getCurrentReplayTimestamp());
+		assertEquals("Resolved", issue1.getProperty(schema.getStateProperty()).getLiteral().getValue());
+		
+		var bwd = session.playBackwardOneTimestamp();
+		assertEquals(4, bwd.size());
+		assertEquals(1, session.getCurrentReplayTimestamp());
+		assertEquals(1, issue1.getProperty(schema.getPriorityProperty()).getLiteral().getValue());
+		assertEquals("InProgress", issue1.getProperty(schema.getStateProperty()).getLiteral().getValue());
+		
+		session.playForwardOneTimestamp();
+		session.playForwardOneTimestamp();
+		assertEquals(-1, session.getCurrentReplayTimestamp());
+		assertEquals(prevSize, m.size());
+		assertEquals("Closed", issue1.getProperty(schema.getStateProperty()).getLiteral().getValue());
+		
+		session.playBackwardOneTimestamp();
+		assertEquals(2, session.getCurrentReplayTimestamp());
+		assertEquals(2, issue1.getProperty(schema.getPriorityProperty()).getLiteral().getValue());
+	}
+
 }
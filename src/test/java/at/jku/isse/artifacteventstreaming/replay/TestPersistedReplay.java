@@ -28,7 +28,7 @@ public class TestPersistedReplay extends TestContainmentReplay{
 		aggr = new StatementAggregator();
 		aggr.registerWithModel(m);
 		
-		EventStoreBackedHistoryRepository historyRepo = new EventStoreBackedHistoryRepository(factory.getClient(), factory.getProjectionClient(), factory.getJsonMapper());
+		EventStoreBackedHistoryRepository historyRepo = factory.getHistoryRepository();
 		collector = new ReplayEntryCollectorFromHistory(historyRepo, branchURI );
 		CommitContainmentAugmenter augmenter = new CommitContainmentAugmenter(branchURI, m, schemaUtil);
 
@@ -0,0 +1,97 @@
+package at.jku.isse.artifacteventstreaming.replay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import at.jku.isse.artifacteventstreaming.api.AES.OPTYPE;
+import at.jku.isse.artifacteventstreaming.api.ContainedStatement;
+import at.jku.isse.artifacteventstreaming.branch.persistence.RocksDBFactory;
+
+class TestRocksDbHistoryRepository {
+
+	public static final String base = "http://at.jku.isse.artifacteventstreaming/testrepos/rockshistory#";
+	public static final String branchURI = base+"main";
+	public static final String otherBranchURI = base+"other";
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testPerBranchAndResourceHistoryInTimestampOrder() throws Exception {
+		Model m = ModelFactory.createDefaultModel();
+		Resource art1 = m.createResource(base+"art1");
+		Resource art2 = m.createResource(base+"art2");
+		Resource listRes = m.createResource(); // contained in art1
+		ContainedStatement label1 = new ContainedStatementImpl(m.createStatement(art1, RDFS.label, "first"));
+		ContainedStatement label2 = new ContainedStatementImpl(m.createStatement(art1, RDFS.label, "second"));
+		ContainedStatement contained = new ContainedStatementImpl(m.createStatement(listRes, RDFS.member, "entry"), art1, RDFS.seeAlso);
+		ContainedStatement otherLabel = new ContainedStatementImpl(m.createStatement(art2, RDFS.label, "other"));
+
+		RocksDBFactory factory = new RocksDBFactory(tempDir.toString());
+		RocksDbHistoryRepository repo = factory.getHistoryRepository(10);
+		repo.appendHistory("c1", branchURI, 100, Set.of(label1, otherLabel), Set.of());
+		repo.appendHistory("c2", otherBranchURI, 150, Set.of(label2), Set.of());
+		assertEquals(1, repo.getHistoryForResource(art1.getURI(), branchURI).count()); // now cached
+		repo.appendHistory("c3", branchURI, 200, Set.of(label2, contained), Set.of(label1));
+
+		List<ReplayEntry> history = repo.getHistoryForResource(art1.getURI(), branchURI).toList();
+		assertEquals(1, repo.getCacheHits());
+		assertEquals(List.of("c1", "c3", "c3", "c3"), history.stream().map(ReplayEntry::getCommitId).toList());
+		assertEquals(Set.of(label2, contained), Set.of(history.get(1).getStatement(), history.get(2).getStatement()));
+		assertEquals(OPTYPE.REMOVE, history.get(3).getOpType());
+		assertEquals(label1, history.get(3).getStatement());
+		assertEquals(3, repo.getHistoryForResources(Set.of(art1.getURI(), art2.getURI()), branchURI).filter(entry -> entry.getTimeStamp() == 200).count());
+		assertEquals(4, repo.getHistoryForResourceBetween(art1.getURI(), branchURI, 0, 1000).count());
+		assertEquals(3, repo.getHistoryForResourceBetween(art1.getURI(), branchURI, 101, 1000).count());
+		assertEquals(1, repo.getHistoryForResourceBetween(art1.getURI(), branchURI, 0, 200).count());
+		factory.closeCache();
+
+		// same order and content from disk
+		factory = new RocksDBFactory(tempDir.toString());
+		repo = factory.getHistoryRepository(10);
+		List<ReplayEntry> reloaded = repo.getHistoryForResource(art1.getURI(), branchURI).toList();
+		assertEquals(history.stream().map(ReplayEntry::getStatement).toList(), reloaded.stream().map(ReplayEntry::getStatement).toList());
+		assertEquals(art1, reloaded.stream().filter(entry -> entry.getStatement().getSubject().equals(listRes)).findAny().get().getStatement().getContainerOrSubject());
+		assertEquals(List.of(label2), repo.getHistoryForResource(art1.getURI(), otherBranchURI).map(ReplayEntry::getStatement).toList());
+		assertEquals(0, repo.getHistoryForResource(base+"unknown", branchURI).count());
+		factory.closeCache();
+	}
+
+	@Test
+	void testHotCacheBoundedByEntriesOfAllBranches() throws Exception {
+		Model m = ModelFactory.createDefaultModel();
+		Resource art1 = m.createResource(base+"art1");
+		Resource art2 = m.createResource(base+"art2");
+		RocksDBFactory factory = new RocksDBFactory(tempDir.toString());
+		RocksDbHistoryRepository repo = factory.getHistoryRepository(3);
+		repo.appendHistory("c1", branchURI, 100, Set.of(new ContainedStatementImpl(m.createStatement(art1, RDFS.label, "first"))), Set.of());
+		repo.appendHistory("c2", otherBranchURI, 100, Set.of(new ContainedStatementImpl(m.createStatement(art2, RDFS.label, "other"))), Set.of());
+		repo.getHistoryForResource(art2.getURI(), otherBranchURI);
+		repo.getHistoryForResource(art1.getURI(), branchURI);
+		assertEquals(2, repo.getCachedEntryCount());
+		assertEquals(0, repo.getHistoryForResource(art2.getURI(), branchURI).count()); // not cached
+		assertEquals(2, repo.getCachedEntryCount());
+
+		// a cached history growing with further commits counts towards the bound as well
+		repo.appendHistory("c3", branchURI, 200, Set.of(new ContainedStatementImpl(m.createStatement(art1, RDFS.label, "second"))), Set.of());
+		assertEquals(3, repo.getCachedEntryCount());
+		repo.appendHistory("c4", branchURI, 300, Set.of(new ContainedStatementImpl(m.createStatement(art1, RDFS.label, "third"))), Set.of());
+		assertEquals(3, repo.getCachedEntryCount()); // the other branch's least recently accessed history is evicted
+		assertEquals(3, repo.getHistoryForResource(art1.getURI(), branchURI).count());
+		assertEquals(1, repo.getCacheHits());
+		assertEquals(1, repo.getHistoryForResource(art2.getURI(), otherBranchURI).count());
+		assertEquals(1, repo.getCacheHits());
+		assertEquals(1, repo.getCachedEntryCount()); // art1's history evicted in turn
+		factory.closeCache();
+	}
+}